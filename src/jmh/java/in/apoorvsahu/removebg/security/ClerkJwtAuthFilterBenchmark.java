@@ -0,0 +1,109 @@
+package in.apoorvsahu.removebg.security;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of {@link ClerkJwtAuthFilter} for a session token that is presented repeatedly,
+ * with the verified-token cache off (full RS256 verification every time) and on. The benchmarks profile
+ * runs with the GC profiler, so gc.alloc.rate.norm reports bytes allocated per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClerkJwtAuthFilterBenchmark {
+
+    private static final String ISSUER = "https://clerk.example.com";
+    private static final String KID = "ins_benchmark";
+    private static final FilterChain NO_OP_CHAIN = (request, response) -> {};
+
+    @Param({"false", "true"})
+    public boolean cacheEnabled;
+
+    private ClerkJwtAuthFilter filter;
+    private String authorization;
+    private String token;
+
+    @Setup
+    public void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+
+        ClerkJwksProvider jwksProvider = new ClerkJwksProvider(null, Duration.ofMinutes(5), new SimpleMeterRegistry()) {
+            @Override
+            public PublicKey getPublicKey(String kid) {
+                return keyPair.getPublic();
+            }
+
+            @Override
+            public boolean isCurrentKey(String kid, PublicKey key) {
+                return keyPair.getPublic().equals(key);
+            }
+        };
+
+        VerifiedTokenCache cache = new VerifiedTokenCache(cacheEnabled, 10_000, Duration.ofSeconds(30), new SimpleMeterRegistry());
+        filter = new ClerkJwtAuthFilter(jwksProvider, cache);
+        ReflectionTestUtils.setField(filter, "clerkIssuer", ISSUER);
+
+        token = Jwts.builder()
+                .setHeaderParam("kid", KID)
+                .setSubject("user_benchmark")
+                .setIssuer(ISSUER)
+                .setExpiration(new Date(System.currentTimeMillis() + Duration.ofHours(1).toMillis()))
+                .signWith(keyPair.getPrivate(), SignatureAlgorithm.RS256)
+                .compact();
+        authorization = "Bearer " + token;
+    }
+
+    @Benchmark
+    public Authentication authenticate() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/users/credits");
+        request.addHeader("Authorization", authorization);
+        filter.doFilter(request, new MockHttpServletResponse(), NO_OP_CHAIN);
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        SecurityContextHolder.clearContext();
+        return authentication;
+    }
+
+    @Benchmark
+    public String readKid() throws Exception {
+        return ClerkJwtAuthFilter.readKid(token);
+    }
+
+    @Benchmark
+    public Authentication webhookBypass() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/webhooks/razorpay");
+        filter.doFilter(request, new MockHttpServletResponse(), NO_OP_CHAIN);
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+}
@@ -0,0 +1,31 @@
+package in.apoorvsahu.removebg.Repositories;
+
+import in.apoorvsahu.removebg.entities.ApiKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Optional;
+
+public interface ApiKeyRepository extends JpaRepository<ApiKey, Long> {
+
+    Optional<ApiKey> findByKeyId(String keyId);
+
+    List<ApiKey> findByClerkIdOrderByCreatedAtDesc(String clerkId);
+
+    long countByClerkIdAndRevokedFalse(String clerkId);
+
+    @Modifying
+    @Query("update ApiKey k set k.revoked = true, k.revokedAt = :revokedAt where k.keyId = :keyId and k.clerkId = :clerkId and k.revoked = false")
+    int revoke(@Param("keyId") String keyId, @Param("clerkId") String clerkId, @Param("revokedAt") Timestamp revokedAt);
+
+    // counters are added rather than set so flushes from several instances never overwrite each other
+    @Modifying
+    @Query("update ApiKey k set k.requestCount = k.requestCount + :requests, " +
+            "k.lastUsedAt = case when k.lastUsedAt is null or k.lastUsedAt < :lastUsedAt then :lastUsedAt else k.lastUsedAt end " +
+            "where k.keyId = :keyId")
+    int addUsage(@Param("keyId") String keyId, @Param("requests") long requests, @Param("lastUsedAt") Timestamp lastUsedAt);
+}
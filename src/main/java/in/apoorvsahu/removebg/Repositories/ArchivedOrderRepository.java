@@ -0,0 +1,32 @@
+package in.apoorvsahu.removebg.Repositories;
+
+import in.apoorvsahu.removebg.dtos.OrderHistoryDto;
+import in.apoorvsahu.removebg.entities.ArchivedOrderEntity;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+public interface ArchivedOrderRepository extends JpaRepository<ArchivedOrderEntity, Long> {
+
+    @Query("select new in.apoorvsahu.removebg.dtos.OrderHistoryDto(o.id, o.orderId, o.plan, o.credits, o.amount, o.payment, o.createdAt) " +
+            "from ArchivedOrderEntity o where o.clerkId = :clerkId and o.orderId is not null order by o.createdAt desc, o.id desc")
+    List<OrderHistoryDto> findHistory(@Param("clerkId") String clerkId, Pageable pageable);
+
+    @Query("select new in.apoorvsahu.removebg.dtos.OrderHistoryDto(o.id, o.orderId, o.plan, o.credits, o.amount, o.payment, o.createdAt) " +
+            "from ArchivedOrderEntity o where o.clerkId = :clerkId and o.orderId is not null " +
+            "and (o.createdAt < :createdAt or (o.createdAt = :createdAt and o.id < :id)) " +
+            "order by o.createdAt desc, o.id desc")
+    List<OrderHistoryDto> findHistoryBefore(@Param("clerkId") String clerkId,
+                                            @Param("createdAt") Timestamp createdAt,
+                                            @Param("id") Long id,
+                                            Pageable pageable);
+
+    @Modifying
+    @Query("delete from ArchivedOrderEntity o where o.orderId = :orderId")
+    int deleteArchived(@Param("orderId") String orderId);
+}
@@ -0,0 +1,40 @@
+package in.apoorvsahu.removebg.Repositories;
+
+import in.apoorvsahu.removebg.entities.CreditLedgerEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Optional;
+
+public interface CreditLedgerRepository extends JpaRepository<CreditLedgerEntry, Long> {
+
+    Optional<CreditLedgerEntry> findByReservationIdAndEntryType(String reservationId, CreditLedgerEntry.EntryType entryType);
+
+    List<CreditLedgerEntry> findByEntryTypeAndSettledFalseOrderByIdAsc(CreditLedgerEntry.EntryType entryType, Pageable pageable);
+
+    // keyset over id; createdAt only stops the sweep at reservations that are still within their ttl, and the
+    // anti-join on the unique resolution key skips everything already committed or released
+    @Query("select r from CreditLedgerEntry r where r.entryType = :reserveType " +
+            "and r.id > :afterId and r.createdAt < :cutoff " +
+            "and not exists (select x from CreditLedgerEntry x where x.resolutionKey = r.reservationId) " +
+            "order by r.id")
+    List<CreditLedgerEntry> findOpenReservationsBefore(@Param("reserveType") CreditLedgerEntry.EntryType reserveType,
+                                                       @Param("afterId") long afterId,
+                                                       @Param("cutoff") Timestamp cutoff,
+                                                       Pageable pageable);
+
+    @Query("select max(r.id) from CreditLedgerEntry r where r.entryType = :reserveType " +
+            "and r.id > :afterId and r.createdAt < :cutoff")
+    Long findLastReservationIdBefore(@Param("reserveType") CreditLedgerEntry.EntryType reserveType,
+                                     @Param("afterId") long afterId,
+                                     @Param("cutoff") Timestamp cutoff);
+
+    @Modifying
+    @Query("update CreditLedgerEntry e set e.settled = true where e.id = :id and e.settled = false")
+    int markSettled(@Param("id") Long id);
+}
@@ -0,0 +1,17 @@
+package in.apoorvsahu.removebg.Repositories;
+
+import in.apoorvsahu.removebg.dtos.DailyRevenueDto;
+import in.apoorvsahu.removebg.entities.DailyOrderRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface DailyOrderRollupRepository extends JpaRepository<DailyOrderRollup, Long> {
+
+    @Query("select new in.apoorvsahu.removebg.dtos.DailyRevenueDto(r.rollupDate, r.plan, r.ordersCreated, r.ordersPaid, r.revenue, r.creditsGranted) " +
+            "from DailyOrderRollup r where r.rollupDate between :from and :to order by r.rollupDate, r.plan")
+    List<DailyRevenueDto> findRange(@Param("from") LocalDate from, @Param("to") LocalDate to);
+}
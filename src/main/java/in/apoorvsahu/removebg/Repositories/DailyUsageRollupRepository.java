@@ -0,0 +1,17 @@
+package in.apoorvsahu.removebg.Repositories;
+
+import in.apoorvsahu.removebg.dtos.DailyUsageDto;
+import in.apoorvsahu.removebg.entities.DailyUsageRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface DailyUsageRollupRepository extends JpaRepository<DailyUsageRollup, Long> {
+
+    @Query("select new in.apoorvsahu.removebg.dtos.DailyUsageDto(r.rollupDate, r.imagesProcessed, r.creditsConsumed) " +
+            "from DailyUsageRollup r where r.rollupDate between :from and :to order by r.rollupDate")
+    List<DailyUsageDto> findRange(@Param("from") LocalDate from, @Param("to") LocalDate to);
+}
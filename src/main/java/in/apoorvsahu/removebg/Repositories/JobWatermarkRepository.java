@@ -0,0 +1,25 @@
+package in.apoorvsahu.removebg.Repositories;
+
+import in.apoorvsahu.removebg.entities.JobWatermark;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.sql.Timestamp;
+import java.util.Optional;
+
+public interface JobWatermarkRepository extends JpaRepository<JobWatermark, String> {
+
+    @Modifying
+    @Query(value = "insert ignore into tbl_job_watermarks (job_name, watermark, updated_at) values (:jobName, :watermark, null)",
+            nativeQuery = true)
+    int createIfAbsent(@Param("jobName") String jobName, @Param("watermark") Timestamp watermark);
+
+    // held until commit so only one instance advances a given job at a time
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select w from JobWatermark w where w.jobName = :jobName")
+    Optional<JobWatermark> lockByJobName(@Param("jobName") String jobName);
+}
@@ -1,10 +1,52 @@
 package in.apoorvsahu.removebg.Repositories;
 
+import in.apoorvsahu.removebg.dtos.OrderHistoryDto;
 import in.apoorvsahu.removebg.entities.OrderEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.sql.Timestamp;
+import java.util.List;
 import java.util.Optional;
 
 public interface OrderRepository extends JpaRepository<OrderEntity, Long> {
     Optional<OrderEntity> findByOrderId(String orderId);
+
+    // orders still waiting for their gateway id are hidden until it is attached
+    @Query("select new in.apoorvsahu.removebg.dtos.OrderHistoryDto(o.id, o.orderId, o.plan, o.credits, o.amount, o.payment, o.createdAt) " +
+            "from OrderEntity o where o.clerkId = :clerkId and o.orderId is not null order by o.createdAt desc, o.id desc")
+    List<OrderHistoryDto> findHistory(@Param("clerkId") String clerkId, Pageable pageable);
+
+    @Query("select new in.apoorvsahu.removebg.dtos.OrderHistoryDto(o.id, o.orderId, o.plan, o.credits, o.amount, o.payment, o.createdAt) " +
+            "from OrderEntity o where o.clerkId = :clerkId and o.orderId is not null " +
+            "and (o.createdAt < :createdAt or (o.createdAt = :createdAt and o.id < :id)) " +
+            "order by o.createdAt desc, o.id desc")
+    List<OrderHistoryDto> findHistoryBefore(@Param("clerkId") String clerkId,
+                                            @Param("createdAt") Timestamp createdAt,
+                                            @Param("id") Long id,
+                                            Pageable pageable);
+
+    @Modifying
+    @Query("update OrderEntity o set o.orderId = :orderId, o.attachedAt = current_timestamp " +
+            "where o.receipt = :receipt and o.orderId is null")
+    int attachGatewayOrder(@Param("receipt") String receipt, @Param("orderId") String orderId);
+
+    @Modifying
+    @Query("delete from OrderEntity o where o.receipt = :receipt and o.orderId is null")
+    int deleteUnattached(@Param("receipt") String receipt);
+
+    // ids are kept by archival, so the row comes back exactly as it was moved out
+    @Modifying
+    @Query(value = "insert into tbl_orders (id, order_id, receipt, clerk_id, plan, amount, credits, payment, created_at, paid_at) " +
+            "select id, order_id, receipt, clerk_id, plan, amount, credits, payment, created_at, paid_at " +
+            "from tbl_orders_archive where order_id = :orderId", nativeQuery = true)
+    int restoreArchived(@Param("orderId") String orderId);
+
+    // only the caller that flips the flag grants credits, so duplicate webhooks and verify calls are harmless
+    @Modifying
+    @Query("update OrderEntity o set o.payment = true, o.paidAt = :paidAt where o.orderId = :orderId and o.payment = false")
+    int markPaid(@Param("orderId") String orderId, @Param("paidAt") Timestamp paidAt);
 }
@@ -0,0 +1,27 @@
+package in.apoorvsahu.removebg.Repositories;
+
+import in.apoorvsahu.removebg.dtos.UsageHistoryDto;
+import in.apoorvsahu.removebg.entities.UsageEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+public interface UsageEventRepository extends JpaRepository<UsageEvent, Long> {
+
+    @Query("select new in.apoorvsahu.removebg.dtos.UsageHistoryDto(u.id, u.outcome, u.creditsCharged, u.inputBytes, u.width, u.height, u.upstreamLatencyMs, u.createdAt) " +
+            "from UsageEvent u where u.clerkId = :clerkId order by u.createdAt desc, u.id desc")
+    List<UsageHistoryDto> findHistory(@Param("clerkId") String clerkId, Pageable pageable);
+
+    @Query("select new in.apoorvsahu.removebg.dtos.UsageHistoryDto(u.id, u.outcome, u.creditsCharged, u.inputBytes, u.width, u.height, u.upstreamLatencyMs, u.createdAt) " +
+            "from UsageEvent u where u.clerkId = :clerkId " +
+            "and (u.createdAt < :createdAt or (u.createdAt = :createdAt and u.id < :id)) " +
+            "order by u.createdAt desc, u.id desc")
+    List<UsageHistoryDto> findHistoryBefore(@Param("clerkId") String clerkId,
+                                            @Param("createdAt") Timestamp createdAt,
+                                            @Param("id") Long id,
+                                            Pageable pageable);
+}
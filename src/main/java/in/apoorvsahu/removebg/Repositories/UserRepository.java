@@ -2,10 +2,30 @@ package in.apoorvsahu.removebg.Repositories;
 
 import in.apoorvsahu.removebg.entities.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, UserRepositoryCustom {
+
     Optional<User> findByClerkId(String clerkId);
     boolean existsByClerkId(String clerkId);
+
+    @Query("select u.clerkId from User u where u.clerkId in :clerkIds")
+    List<String> findExistingClerkIds(@Param("clerkIds") Collection<String> clerkIds);
+
+    @Query("select u.credits from User u where u.clerkId = :clerkId")
+    Optional<Integer> findCreditsByClerkId(@Param("clerkId") String clerkId);
+
+    @Modifying
+    @Query("update User u set u.credits = u.credits - :amount where u.clerkId = :clerkId and u.credits >= :amount")
+    int debitCredits(@Param("clerkId") String clerkId, @Param("amount") int amount);
+
+    @Modifying
+    @Query("update User u set u.credits = u.credits + :amount where u.clerkId = :clerkId")
+    int grantCredits(@Param("clerkId") String clerkId, @Param("amount") int amount);
 }
@@ -0,0 +1,11 @@
+package in.apoorvsahu.removebg.Repositories;
+
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+public interface UserRepositoryCustom {
+
+    // credits are only set on insert; a duplicate email belonging to another clerk id leaves that row untouched
+    int upsertProfile(String clerkId, String email, String firstName, String lastName, String photoUrl, int credits);
+
+    int[] upsertProfiles(SqlParameterSource[] profiles);
+}
@@ -0,0 +1,59 @@
+package in.apoorvsahu.removebg.Repositories;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+@RequiredArgsConstructor
+class UserRepositoryCustomImpl implements UserRepositoryCustom {
+
+    private static final String UPSERT_PROFILE_SQL = "insert into tbl_users (clerk_id, email, first_name, last_name, photo_url, credits) " +
+            "values (:clerkId, :email, :firstName, :lastName, :photoUrl, :credits) as new " +
+            "on duplicate key update " +
+            "email = case when tbl_users.clerk_id = new.clerk_id then new.email else tbl_users.email end, " +
+            "first_name = case when tbl_users.clerk_id = new.clerk_id then new.first_name else tbl_users.first_name end, " +
+            "last_name = case when tbl_users.clerk_id = new.clerk_id then new.last_name else tbl_users.last_name end, " +
+            "photo_url = case when tbl_users.clerk_id = new.clerk_id then new.photo_url else tbl_users.photo_url end";
+
+    // H2 and MariaDB do not accept the row alias that replaces VALUES() on MySQL 8.0.20+
+    private static final String UPSERT_PROFILE_VALUES_SQL = "insert into tbl_users (clerk_id, email, first_name, last_name, photo_url, credits) " +
+            "values (:clerkId, :email, :firstName, :lastName, :photoUrl, :credits) " +
+            "on duplicate key update " +
+            "email = case when clerk_id = values(clerk_id) then values(email) else email end, " +
+            "first_name = case when clerk_id = values(clerk_id) then values(first_name) else first_name end, " +
+            "last_name = case when clerk_id = values(clerk_id) then values(last_name) else last_name end, " +
+            "photo_url = case when clerk_id = values(clerk_id) then values(photo_url) else photo_url end";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    private volatile String upsertProfileSql;
+
+    @Override
+    public int upsertProfile(String clerkId, String email, String firstName, String lastName, String photoUrl, int credits) {
+        return jdbcTemplate.update(upsertProfileSql(), new MapSqlParameterSource()
+                .addValue("clerkId", clerkId)
+                .addValue("email", email)
+                .addValue("firstName", firstName)
+                .addValue("lastName", lastName)
+                .addValue("photoUrl", photoUrl)
+                .addValue("credits", credits));
+    }
+
+    @Override
+    public int[] upsertProfiles(SqlParameterSource[] profiles) {
+        return jdbcTemplate.batchUpdate(upsertProfileSql(), profiles);
+    }
+
+    private String upsertProfileSql() {
+        String sql = upsertProfileSql;
+        if (sql == null) {
+            String product = jdbcTemplate.getJdbcTemplate().execute(
+                    (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+            sql = "MySQL".equalsIgnoreCase(product) ? UPSERT_PROFILE_SQL : UPSERT_PROFILE_VALUES_SQL;
+            upsertProfileSql = sql;
+        }
+        return sql;
+    }
+}
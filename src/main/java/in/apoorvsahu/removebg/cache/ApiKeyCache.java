@@ -0,0 +1,77 @@
+package in.apoorvsahu.removebg.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Resolved API keys by key id, so machine traffic authenticates without a database read. Unknown and revoked
+ * ids go to a separate, smaller cache so that probing random ids cannot evict real keys. That cache only saves
+ * repeated lookups of the same id; guessing is bounded by the per-client failure limit in {@code ApiKeyServiceImpl}.
+ * Revocation is applied locally right away and reaches other instances within the ttl.
+ */
+@Component
+public class ApiKeyCache {
+
+    public record CachedKey(String keyId, byte[] secretHash, String clerkId, int rateLimitPerMinute) {
+
+        public static CachedKey inactive(String keyId) {
+            return new CachedKey(keyId, null, null, 0);
+        }
+
+        public boolean isActive() {
+            return secretHash != null;
+        }
+    }
+
+    private final Cache<String, CachedKey> cache;
+    private final Cache<String, CachedKey> inactive;
+
+    public ApiKeyCache(@Value("${cache.api-keys.max-size:10000}") long maxSize,
+                       @Value("${cache.api-keys.inactive-max-size:1000}") long inactiveMaxSize,
+                       @Value("${cache.api-keys.ttl:60s}") Duration ttl,
+                       MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.inactive = Caffeine.newBuilder()
+                .maximumSize(inactiveMaxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "apiKeys");
+        CaffeineCacheMetrics.monitor(meterRegistry, inactive, "apiKeysInactive");
+    }
+
+    public CachedKey get(String keyId) {
+        CachedKey key = cache.getIfPresent(keyId);
+        return key != null ? key : inactive.getIfPresent(keyId);
+    }
+
+    public void put(CachedKey key) {
+        if (key.isActive()) {
+            inactive.invalidate(key.keyId());
+            cache.put(key.keyId(), key);
+        } else {
+            cache.invalidate(key.keyId());
+            inactive.put(key.keyId(), key);
+        }
+    }
+
+    public void invalidate(String keyId) {
+        cache.invalidate(keyId);
+        inactive.invalidate(keyId);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+        inactive.invalidateAll();
+    }
+}
@@ -0,0 +1,58 @@
+package in.apoorvsahu.removebg.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import in.apoorvsahu.removebg.dtos.OrderSettlementDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Remembers orders that have reached their terminal paid state. A settled order never changes again, so
+ * repeat verify calls and webhook redeliveries are answered from memory without touching the database or
+ * the gateway. Only the order itself is cached; balances are always read fresh.
+ */
+@Component
+public class SettledOrderCache {
+
+    private final Cache<String, OrderSettlementDto> cache;
+
+    public SettledOrderCache(@Value("${cache.settled-orders.max-size:50000}") long maxSize,
+                             @Value("${cache.settled-orders.ttl:24h}") Duration ttl,
+                             MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "settledOrders");
+    }
+
+    public Optional<OrderSettlementDto> get(String razorpayOrderId) {
+        return Optional.ofNullable(cache.getIfPresent(razorpayOrderId)).map(this::copyOf);
+    }
+
+    public void put(String razorpayOrderId, String clerkId, Integer creditsAdded) {
+        cache.put(razorpayOrderId, OrderSettlementDto.builder()
+                .orderId(razorpayOrderId)
+                .clerkId(clerkId)
+                .creditsAdded(creditsAdded)
+                .build());
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private OrderSettlementDto copyOf(OrderSettlementDto settlement) {
+        return OrderSettlementDto.builder()
+                .orderId(settlement.getOrderId())
+                .clerkId(settlement.getClerkId())
+                .creditsAdded(settlement.getCreditsAdded())
+                .build();
+    }
+}
@@ -0,0 +1,67 @@
+package in.apoorvsahu.removebg.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import in.apoorvsahu.removebg.dtos.UserDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Bounded, TTL-limited cache of user profiles. Entries are evicted on every mutation, and again after the
+ * surrounding transaction commits, so a reader can never re-populate the cache with a pre-commit balance.
+ */
+@Component
+public class UserProfileCache {
+
+    private final Cache<String, UserDto> cache;
+
+    public UserProfileCache(@Value("${cache.user-profiles.max-size:10000}") long maxSize,
+                            @Value("${cache.user-profiles.ttl:60s}") Duration ttl,
+                            MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "userProfiles");
+    }
+
+    public UserDto get(String clerkId, Function<String, UserDto> loader) {
+        return copyOf(cache.get(clerkId, loader));
+    }
+
+    public void invalidate(String clerkId) {
+        cache.invalidate(clerkId);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.invalidate(clerkId);
+                }
+            });
+        }
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private UserDto copyOf(UserDto user) {
+        return UserDto.builder()
+                .clerkId(user.getClerkId())
+                .email(user.getEmail())
+                .firstName(user.getFirstName())
+                .lastName(user.getLastName())
+                .credits(user.getCredits())
+                .photoUrl(user.getPhotoUrl())
+                .build();
+    }
+}
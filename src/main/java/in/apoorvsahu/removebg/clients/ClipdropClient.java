@@ -2,6 +2,7 @@ package in.apoorvsahu.removebg.clients;
 
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestPart;
@@ -10,7 +11,10 @@ import org.springframework.web.multipart.MultipartFile;
 @FeignClient(name = "clipdropClient", url = "https://clipdrop-api.co")
 public interface ClipdropClient {
 
+    String REMAINING_CREDITS_HEADER = "x-remaining-credits";
+    String CREDITS_CONSUMED_HEADER = "x-credits-consumed";
+
     @PostMapping(value = "/remove-background/v1", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    byte[] removeBackground(@RequestPart("image_file")MultipartFile file,
-                     @RequestHeader("x-api-key") String apiKey);
+    ResponseEntity<byte[]> removeBackground(@RequestPart("image_file")MultipartFile file,
+                                            @RequestHeader("x-api-key") String apiKey);
 }
@@ -0,0 +1,157 @@
+package in.apoorvsahu.removebg.clients;
+
+import com.razorpay.Order;
+import com.razorpay.RazorpayException;
+import in.apoorvsahu.removebg.resilience.Bulkhead;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.ConnectionPool;
+import okhttp3.Credentials;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single Razorpay API client for the whole application. The Razorpay SDK builds a client per call and
+ * hardcodes its HTTP timeouts, so orders are created and fetched over one pooled OkHttp client with
+ * configurable timeouts instead, and returned as SDK {@link Order} objects.
+ */
+@Component
+@Slf4j
+public class RazorpayGateway {
+
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+
+    private final OkHttpClient httpClient;
+    private final HttpUrl apiUrl;
+    private final String authorization;
+    private final Bulkhead razorpayBulkhead;
+    private final MeterRegistry meterRegistry;
+
+    public RazorpayGateway(@Value("${razorpay.key.id}") String keyId,
+                           @Value("${razorpay.key.secret}") String keySecret,
+                           @Value("${razorpay.api-url:https://api.razorpay.com/v1/}") String apiUrl,
+                           @Value("${razorpay.http.connect-timeout:2s}") Duration connectTimeout,
+                           @Value("${razorpay.http.read-timeout:10s}") Duration readTimeout,
+                           @Value("${razorpay.http.max-idle-connections:16}") int maxIdleConnections,
+                           @Value("${razorpay.http.keep-alive:5m}") Duration keepAlive,
+                           @Qualifier("razorpayBulkhead") Bulkhead razorpayBulkhead,
+                           MeterRegistry meterRegistry) {
+        this.httpClient = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAlive.toMillis(), TimeUnit.MILLISECONDS))
+                .connectTimeout(connectTimeout)
+                .readTimeout(readTimeout)
+                .writeTimeout(readTimeout)
+                // POST /v1/orders is not idempotent, so a request that may have reached Razorpay is never replayed
+                .retryOnConnectionFailure(false)
+                .build();
+        this.apiUrl = HttpUrl.get(apiUrl.endsWith("/") ? apiUrl : apiUrl + "/");
+        this.authorization = Credentials.basic(keyId, keySecret);
+        this.razorpayBulkhead = razorpayBulkhead;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public Order createOrder(JSONObject orderRequest) throws RazorpayException {
+        return razorpayBulkhead.execute(() -> new Order(call("create_order", post("orders", orderRequest))));
+    }
+
+    public Order fetchOrder(String orderId) throws RazorpayException {
+        return razorpayBulkhead.execute(() -> new Order(call("fetch_order", get("orders", orderId))));
+    }
+
+    // Razorpay's order list filters on receipt, which is how an order whose id we never stored is found again
+    public Optional<Order> findOrderByReceipt(String receipt) throws RazorpayException {
+        return razorpayBulkhead.execute(() -> {
+            JSONArray items = call("find_order_by_receipt", list("orders", "receipt", receipt)).optJSONArray("items");
+            return items == null || items.length() == 0 ? Optional.empty() : Optional.of(new Order(items.getJSONObject(0)));
+        });
+    }
+
+    public CompletableFuture<Order> createOrderAsync(JSONObject orderRequest) {
+        return razorpayBulkhead.executeAsync(() -> new Order(call("create_order", post("orders", orderRequest))));
+    }
+
+    public CompletableFuture<Order> fetchOrderAsync(String orderId) {
+        return razorpayBulkhead.executeAsync(() -> new Order(call("fetch_order", get("orders", orderId))));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        httpClient.dispatcher().executorService().shutdown();
+        httpClient.connectionPool().evictAll();
+    }
+
+    private Request post(String resource, JSONObject body) {
+        return request(apiUrl.newBuilder().addPathSegment(resource).build())
+                .post(RequestBody.create(body.toString(), JSON))
+                .build();
+    }
+
+    private Request get(String resource, String id) {
+        return request(apiUrl.newBuilder().addPathSegment(resource).addPathSegment(id).build())
+                .get()
+                .build();
+    }
+
+    private Request list(String resource, String filter, String value) {
+        return request(apiUrl.newBuilder().addPathSegment(resource).addQueryParameter(filter, value).build())
+                .get()
+                .build();
+    }
+
+    private Request.Builder request(HttpUrl url) {
+        return new Request.Builder()
+                .url(url)
+                .header("Authorization", authorization)
+                .header("Accept", "application/json");
+    }
+
+    private JSONObject call(String operation, Request request) throws RazorpayException {
+        long startedAt = System.nanoTime();
+        String outcome = "io_error";
+        try (Response response = httpClient.newCall(request).execute()) {
+            ResponseBody body = response.body();
+            JSONObject json = new JSONObject(body != null ? body.string() : "{}");
+            if (response.isSuccessful()) {
+                outcome = "success";
+                return json;
+            }
+
+            outcome = response.code() >= 500 ? "server_error" : "client_error";
+            JSONObject error = json.optJSONObject("error");
+            String description = error != null ? error.optString("description", "") : "";
+            throw new RazorpayException("Razorpay " + operation + " failed with status " + response.code()
+                    + (description.isEmpty() ? "" : ": " + description));
+        } catch (IOException e) {
+            throw new RazorpayException("Razorpay " + operation + " request failed: " + e.getMessage(), e);
+        } catch (JSONException e) {
+            outcome = "invalid_response";
+            throw new RazorpayException("Razorpay " + operation + " returned an invalid response", e);
+        } finally {
+            Timer.builder("razorpay.request")
+                    .tag("operation", operation)
+                    .tag("outcome", outcome)
+                    .description("Latency of Razorpay API calls")
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package in.apoorvsahu.removebg.configs;
+
+import in.apoorvsahu.removebg.resilience.Bulkhead;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class BulkheadConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public Bulkhead clipdropBulkhead(@Value("${bulkhead.clipdrop.max-concurrent:32}") int maxConcurrent,
+                                     @Value("${bulkhead.clipdrop.queue-capacity:64}") int queueCapacity,
+                                     @Value("${bulkhead.clipdrop.timeout:60s}") Duration timeout,
+                                     MeterRegistry meterRegistry) {
+        return new Bulkhead("clipdrop", maxConcurrent, queueCapacity, timeout, meterRegistry);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public Bulkhead razorpayBulkhead(@Value("${bulkhead.razorpay.max-concurrent:16}") int maxConcurrent,
+                                     @Value("${bulkhead.razorpay.queue-capacity:32}") int queueCapacity,
+                                     @Value("${bulkhead.razorpay.timeout:15s}") Duration timeout,
+                                     MeterRegistry meterRegistry) {
+        return new Bulkhead("razorpay", maxConcurrent, queueCapacity, timeout, meterRegistry);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public Bulkhead clerkJwksBulkhead(@Value("${bulkhead.clerk-jwks.max-concurrent:2}") int maxConcurrent,
+                                      @Value("${bulkhead.clerk-jwks.queue-capacity:16}") int queueCapacity,
+                                      @Value("${bulkhead.clerk-jwks.timeout:5s}") Duration timeout,
+                                      MeterRegistry meterRegistry) {
+        return new Bulkhead("clerk-jwks", maxConcurrent, queueCapacity, timeout, meterRegistry);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public Bulkhead settlementBulkhead(@Value("${bulkhead.settlement.max-concurrent:4}") int maxConcurrent,
+                                       @Value("${bulkhead.settlement.queue-capacity:256}") int queueCapacity,
+                                       @Value("${bulkhead.settlement.timeout:30s}") Duration timeout,
+                                       MeterRegistry meterRegistry) {
+        return new Bulkhead("settlement", maxConcurrent, queueCapacity, timeout, meterRegistry);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public Bulkhead orderPersistenceBulkhead(@Value("${bulkhead.order-persistence.max-concurrent:4}") int maxConcurrent,
+                                             @Value("${bulkhead.order-persistence.queue-capacity:128}") int queueCapacity,
+                                             @Value("${bulkhead.order-persistence.timeout:10s}") Duration timeout,
+                                             MeterRegistry meterRegistry) {
+        return new Bulkhead("order-persistence", maxConcurrent, queueCapacity, timeout, meterRegistry);
+    }
+}
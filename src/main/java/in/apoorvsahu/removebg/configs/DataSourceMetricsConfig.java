@@ -0,0 +1,37 @@
+package in.apoorvsahu.removebg.configs;
+
+import com.zaxxer.hikari.HikariDataSource;
+import in.apoorvsahu.removebg.datasource.ConnectionHoldTimeDataSource;
+import in.apoorvsahu.removebg.datasource.TransactionMetricsListener;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class DataSourceMetricsConfig {
+
+    private static final String DATA_SOURCE_BEAN_NAME = "dataSource";
+
+    @Bean
+    public static BeanPostProcessor connectionHoldTimePostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                // only when the primary data source is the pool itself; with replica routing it is a lazy proxy
+                // and ReplicaRoutingConfig wraps each pool instead
+                if (DATA_SOURCE_BEAN_NAME.equals(beanName) && bean instanceof HikariDataSource dataSource) {
+                    return new ConnectionHoldTimeDataSource(dataSource, "primary", meterRegistry.getObject());
+                }
+                return bean;
+            }
+        };
+    }
+
+    // picked up by Spring Boot and registered on the transaction manager
+    @Bean
+    public TransactionMetricsListener transactionMetricsListener(MeterRegistry meterRegistry) {
+        return new TransactionMetricsListener(meterRegistry);
+    }
+}
@@ -0,0 +1,90 @@
+package in.apoorvsahu.removebg.configs;
+
+import com.zaxxer.hikari.HikariDataSource;
+import in.apoorvsahu.removebg.datasource.ConnectionHoldTimeDataSource;
+import in.apoorvsahu.removebg.datasource.ReplicaRoutingDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+@Configuration
+@ConditionalOnProperty(prefix = "app.datasource.replica", name = "url")
+public class ReplicaRoutingConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties dataSourceProperties) {
+        HikariDataSource dataSource = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("app.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(@Value("${app.datasource.replica.url}") String url,
+                                              @Value("${app.datasource.replica.username:${spring.datasource.username:}}") String username,
+                                              @Value("${app.datasource.replica.password:${spring.datasource.password:}}") String password) {
+        HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+        dataSource.setPoolName("replica");
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                                             @Qualifier("replicaDataSource") DataSource replicaDataSource,
+                                                             @Value("${app.datasource.replica.max-lag:5s}") Duration maxLag,
+                                                             @Value("${app.datasource.replica.stickiness-window:10s}") Duration stickinessWindow,
+                                                             @Value("${app.datasource.replica.lag-query:}") String lagQuery,
+                                                             MeterRegistry meterRegistry) {
+        // hold times are measured on the pools, beneath routing and the lazy proxy
+        return new ReplicaRoutingDataSource(
+                new ConnectionHoldTimeDataSource(primaryDataSource, "primary", meterRegistry),
+                new ConnectionHoldTimeDataSource(replicaDataSource, "replica", meterRegistry),
+                maxLag, stickinessWindow, lagQuery, meterRegistry);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+
+    @Bean
+    public ReplicaStatusProbe replicaStatusProbe(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new ReplicaStatusProbe(replicaRoutingDataSource);
+    }
+
+    public static class ReplicaStatusProbe {
+
+        private final ReplicaRoutingDataSource replicaRoutingDataSource;
+
+        ReplicaStatusProbe(ReplicaRoutingDataSource replicaRoutingDataSource) {
+            this.replicaRoutingDataSource = replicaRoutingDataSource;
+        }
+
+        @Scheduled(fixedDelayString = "${app.datasource.replica.probe-interval-ms:5000}")
+        public void probe() {
+            replicaRoutingDataSource.refreshReplicaStatus();
+        }
+    }
+}
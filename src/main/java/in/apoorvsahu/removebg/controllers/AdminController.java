@@ -0,0 +1,104 @@
+package in.apoorvsahu.removebg.controllers;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import in.apoorvsahu.removebg.dtos.AnalyticsReportDto;
+import in.apoorvsahu.removebg.dtos.UserImportResultDto;
+import in.apoorvsahu.removebg.exceptions.ValidationException;
+import in.apoorvsahu.removebg.response.RemoveBgResponse;
+import in.apoorvsahu.removebg.services.AnalyticsService;
+import in.apoorvsahu.removebg.services.UserImportService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+@RestController
+@RequestMapping("/api/admin")
+@RequiredArgsConstructor
+@Slf4j
+public class AdminController {
+
+    private final UserImportService userImportService;
+    private final AnalyticsService analyticsService;
+
+    @Value("${admin.clerk-ids:}")
+    private Set<String> adminClerkIds;
+
+    @PostMapping("/users/import")
+    public ResponseEntity<RemoveBgResponse> importUsers(HttpServletRequest request, Authentication authentication) {
+        try {
+            if (!isAdmin(authentication)) {
+                return buildErrorResponse(HttpStatus.FORBIDDEN, "Admin access required");
+            }
+
+            log.info("User import started by: {}", authentication.getName());
+            UserImportResultDto result = userImportService.importUsers(request.getInputStream());
+            return buildSuccessResponse(result, "Users imported successfully");
+
+        } catch (JsonProcessingException e) {
+            log.warn("Malformed user export: {}", e.getOriginalMessage());
+            return buildErrorResponse(HttpStatus.BAD_REQUEST, "Malformed export file: " + e.getOriginalMessage());
+        } catch (Exception e) {
+            log.error("Unexpected error while importing users: ", e);
+            return buildErrorResponse(HttpStatus.INTERNAL_SERVER_ERROR, "User import failed");
+        }
+    }
+
+    @GetMapping("/analytics")
+    public ResponseEntity<RemoveBgResponse> getAnalytics(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                         @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                         Authentication authentication) {
+        try {
+            if (!isAdmin(authentication)) {
+                return buildErrorResponse(HttpStatus.FORBIDDEN, "Admin access required");
+            }
+
+            AnalyticsReportDto report = analyticsService.getReport(from, to);
+            return buildSuccessResponse(report, "Analytics retrieved successfully");
+
+        } catch (ValidationException e) {
+            log.warn("Invalid analytics request: {}", e.getMessage());
+            return buildErrorResponse(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (Exception e) {
+            log.error("Unexpected error while retrieving analytics: ", e);
+            return buildErrorResponse(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to retrieve analytics");
+        }
+    }
+
+    private boolean isAdmin(Authentication authentication) {
+        return authentication != null && authentication.getName() != null
+                && adminClerkIds.contains(authentication.getName());
+    }
+
+    private ResponseEntity<RemoveBgResponse> buildSuccessResponse(Object data, String message) {
+        RemoveBgResponse response = RemoveBgResponse.builder()
+                .success(true)
+                .data(data)
+                .message(message)
+                .statusCode(HttpStatus.OK)
+                .build();
+        return ResponseEntity.ok(response);
+    }
+
+    private ResponseEntity<RemoveBgResponse> buildErrorResponse(HttpStatus status, String message) {
+        RemoveBgResponse response = RemoveBgResponse.builder()
+                .success(false)
+                .data(null)
+                .message(message)
+                .statusCode(status)
+                .build();
+        return ResponseEntity.status(status).body(response);
+    }
+}
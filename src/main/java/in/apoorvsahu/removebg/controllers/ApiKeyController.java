@@ -0,0 +1,98 @@
+package in.apoorvsahu.removebg.controllers;
+
+import in.apoorvsahu.removebg.dtos.ApiKeyDto;
+import in.apoorvsahu.removebg.exceptions.ApiKeyNotFoundException;
+import in.apoorvsahu.removebg.exceptions.ValidationException;
+import in.apoorvsahu.removebg.response.RemoveBgResponse;
+import in.apoorvsahu.removebg.services.ApiKeyService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/api-keys")
+@RequiredArgsConstructor
+@Slf4j
+public class ApiKeyController {
+
+    private final ApiKeyService apiKeyService;
+
+    @PostMapping
+    public ResponseEntity<RemoveBgResponse> createKey(@RequestBody ApiKeyDto request, Authentication authentication) {
+        try {
+            if (authentication == null || authentication.getName() == null || authentication.getName().isEmpty()) {
+                return buildErrorResponse(HttpStatus.UNAUTHORIZED, "Authentication required");
+            }
+
+            ApiKeyDto created = apiKeyService.createKey(authentication.getName(), request);
+            return buildSuccessResponse(HttpStatus.CREATED, created, "API key created. Store it now, it will not be shown again");
+
+        } catch (ValidationException e) {
+            log.warn("Invalid API key request: {}", e.getMessage());
+            return buildErrorResponse(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (Exception e) {
+            log.error("Unexpected error while creating API key: ", e);
+            return buildErrorResponse(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to create API key. Please try again later");
+        }
+    }
+
+    @GetMapping
+    public ResponseEntity<RemoveBgResponse> getKeys(Authentication authentication) {
+        try {
+            if (authentication == null || authentication.getName() == null || authentication.getName().isEmpty()) {
+                return buildErrorResponse(HttpStatus.UNAUTHORIZED, "Authentication required");
+            }
+
+            List<ApiKeyDto> keys = apiKeyService.getKeys(authentication.getName());
+            return buildSuccessResponse(HttpStatus.OK, keys, "API keys retrieved successfully");
+
+        } catch (Exception e) {
+            log.error("Unexpected error while retrieving API keys: ", e);
+            return buildErrorResponse(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to retrieve API keys. Please try again later");
+        }
+    }
+
+    @DeleteMapping("/{keyId}")
+    public ResponseEntity<RemoveBgResponse> revokeKey(@PathVariable String keyId, Authentication authentication) {
+        try {
+            if (authentication == null || authentication.getName() == null || authentication.getName().isEmpty()) {
+                return buildErrorResponse(HttpStatus.UNAUTHORIZED, "Authentication required");
+            }
+
+            apiKeyService.revokeKey(authentication.getName(), keyId);
+            return buildSuccessResponse(HttpStatus.OK, null, "API key revoked successfully");
+
+        } catch (ApiKeyNotFoundException e) {
+            log.warn("API key not found for revocation: {}", e.getMessage());
+            return buildErrorResponse(HttpStatus.NOT_FOUND, "API key not found");
+        } catch (Exception e) {
+            log.error("Unexpected error while revoking API key: ", e);
+            return buildErrorResponse(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to revoke API key. Please try again later");
+        }
+    }
+
+    private ResponseEntity<RemoveBgResponse> buildSuccessResponse(HttpStatus status, Object data, String message) {
+        RemoveBgResponse response = RemoveBgResponse.builder()
+                .success(true)
+                .data(data)
+                .message(message)
+                .statusCode(status)
+                .build();
+        return ResponseEntity.status(status).body(response);
+    }
+
+    private ResponseEntity<RemoveBgResponse> buildErrorResponse(HttpStatus status, String message) {
+        RemoveBgResponse response = RemoveBgResponse.builder()
+                .success(false)
+                .data(null)
+                .message(message)
+                .statusCode(status)
+                .build();
+        return ResponseEntity.status(status).body(response);
+    }
+}
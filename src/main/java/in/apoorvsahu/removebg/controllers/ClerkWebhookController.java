@@ -3,11 +3,13 @@ package in.apoorvsahu.removebg.controllers;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import in.apoorvsahu.removebg.dtos.UserDto;
-import in.apoorvsahu.removebg.exceptions.UserNotFoundException;
+import in.apoorvsahu.removebg.exceptions.UserConflictException;
 import in.apoorvsahu.removebg.exceptions.UserServiceException;
 import in.apoorvsahu.removebg.exceptions.ValidationException;
 import in.apoorvsahu.removebg.exceptions.WebhookException;
+import in.apoorvsahu.removebg.mappers.ClerkUserMapper;
 import in.apoorvsahu.removebg.response.RemoveBgResponse;
+import in.apoorvsahu.removebg.services.UserEventService;
 import in.apoorvsahu.removebg.services.UserService;
 import in.apoorvsahu.removebg.services.WebhookSignatureService;
 import lombok.RequiredArgsConstructor;
@@ -24,6 +26,8 @@ public class ClerkWebhookController {
 
     private final UserService userService;
     private final WebhookSignatureService webhookSignatureService;
+    private final UserEventService userEventService;
+    private final ClerkUserMapper clerkUserMapper;
 
     @PostMapping("/clerk")
     public ResponseEntity<RemoveBgResponse> handleClerkWebhook(@RequestHeader(value = "svix-id", required = false) String svixId,
@@ -72,6 +76,10 @@ public class ClerkWebhookController {
         } catch (WebhookException | ValidationException e) {
             log.error("Webhook validation error: {}", e.getMessage());
             return buildErrorResponse(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (UserConflictException e) {
+            // non-2xx so Clerk redelivers; the upsert succeeds once the other account gives up the email
+            log.warn("Conflicting user data in webhook: {}", e.getMessage());
+            return buildErrorResponse(HttpStatus.CONFLICT, e.getMessage());
         } catch (UserServiceException e) {
             log.error("User service error during webhook processing: {}", e.getMessage());
             return buildErrorResponse(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to process user data");
@@ -95,8 +103,9 @@ public class ClerkWebhookController {
 
     private void handleUserDeleted(JsonNode data) {
         try {
-            String clerkId = extractClerkId(data);
+            String clerkId = clerkUserMapper.extractClerkId(data);
             userService.deleteUserByClerkId(clerkId);
+            userEventService.disconnectUser(clerkId);
             log.info("Successfully deleted user with clerkId: {}", clerkId);
         } catch (Exception e) {
             log.error("Error handling user deletion: ", e);
@@ -106,16 +115,11 @@ public class ClerkWebhookController {
 
     private void handleUserUpdated(JsonNode data) {
         try {
-            String clerkId = extractClerkId(data);
-            UserDto existingUser = userService.getUserByClerkId(clerkId);
-
-            updateUserFromWebhookData(existingUser, data);
-
-            userService.saveUser(existingUser);
-            log.info("Successfully updated user with clerkId: {}", clerkId);
-        } catch (UserNotFoundException e) {
-            log.warn("User not found for update, creating new user instead");
-            handleUserCreated(data);
+            UserDto user = clerkUserMapper.toUserDto(data);
+            userService.upsertProfile(user);
+            log.info("Successfully updated user with clerkId: {}", user.getClerkId());
+        } catch (UserConflictException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error handling user update: ", e);
             throw new UserServiceException("Failed to update user");
@@ -124,67 +128,17 @@ public class ClerkWebhookController {
 
     private void handleUserCreated(JsonNode data) {
         try {
-            UserDto newUser = buildUserFromWebhookData(data);
-            userService.saveUser(newUser);
+            UserDto newUser = clerkUserMapper.toUserDto(data);
+            userService.upsertProfile(newUser);
             log.info("Successfully created user with clerkId: {}", newUser.getClerkId());
+        } catch (UserConflictException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error handling user creation: ", e);
             throw new UserServiceException("Failed to create user");
         }
     }
 
-    private UserDto buildUserFromWebhookData(JsonNode data) {
-        return UserDto.builder()
-                .clerkId(extractClerkId(data))
-                .email(extractEmail(data))
-                .firstName(extractFirstName(data))
-                .lastName(extractLastName(data))
-                .photoUrl(extractPhotoUrl(data))
-                .build();
-    }
-
-    private void updateUserFromWebhookData(UserDto user, JsonNode data) {
-        user.setEmail(extractEmail(data));
-        user.setFirstName(extractFirstName(data));
-        user.setLastName(extractLastName(data));
-        user.setPhotoUrl(extractPhotoUrl(data));
-    }
-
-    private String extractClerkId(JsonNode data) {
-        String clerkId = data.path("id").asText();
-        if (clerkId == null || clerkId.trim().isEmpty()) {
-            throw new ValidationException("Missing user ID in webhook data");
-        }
-        return clerkId;
-    }
-
-    private String extractEmail(JsonNode data) {
-        JsonNode emailAddresses = data.path("email_addresses");
-        if (emailAddresses.isArray() && !emailAddresses.isEmpty()) {
-            String email = emailAddresses.get(0).path("email_address").asText();
-            if (email == null || email.trim().isEmpty()) {
-                throw new ValidationException("Missing email address in webhook data");
-            }
-            return email;
-        }
-        throw new ValidationException("No email addresses found in webhook data");
-    }
-
-    private String extractFirstName(JsonNode data) {
-        String firstName = data.path("first_name").asText();
-        return firstName != null && !firstName.trim().isEmpty() ? firstName : "Unknown";
-    }
-
-    private String extractLastName(JsonNode data) {
-        String lastName = data.path("last_name").asText();
-        return lastName != null && !lastName.trim().isEmpty() ? lastName : "User";
-    }
-
-    private String extractPhotoUrl(JsonNode data) {
-        String photoUrl = data.path("image_url").asText();
-        return photoUrl != null && !photoUrl.trim().isEmpty() ? photoUrl : null;
-    }
-
     private ResponseEntity<RemoveBgResponse> buildSuccessResponse(Object data, String message) {
         RemoveBgResponse response = RemoveBgResponse.builder()
                 .success(true)
@@ -1,24 +1,46 @@
 package in.apoorvsahu.removebg.controllers;
 
-import in.apoorvsahu.removebg.dtos.UserDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import in.apoorvsahu.removebg.dtos.CreditReservationDto;
+import in.apoorvsahu.removebg.dtos.HistoryPageDto;
+import in.apoorvsahu.removebg.dtos.ProcessedImageDto;
+import in.apoorvsahu.removebg.dtos.UsageHistoryDto;
+import in.apoorvsahu.removebg.entities.UsageEvent;
+import in.apoorvsahu.removebg.exceptions.InsufficientCreditsException;
 import in.apoorvsahu.removebg.exceptions.InvalidFileException;
 import in.apoorvsahu.removebg.exceptions.RemoveBgServiceException;
+import in.apoorvsahu.removebg.exceptions.UserNotFoundException;
+import in.apoorvsahu.removebg.exceptions.ValidationException;
 import in.apoorvsahu.removebg.response.RemoveBgResponse;
+import in.apoorvsahu.removebg.response.StreamingRemoveBgResponse;
+import in.apoorvsahu.removebg.security.ApiKeyAuthFilter;
+import in.apoorvsahu.removebg.services.ClipdropQuotaService;
+import in.apoorvsahu.removebg.services.CreditLedgerService;
+import in.apoorvsahu.removebg.services.HistoryService;
 import in.apoorvsahu.removebg.services.RemoveBgService;
-import in.apoorvsahu.removebg.services.UserService;
+import in.apoorvsahu.removebg.services.UsageEventService;
+import in.apoorvsahu.removebg.services.UserEventService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.util.Base64;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 
 @RestController
@@ -28,14 +50,23 @@ import java.util.Map;
 public class ImageController {
 
     private final RemoveBgService removeBgService;
-    private final UserService userService;
+    private final CreditLedgerService creditLedgerService;
+    private final UserEventService userEventService;
+    private final ClipdropQuotaService clipdropQuotaService;
+    private final UsageEventService usageEventService;
+    private final HistoryService historyService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${clipdrop.quota.low-priority-max-credits:5}")
+    private int lowPriorityMaxCredits;
 
     private static final String[] ALLOWED_TYPES = {"image/jpeg", "image/jpg", "image/png", "image/webp"};
     private static final long MAX_FILE_SIZE = 30 * 1024 * 1024; // 30MB
+    private static final String ENGINE = "clipdrop";
 
     @PostMapping("/remove-background")
-    public ResponseEntity<RemoveBgResponse> removeBackground(@RequestParam("file") MultipartFile file,
-                                                             Authentication authentication) {
+    public ResponseEntity<?> removeBackground(@RequestParam("file") MultipartFile file,
+                                              Authentication authentication) {
         try {
             if (authentication == null || authentication.getName() == null || authentication.getName().isEmpty()) {
                 return buildErrorResponse(HttpStatus.UNAUTHORIZED, "Authentication required");
@@ -44,28 +75,53 @@ public class ImageController {
             validateFile(file);
 
             String clerkId = authentication.getName();
-            UserDto userDto = userService.getUserByClerkId(clerkId);
+            int[] dimensions = readDimensions(file);
 
-            if (userDto.getCredits() == null || userDto.getCredits() <= 0) {
-                Map<String, Object> creditData = new HashMap<>();
-                creditData.put("creditBalance", userDto.getCredits() != null ? userDto.getCredits() : 0);
+            //phase 1: reserve the credit in a short transaction before the upstream call
+            CreditReservationDto reservation;
+            try {
+                reservation = creditLedgerService.reserve(clerkId, 1);
+            } catch (InsufficientCreditsException e) {
+                log.warn("Insufficient credits for user: {}", clerkId);
+                recordUsage(clerkId, file, dimensions, null, UsageEvent.Outcome.INSUFFICIENT_CREDITS, 0);
+                return buildInsufficientCreditsResponse(e.getCreditBalance());
+            }
 
-                log.warn("Insufficient credits for user: {}", authentication.getName());
-                return buildErrorResponse(HttpStatus.PAYMENT_REQUIRED, "Insufficient credits to process image", creditData);
+            if (!clipdropQuotaService.tryAdmit(resolvePriority(reservation, authentication))) {
+                creditLedgerService.release(reservation.getReservationId(), "throttled");
+                recordUsage(clerkId, file, dimensions, null, UsageEvent.Outcome.THROTTLED, 0);
+                return buildErrorResponse(HttpStatus.SERVICE_UNAVAILABLE, "Service is busy. Please try again in a few minutes");
             }
 
-            byte[] imageBytes = removeBgService.removeBackground(file);
-            String base64Image = Base64.getEncoder().encodeToString(imageBytes);
+            //phase 2: upstream call with no JDBC connection held
+            userEventService.publishCredits(clerkId, reservation.getRemainingCredits());
+            userEventService.publishProcessingStatus(clerkId, "PROCESSING", "Removing background");
+            ProcessedImageDto processedImage;
+            try {
+                processedImage = removeBgService.removeBackground(file);
+            } catch (RuntimeException e) {
+                creditLedgerService.release(reservation.getReservationId(), "upstream_failure");
+                userEventService.publishProcessingStatus(clerkId, "FAILED", "Failed to process image");
+                recordUsage(clerkId, file, dimensions, null, UsageEvent.Outcome.FAILED, 0);
+                throw e;
+            }
 
-            userDto.setCredits(userDto.getCredits() - 1);
-            userService.saveUser(userDto);
+            //phase 3: append the commit entry, the user row is not touched again
+            if (!creditLedgerService.commit(reservation.getReservationId())) {
+                log.warn("Reservation {} expired before commit for user: {}", reservation.getReservationId(), clerkId);
+            }
+            userEventService.publishProcessingStatus(clerkId, "COMPLETED", "Image background removed successfully");
+            recordUsage(clerkId, file, dimensions, processedImage.getUpstreamLatencyMs(), UsageEvent.Outcome.SUCCESS, reservation.getAmount());
 
-            log.info("Successfully processed image for user: {}, remaining credits: {}", clerkId, userDto.getCredits());
-            return buildSuccessResponse(base64Image, "Image background removed successfully");
+            log.info("Successfully processed image for user: {}, remaining credits: {}", clerkId, reservation.getRemainingCredits());
+            return buildStreamingSuccessResponse(processedImage.getImageData(), "Image background removed successfully");
 
         } catch (InvalidFileException e) {
             log.warn("Invalid file uploaded: {}", e.getMessage());
             return buildErrorResponse(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (UserNotFoundException e) {
+            log.warn("User not found for image processing: {}", e.getMessage());
+            return buildErrorResponse(HttpStatus.NOT_FOUND, "User account not found");
         } catch (RemoveBgServiceException e) {
             log.error("Error processing image: {}", e.getMessage());
             return buildErrorResponse(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
@@ -75,6 +131,78 @@ public class ImageController {
         }
     }
 
+    @GetMapping("/history")
+    public ResponseEntity<RemoveBgResponse> getImageHistory(@RequestParam(required = false) String cursor,
+                                                            @RequestParam(defaultValue = "20") int limit,
+                                                            Authentication authentication) {
+        try {
+            if (authentication == null || authentication.getName() == null || authentication.getName().isEmpty()) {
+                return buildErrorResponse(HttpStatus.UNAUTHORIZED, "Authentication required");
+            }
+
+            HistoryPageDto<UsageHistoryDto> history = historyService.getUsageHistory(authentication.getName(), cursor, limit);
+            return buildSuccessResponse(history, "Image history retrieved successfully");
+
+        } catch (ValidationException e) {
+            log.warn("Invalid image history request: {}", e.getMessage());
+            return buildErrorResponse(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (Exception e) {
+            log.error("Unexpected error while retrieving image history: ", e);
+            return buildErrorResponse(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to retrieve image history. Please try again later");
+        }
+    }
+
+    // batch traffic from API keys can wait, so it is the first to be shed when the upstream quota runs low
+    private ClipdropQuotaService.Priority resolvePriority(CreditReservationDto reservation, Authentication authentication) {
+        if (ApiKeyAuthFilter.isApiKey(authentication)) {
+            return ClipdropQuotaService.Priority.LOW;
+        }
+
+        int balanceBeforeReservation = reservation.getRemainingCredits() + reservation.getAmount();
+        return balanceBeforeReservation > lowPriorityMaxCredits ? ClipdropQuotaService.Priority.HIGH : ClipdropQuotaService.Priority.LOW;
+    }
+
+    private void recordUsage(String clerkId, MultipartFile file, int[] dimensions, Long upstreamLatencyMs,
+                             UsageEvent.Outcome outcome, int creditsCharged) {
+        usageEventService.record(UsageEvent.builder()
+                .clerkId(clerkId)
+                .inputBytes(file.getSize())
+                .contentType(file.getContentType())
+                .width(dimensions != null ? dimensions[0] : null)
+                .height(dimensions != null ? dimensions[1] : null)
+                .upstreamLatencyMs(upstreamLatencyMs)
+                .engine(ENGINE)
+                .outcome(outcome)
+                .creditsCharged(creditsCharged)
+                .build());
+    }
+
+    // reads only the image header, returns null for formats ImageIO cannot parse (e.g. WebP)
+    private int[] readDimensions(MultipartFile file) {
+        try (InputStream inputStream = file.getInputStream();
+             ImageInputStream imageInputStream = ImageIO.createImageInputStream(inputStream)) {
+            if (imageInputStream == null) {
+                return null;
+            }
+
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInputStream);
+            if (!readers.hasNext()) {
+                return null;
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageInputStream, true, true);
+                return new int[]{reader.getWidth(0), reader.getHeight(0)};
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            log.debug("Could not read image dimensions: {}", e.getMessage());
+            return null;
+        }
+    }
+
     private void validateFile(MultipartFile file) {
         if (file == null || file.isEmpty()) {
             throw new InvalidFileException("Please select an image file");
@@ -104,6 +232,12 @@ public class ImageController {
         return false;
     }
 
+    private ResponseEntity<StreamingRemoveBgResponse> buildStreamingSuccessResponse(byte[] imageBytes, String message) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(new StreamingRemoveBgResponse(imageBytes, message, HttpStatus.OK, objectMapper));
+    }
+
     private ResponseEntity<RemoveBgResponse> buildSuccessResponse(Object data, String message) {
         RemoveBgResponse response = RemoveBgResponse.builder()
                 .success(true)
@@ -114,6 +248,12 @@ public class ImageController {
         return ResponseEntity.ok(response);
     }
 
+    private ResponseEntity<RemoveBgResponse> buildInsufficientCreditsResponse(Integer creditBalance) {
+        Map<String, Object> creditData = new HashMap<>();
+        creditData.put("creditBalance", creditBalance != null ? creditBalance : 0);
+        return buildErrorResponse(HttpStatus.PAYMENT_REQUIRED, "Insufficient credits to process image", creditData);
+    }
+
     private ResponseEntity<RemoveBgResponse> buildErrorResponse(HttpStatus status, String message) {
         return buildErrorResponse(status, message, null);
     }
@@ -2,11 +2,15 @@ package in.apoorvsahu.removebg.controllers;
 
 import com.razorpay.Order;
 import com.razorpay.RazorpayException;
+import in.apoorvsahu.removebg.dtos.HistoryPageDto;
+import in.apoorvsahu.removebg.dtos.OrderHistoryDto;
 import in.apoorvsahu.removebg.dtos.RazorpayOrderDto;
 import in.apoorvsahu.removebg.exceptions.InvalidPlanException;
 import in.apoorvsahu.removebg.exceptions.OrderNotFoundException;
 import in.apoorvsahu.removebg.exceptions.PaymentProcessingException;
+import in.apoorvsahu.removebg.exceptions.ValidationException;
 import in.apoorvsahu.removebg.response.RemoveBgResponse;
+import in.apoorvsahu.removebg.services.HistoryService;
 import in.apoorvsahu.removebg.services.OrderService;
 import in.apoorvsahu.removebg.services.RazorpayService;
 import lombok.RequiredArgsConstructor;
@@ -17,6 +21,8 @@ import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("/api/orders")
@@ -26,33 +32,26 @@ public class OrderController {
 
     private final OrderService orderService;
     private final RazorpayService razorpayService;
+    private final HistoryService historyService;
 
     @PostMapping
-    public ResponseEntity<RemoveBgResponse> createOrder(@RequestParam String planId, Authentication authentication) {
+    public CompletableFuture<ResponseEntity<RemoveBgResponse>> createOrder(@RequestParam String planId, Authentication authentication) {
         try {
             if (authentication == null || authentication.getName() == null || authentication.getName().isEmpty()) {
-                return buildErrorResponse(HttpStatus.UNAUTHORIZED, "Authentication required");
+                return CompletableFuture.completedFuture(buildErrorResponse(HttpStatus.UNAUTHORIZED, "Authentication required"));
             }
 
             String clerkId = authentication.getName();
-            Order order = orderService.createOrder(planId.trim(), clerkId);
-            RazorpayOrderDto responseDto = convertToDto(order);
-
-            log.info("Order created successfully for user: {} with plan: {}", clerkId, planId);
-            return buildSuccessResponse(responseDto, "Order created successfully", HttpStatus.CREATED);
+            return orderService.createOrder(planId.trim(), clerkId)
+                    .thenApply(order -> {
+                        RazorpayOrderDto responseDto = convertToDto(order);
+                        log.info("Order created successfully for user: {} with plan: {}", clerkId, planId);
+                        return buildSuccessResponse(responseDto, "Order created successfully", HttpStatus.CREATED);
+                    })
+                    .exceptionally(this::buildCreateOrderErrorResponse);
 
-        } catch (InvalidPlanException e) {
-            log.warn("Invalid plan selected: {}", e.getMessage());
-            return buildErrorResponse(HttpStatus.BAD_REQUEST, "Invalid plan selected. Please choose a valid plan");
-        } catch (PaymentProcessingException e) {
-            log.error("Payment processing error: {}", e.getMessage());
-            return buildErrorResponse(HttpStatus.SERVICE_UNAVAILABLE, "Payment service is temporarily unavailable. Please try again later");
-        } catch (RazorpayException e) {
-            log.error("Razorpay error while creating order: {}", e.getMessage());
-            return buildErrorResponse(HttpStatus.SERVICE_UNAVAILABLE, "Payment gateway error. Please try again later");
         } catch (Exception e) {
-            log.error("Unexpected error while creating order: ", e);
-            return buildErrorResponse(HttpStatus.INTERNAL_SERVER_ERROR, "Something went wrong. Please try again later");
+            return CompletableFuture.completedFuture(buildCreateOrderErrorResponse(e));
         }
     }
 
@@ -81,6 +80,9 @@ public class OrderController {
             if (success) {
                 log.info("Payment verified successfully for order: {}", razorpayOrderId);
                 return buildSuccessResponse(verificationResult, message, HttpStatus.OK);
+            } else if (Boolean.TRUE.equals(verificationResult.get("pending"))) {
+                log.debug("Payment for order {} is awaiting webhook settlement", razorpayOrderId);
+                return buildSuccessResponse(verificationResult, message, HttpStatus.ACCEPTED);
             } else {
                 log.warn("Payment verification failed for order: {}", razorpayOrderId);
                 return buildErrorResponse(HttpStatus.PAYMENT_REQUIRED, message);
@@ -101,6 +103,41 @@ public class OrderController {
         }
     }
 
+    @GetMapping("/history")
+    public ResponseEntity<RemoveBgResponse> getOrderHistory(@RequestParam(required = false) String cursor,
+                                                            @RequestParam(defaultValue = "20") int limit,
+                                                            Authentication authentication) {
+        try {
+            if (authentication == null || authentication.getName() == null || authentication.getName().isEmpty()) {
+                return buildErrorResponse(HttpStatus.UNAUTHORIZED, "Authentication required");
+            }
+
+            HistoryPageDto<OrderHistoryDto> history = historyService.getOrderHistory(authentication.getName(), cursor, limit);
+            return buildSuccessResponse(history, "Order history retrieved successfully");
+
+        } catch (ValidationException e) {
+            log.warn("Invalid order history request: {}", e.getMessage());
+            return buildErrorResponse(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (Exception e) {
+            log.error("Unexpected error while retrieving order history: ", e);
+            return buildErrorResponse(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to retrieve order history. Please try again later");
+        }
+    }
+
+    private ResponseEntity<RemoveBgResponse> buildCreateOrderErrorResponse(Throwable failure) {
+        Throwable e = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+        if (e instanceof InvalidPlanException) {
+            log.warn("Invalid plan selected: {}", e.getMessage());
+            return buildErrorResponse(HttpStatus.BAD_REQUEST, "Invalid plan selected. Please choose a valid plan");
+        }
+        if (e instanceof PaymentProcessingException) {
+            log.error("Payment processing error: {}", e.getMessage());
+            return buildErrorResponse(HttpStatus.SERVICE_UNAVAILABLE, "Payment service is temporarily unavailable. Please try again later");
+        }
+        log.error("Unexpected error while creating order: ", e);
+        return buildErrorResponse(HttpStatus.INTERNAL_SERVER_ERROR, "Something went wrong. Please try again later");
+    }
+
     private RazorpayOrderDto convertToDto(Order order) {
         try {
             return RazorpayOrderDto.builder()
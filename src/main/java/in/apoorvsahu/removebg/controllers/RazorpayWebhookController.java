@@ -0,0 +1,131 @@
+package in.apoorvsahu.removebg.controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import in.apoorvsahu.removebg.exceptions.BulkheadException;
+import in.apoorvsahu.removebg.exceptions.OrderNotFoundException;
+import in.apoorvsahu.removebg.exceptions.PaymentProcessingException;
+import in.apoorvsahu.removebg.response.RemoveBgResponse;
+import in.apoorvsahu.removebg.services.OrderSettlementService;
+import in.apoorvsahu.removebg.services.WebhookSignatureService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+@RestController
+@RequestMapping("/api/webhooks")
+@Slf4j
+public class RazorpayWebhookController {
+
+    private static final String PAYMENT_CAPTURED = "payment.captured";
+    private static final String ORDER_PAID = "order.paid";
+
+    private final WebhookSignatureService webhookSignatureService;
+    private final OrderSettlementService orderSettlementService;
+    private final ObjectMapper objectMapper;
+    private final Counter unknownOrders;
+
+    public RazorpayWebhookController(WebhookSignatureService webhookSignatureService,
+                                     OrderSettlementService orderSettlementService,
+                                     ObjectMapper objectMapper,
+                                     MeterRegistry meterRegistry) {
+        this.webhookSignatureService = webhookSignatureService;
+        this.orderSettlementService = orderSettlementService;
+        this.objectMapper = objectMapper;
+        this.unknownOrders = Counter.builder("razorpay.webhook.unknown_orders")
+                .description("Paid-order webhooks for orders found in neither the live nor the archived orders")
+                .register(meterRegistry);
+    }
+
+    @PostMapping("/razorpay")
+    public CompletableFuture<ResponseEntity<RemoveBgResponse>> handleRazorpayWebhook(@RequestHeader(value = "X-Razorpay-Signature", required = false) String signature,
+                                                                                     @RequestHeader(value = "X-Razorpay-Event-Id", required = false) String eventId,
+                                                                                     @RequestBody String payload) {
+        try {
+            if (signature == null || signature.trim().isEmpty()) {
+                return CompletableFuture.completedFuture(buildErrorResponse(HttpStatus.BAD_REQUEST, "Missing X-Razorpay-Signature header"));
+            }
+
+            if (!webhookSignatureService.verifyRazorpaySignature(signature, payload)) {
+                log.warn("Invalid Razorpay webhook signature received");
+                return CompletableFuture.completedFuture(buildErrorResponse(HttpStatus.UNAUTHORIZED, "Invalid webhook signature"));
+            }
+
+            JsonNode rootNode = objectMapper.readTree(payload);
+            String eventType = rootNode.path("event").asText();
+            String orderId = extractOrderId(eventType, rootNode.path("payload"));
+
+            if (orderId == null) {
+                // acknowledged so Razorpay does not keep redelivering events we never act on
+                log.debug("Ignoring Razorpay webhook event: {} ({})", eventType, eventId);
+                return CompletableFuture.completedFuture(buildSuccessResponse("Event ignored"));
+            }
+
+            log.info("Processing Razorpay webhook event: {} for order: {} ({})", eventType, orderId, eventId);
+            return orderSettlementService.settleAsync(orderId)
+                    .thenApply(settlement -> buildSuccessResponse(settlement.isNewlySettled()
+                            ? "Order settled" : "Order already settled"))
+                    .exceptionally(failure -> buildSettlementErrorResponse(orderId, failure));
+
+        } catch (Exception e) {
+            log.error("Unexpected error while processing Razorpay webhook: ", e);
+            return CompletableFuture.completedFuture(buildErrorResponse(HttpStatus.BAD_REQUEST, "Invalid webhook payload"));
+        }
+    }
+
+    private String extractOrderId(String eventType, JsonNode payload) {
+        String orderId = switch (eventType) {
+            case PAYMENT_CAPTURED -> payload.path("payment").path("entity").path("order_id").asText(null);
+            case ORDER_PAID -> payload.path("order").path("entity").path("id").asText(null);
+            default -> null;
+        };
+        return orderId == null || orderId.trim().isEmpty() ? null : orderId;
+    }
+
+    private ResponseEntity<RemoveBgResponse> buildSettlementErrorResponse(String orderId, Throwable failure) {
+        Throwable e = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+        if (e instanceof OrderNotFoundException) {
+            // settlement already looked in the archive, so either the gateway id is not attached yet or the
+            // payment belongs to no order we know of; both need a redelivery or a human, never a silent 200
+            unknownOrders.increment();
+            log.error("Razorpay webhook for unknown order: {}", orderId);
+            return buildErrorResponse(HttpStatus.NOT_FOUND, "Unknown order");
+        }
+        if (e instanceof BulkheadException) {
+            log.warn("Settlement of order {} rejected: {}", orderId, e.getMessage());
+            return buildErrorResponse(HttpStatus.SERVICE_UNAVAILABLE, "Settlement is busy. Please retry");
+        }
+        if (e instanceof PaymentProcessingException) {
+            log.error("Failed to settle order {}: {}", orderId, e.getMessage());
+            return buildErrorResponse(HttpStatus.SERVICE_UNAVAILABLE, "Settlement failed. Please retry");
+        }
+        log.error("Unexpected error while settling order {}: ", orderId, e);
+        return buildErrorResponse(HttpStatus.INTERNAL_SERVER_ERROR, "Webhook processing failed");
+    }
+
+    private ResponseEntity<RemoveBgResponse> buildSuccessResponse(String message) {
+        RemoveBgResponse response = RemoveBgResponse.builder()
+                .success(true)
+                .data(null)
+                .message(message)
+                .statusCode(HttpStatus.OK)
+                .build();
+        return ResponseEntity.ok(response);
+    }
+
+    private ResponseEntity<RemoveBgResponse> buildErrorResponse(HttpStatus status, String message) {
+        RemoveBgResponse response = RemoveBgResponse.builder()
+                .success(false)
+                .data(null)
+                .message(message)
+                .statusCode(status)
+                .build();
+        return ResponseEntity.status(status).body(response);
+    }
+}
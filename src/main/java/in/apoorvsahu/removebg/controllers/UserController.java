@@ -1,16 +1,20 @@
 package in.apoorvsahu.removebg.controllers;
 
 import in.apoorvsahu.removebg.dtos.UserDto;
+import in.apoorvsahu.removebg.exceptions.EventStreamLimitException;
 import in.apoorvsahu.removebg.exceptions.UserNotFoundException;
 import in.apoorvsahu.removebg.exceptions.ValidationException;
 import in.apoorvsahu.removebg.response.RemoveBgResponse;
+import in.apoorvsahu.removebg.services.UserEventService;
 import in.apoorvsahu.removebg.services.UserService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -22,6 +26,7 @@ import java.util.Map;
 public class UserController {
 
     private final UserService userService;
+    private final UserEventService userEventService;
 
     @PostMapping
     public ResponseEntity<RemoveBgResponse> createOrUpdateUser(@RequestBody UserDto userDto, Authentication authentication) {
@@ -76,6 +81,32 @@ public class UserController {
         }
     }
 
+    @GetMapping("/events")
+    public SseEmitter streamUserEvents(Authentication authentication) {
+        if (authentication == null || authentication.getName() == null || authentication.getName().isEmpty()) {
+            throw new AuthenticationCredentialsNotFoundException("Authentication required");
+        }
+
+        String clerkId = authentication.getName();
+        UserDto existingUser = userService.getUserByClerkId(clerkId);
+
+        SseEmitter emitter = userEventService.subscribe(clerkId);
+        userEventService.publishCredits(clerkId, existingUser.getCredits());
+        return emitter;
+    }
+
+    @ExceptionHandler(EventStreamLimitException.class)
+    public ResponseEntity<RemoveBgResponse> handleEventStreamLimit(EventStreamLimitException e) {
+        log.warn("Event stream rejected: {}", e.getMessage());
+        return buildErrorResponse(HttpStatus.TOO_MANY_REQUESTS, e.getMessage());
+    }
+
+    @ExceptionHandler(UserNotFoundException.class)
+    public ResponseEntity<RemoveBgResponse> handleUserNotFound(UserNotFoundException e) {
+        log.warn("User not found for event stream: {}", e.getMessage());
+        return buildErrorResponse(HttpStatus.NOT_FOUND, "User account not found");
+    }
+
     private void validateUserDto(UserDto userDto) {
         if (userDto == null) {
             throw new ValidationException("User data is required");
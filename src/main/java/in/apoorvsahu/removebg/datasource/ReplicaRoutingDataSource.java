@@ -0,0 +1,191 @@
+package in.apoorvsahu.removebg.datasource;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Sends read-only transactions to the replica pool and everything else to the primary. Falls back to the
+ * primary while the replica is unreachable or lagging, and for a short window after a write to a user's
+ * data so they always read what they just wrote, whether the write came from their own request or from a
+ * webhook or background job. Must sit behind a LazyConnectionDataSourceProxy so the read-only
+ * flag is known by the time a physical connection is requested.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Route {
+        PRIMARY,
+        REPLICA
+    }
+
+    private static final String LAG_COLUMN = "Seconds_Behind_Source";
+
+    private final DataSource replicaDataSource;
+    private final Duration maxReplicaLag;
+    private final String lagQuery;
+    private final Cache<String, Boolean> recentWriters;
+
+    private final Counter primaryWrites;
+    private final Counter primaryReadsReplicaUnavailable;
+    private final Counter primaryReadsSticky;
+    private final Counter replicaReads;
+
+    private volatile boolean replicaAvailable = true;
+    private volatile long replicaLagSeconds = 0;
+
+    public ReplicaRoutingDataSource(DataSource primaryDataSource, DataSource replicaDataSource, Duration maxReplicaLag,
+                                    Duration stickinessWindow, String lagQuery, MeterRegistry meterRegistry) {
+        this.replicaDataSource = replicaDataSource;
+        this.maxReplicaLag = maxReplicaLag;
+        this.lagQuery = lagQuery;
+        this.recentWriters = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(stickinessWindow)
+                .build();
+
+        setTargetDataSources(Map.of(Route.PRIMARY, primaryDataSource, Route.REPLICA, replicaDataSource));
+        setDefaultTargetDataSource(primaryDataSource);
+        afterPropertiesSet();
+
+        this.primaryWrites = routingCounter(meterRegistry, Route.PRIMARY, "read_write");
+        this.primaryReadsReplicaUnavailable = routingCounter(meterRegistry, Route.PRIMARY, "replica_unavailable");
+        this.primaryReadsSticky = routingCounter(meterRegistry, Route.PRIMARY, "read_your_writes");
+        this.replicaReads = routingCounter(meterRegistry, Route.REPLICA, "read_only");
+        Gauge.builder("datasource.replica.lag", this, routing -> routing.replicaLagSeconds)
+                .description("Last observed replication lag of the read replica")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("datasource.replica.available", this, routing -> routing.replicaAvailable ? 1 : 0)
+                .description("Whether read-only transactions are currently routed to the replica")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String user = currentUser();
+
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (user != null && TransactionSynchronizationManager.isActualTransactionActive()) {
+                recentWriters.put(user, Boolean.TRUE);
+            }
+            primaryWrites.increment();
+            return Route.PRIMARY;
+        }
+
+        if (!replicaAvailable) {
+            primaryReadsReplicaUnavailable.increment();
+            return Route.PRIMARY;
+        }
+
+        if (user != null && recentWriters.getIfPresent(user) != null) {
+            primaryReadsSticky.increment();
+            return Route.PRIMARY;
+        }
+
+        replicaReads.increment();
+        return Route.REPLICA;
+    }
+
+    /**
+     * Pins a user's read-only transactions to the primary for the stickiness window. Needed for writes made
+     * on behalf of a user outside their own request, where the security context names someone else or no one.
+     */
+    public void markRecentWriter(String clerkId) {
+        recentWriters.put(clerkId, Boolean.TRUE);
+    }
+
+    public void refreshReplicaStatus() {
+        try (Connection connection = replicaDataSource.getConnection()) {
+            if (!connection.isValid(2)) {
+                markReplica(false, "connection is not valid");
+                return;
+            }
+
+            if (lagQuery == null || lagQuery.trim().isEmpty()) {
+                markReplica(true, null);
+                return;
+            }
+
+            Long lagSeconds = queryLagSeconds(connection);
+            if (lagSeconds == null) {
+                markReplica(false, "replication is not running");
+                return;
+            }
+
+            replicaLagSeconds = lagSeconds;
+            boolean withinLimit = lagSeconds <= maxReplicaLag.toSeconds();
+            markReplica(withinLimit, withinLimit ? null : "lag of " + lagSeconds + "s exceeds " + maxReplicaLag.toSeconds() + "s");
+        } catch (Exception e) {
+            markReplica(false, e.getMessage());
+        }
+    }
+
+    public boolean isReplicaAvailable() {
+        return replicaAvailable;
+    }
+
+    private Long queryLagSeconds(Connection connection) throws Exception {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(lagQuery)) {
+            if (!resultSet.next()) {
+                return null;
+            }
+
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            int column = 1;
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                if (LAG_COLUMN.equalsIgnoreCase(metaData.getColumnLabel(i))) {
+                    column = i;
+                    break;
+                }
+            }
+
+            long lag = resultSet.getLong(column);
+            return resultSet.wasNull() ? null : lag;
+        }
+    }
+
+    private void markReplica(boolean available, String reason) {
+        if (replicaAvailable != available) {
+            if (available) {
+                log.info("Read replica is available again, routing read-only transactions to it");
+            } else {
+                log.warn("Routing read-only transactions to primary: {}", reason);
+            }
+        }
+        replicaAvailable = available;
+    }
+
+    private String currentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        return authentication.getName();
+    }
+
+    private Counter routingCounter(MeterRegistry meterRegistry, Route route, String reason) {
+        return Counter.builder("datasource.routing")
+                .tag("pool", route.name().toLowerCase())
+                .tag("reason", reason)
+                .description("Connections routed to each pool")
+                .register(meterRegistry);
+    }
+}
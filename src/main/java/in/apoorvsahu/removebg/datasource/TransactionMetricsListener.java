@@ -0,0 +1,69 @@
+package in.apoorvsahu.removebg.datasource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.transaction.TransactionExecution;
+import org.springframework.transaction.TransactionExecutionListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every physical transaction from begin to commit or rollback, tagged with the transaction name
+ * ({@code Class.method} for {@code @Transactional}, {@code unnamed} for TransactionTemplate). Together with
+ * connection hold time this shows whether anything slow, such as a gateway call, runs inside a transaction.
+ */
+public class TransactionMetricsListener implements TransactionExecutionListener {
+
+    private static final String UNNAMED = "unnamed";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<TransactionExecution, Long> startedAt = new ConcurrentHashMap<>();
+
+    public TransactionMetricsListener(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void afterBegin(TransactionExecution transaction, Throwable beginFailure) {
+        if (beginFailure == null && transaction.isNewTransaction()) {
+            startedAt.put(transaction, System.nanoTime());
+        }
+    }
+
+    @Override
+    public void afterCommit(TransactionExecution transaction, Throwable commitFailure) {
+        record(transaction, commitFailure == null ? "commit" : "commit_failed");
+    }
+
+    @Override
+    public void afterRollback(TransactionExecution transaction, Throwable rollbackFailure) {
+        record(transaction, "rollback");
+    }
+
+    private void record(TransactionExecution transaction, String outcome) {
+        Long started = startedAt.remove(transaction);
+        if (started == null) {
+            return;
+        }
+
+        Timer.builder("db.transaction.duration")
+                .tag("name", shortName(transaction.getTransactionName()))
+                .tag("outcome", outcome)
+                .tag("read_only", String.valueOf(transaction.isReadOnly()))
+                .description("Time from transaction begin to commit or rollback")
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    }
+
+    private String shortName(String transactionName) {
+        if (transactionName == null || transactionName.isEmpty()) {
+            return UNNAMED;
+        }
+        int method = transactionName.lastIndexOf('.');
+        int type = method > 0 ? transactionName.lastIndexOf('.', method - 1) : -1;
+        return type >= 0 ? transactionName.substring(type + 1) : transactionName;
+    }
+}
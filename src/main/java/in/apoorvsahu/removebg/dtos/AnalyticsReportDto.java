@@ -0,0 +1,25 @@
+package in.apoorvsahu.removebg.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class AnalyticsReportDto {
+    private LocalDate from;
+    private LocalDate to;
+    private List<DailyRevenueDto> revenue;
+    private List<DailyUsageDto> usage;
+    private long ordersPaid;
+    private double totalRevenue;
+    private long creditsGranted;
+    private long imagesProcessed;
+    private long creditsConsumed;
+}
@@ -0,0 +1,26 @@
+package in.apoorvsahu.removebg.dtos;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.sql.Timestamp;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ApiKeyDto {
+    private String keyId;
+    private String name;
+    private Integer rateLimitPerMinute;
+    private Long requestCount;
+    private Timestamp lastUsedAt;
+    private Boolean revoked;
+    private Timestamp createdAt;
+    // full key, only returned by the create call
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String key;
+}
@@ -0,0 +1,17 @@
+package in.apoorvsahu.removebg.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class CreditReservationDto {
+    private String reservationId;
+    private String clerkId;
+    private Integer amount;
+    private Integer remainingCredits;
+}
@@ -0,0 +1,21 @@
+package in.apoorvsahu.removebg.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class DailyRevenueDto {
+    private LocalDate date;
+    private String plan;
+    private Long ordersCreated;
+    private Long ordersPaid;
+    private Double revenue;
+    private Long creditsGranted;
+}
@@ -0,0 +1,18 @@
+package in.apoorvsahu.removebg.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class DailyUsageDto {
+    private LocalDate date;
+    private Long imagesProcessed;
+    private Long creditsConsumed;
+}
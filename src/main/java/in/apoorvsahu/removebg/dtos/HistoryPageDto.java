@@ -0,0 +1,18 @@
+package in.apoorvsahu.removebg.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class HistoryPageDto<T> {
+    private List<T> items;
+    // pass back as the cursor parameter to fetch the next page, null on the last page
+    private String nextCursor;
+}
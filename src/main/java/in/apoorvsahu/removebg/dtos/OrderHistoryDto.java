@@ -0,0 +1,24 @@
+package in.apoorvsahu.removebg.dtos;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.sql.Timestamp;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class OrderHistoryDto {
+    @JsonIgnore
+    private Long id;
+    private String orderId;
+    private String plan;
+    private Integer credits;
+    private Double amount;
+    private Boolean payment;
+    private Timestamp createdAt;
+}
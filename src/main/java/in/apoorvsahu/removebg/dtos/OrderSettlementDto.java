@@ -0,0 +1,19 @@
+package in.apoorvsahu.removebg.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class OrderSettlementDto {
+    private String orderId;
+    private String clerkId;
+    private Integer creditsAdded;
+    private Integer totalCredits;
+    // false when the order had already been settled by an earlier webhook or verify call
+    private boolean newlySettled;
+}
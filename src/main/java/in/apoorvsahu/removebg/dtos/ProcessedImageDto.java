@@ -0,0 +1,17 @@
+package in.apoorvsahu.removebg.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ProcessedImageDto {
+    private byte[] imageData;
+    private long upstreamLatencyMs;
+    private Integer remainingCredits;
+    private Integer creditsConsumed;
+}
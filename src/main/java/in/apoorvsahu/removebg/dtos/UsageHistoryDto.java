@@ -0,0 +1,26 @@
+package in.apoorvsahu.removebg.dtos;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import in.apoorvsahu.removebg.entities.UsageEvent;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.sql.Timestamp;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class UsageHistoryDto {
+    @JsonIgnore
+    private Long id;
+    private UsageEvent.Outcome outcome;
+    private Integer creditsCharged;
+    private Long inputBytes;
+    private Integer width;
+    private Integer height;
+    private Long upstreamLatencyMs;
+    private Timestamp createdAt;
+}
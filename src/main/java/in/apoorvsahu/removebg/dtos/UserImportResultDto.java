@@ -0,0 +1,21 @@
+package in.apoorvsahu.removebg.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class UserImportResultDto {
+    private long recordsRead;
+    private long usersUpserted;
+    private long recordsSkipped;
+    // valid records whose email already belongs to another clerk id, so no row was written for them
+    private long recordsConflicted;
+    private long recordsFailed;
+    private long durationMs;
+    private double recordsPerSecond;
+}
@@ -0,0 +1,54 @@
+package in.apoorvsahu.removebg.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.sql.Timestamp;
+
+// server-to-server credential; only a SHA-256 of the secret is stored, the plaintext is shown once at creation
+@Entity
+@Table(name = "tbl_api_keys", indexes = {
+        @Index(name = "idx_api_keys_clerk_created", columnList = "clerkId, createdAt")
+})
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Data
+public class ApiKey {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    @Column(unique = true, nullable = false, length = 24)
+    private String keyId;
+    @Column(nullable = false, length = 64)
+    private String secretHash;
+    @Column(nullable = false)
+    private String clerkId;
+    private String name;
+    @Column(nullable = false)
+    private Integer rateLimitPerMinute;
+    @Column(nullable = false)
+    private Long requestCount;
+    private Timestamp lastUsedAt;
+    @Column(nullable = false)
+    private Boolean revoked;
+    @CreationTimestamp
+    @Column(nullable = false, updatable = false)
+    private Timestamp createdAt;
+    private Timestamp revokedAt;
+
+    @PrePersist
+    public void prePersist(){
+        if(requestCount == null){
+            requestCount = 0L;
+        }
+        if(revoked == null){
+            revoked = false;
+        }
+    }
+}
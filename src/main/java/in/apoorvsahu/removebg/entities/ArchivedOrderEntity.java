@@ -0,0 +1,38 @@
+package in.apoorvsahu.removebg.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.sql.Timestamp;
+
+// rows moved out of tbl_orders by the archival job, ids are kept from the hot table
+@Entity
+@Table(name = "tbl_orders_archive", indexes = {
+        @Index(name = "idx_orders_archive_order_id", columnList = "orderId"),
+        @Index(name = "idx_orders_archive_clerk_created", columnList = "clerkId, createdAt")
+})
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Data
+public class ArchivedOrderEntity {
+
+    @Id
+    private Long id;
+    private String orderId;
+    @Column(length = 40)
+    private String receipt;
+    private String clerkId;
+    private String plan;
+    private Double amount;
+    private Integer credits;
+    private Boolean payment;
+    @Column(nullable = false)
+    private Timestamp createdAt;
+    private Timestamp paidAt;
+    @Column(nullable = false)
+    private Timestamp archivedAt;
+}
@@ -0,0 +1,51 @@
+package in.apoorvsahu.removebg.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.sql.Timestamp;
+
+@Entity
+@Table(name = "tbl_credit_ledger", indexes = {
+        @Index(name = "idx_credit_ledger_reservation", columnList = "reservationId"),
+        @Index(name = "idx_credit_ledger_type_created", columnList = "entryType, createdAt"),
+        @Index(name = "idx_credit_ledger_type_settled", columnList = "entryType, settled")
+})
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Data
+public class CreditLedgerEntry {
+
+    public enum EntryType {
+        RESERVE,
+        COMMIT,
+        RELEASE
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    @Column(nullable = false)
+    private String reservationId;
+    @Column(nullable = false)
+    private String clerkId;
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private EntryType entryType;
+    @Column(nullable = false)
+    private Integer amount;
+    // set to the reservation id on COMMIT and RELEASE rows so a reservation can only be resolved once
+    @Column(unique = true)
+    private String resolutionKey;
+    @Column(nullable = false)
+    private Boolean settled;
+    private String reason;
+    @CreationTimestamp
+    @Column(nullable = false, updatable = false)
+    private Timestamp createdAt;
+}
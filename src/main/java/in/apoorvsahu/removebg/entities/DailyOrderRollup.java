@@ -0,0 +1,36 @@
+package in.apoorvsahu.removebg.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Entity
+@Table(name = "tbl_daily_order_rollups", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_daily_order_rollups_date_plan", columnNames = {"rollupDate", "plan"})
+})
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Data
+public class DailyOrderRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    @Column(nullable = false)
+    private LocalDate rollupDate;
+    @Column(nullable = false)
+    private String plan;
+    @Column(nullable = false)
+    private Long ordersCreated;
+    @Column(nullable = false)
+    private Long ordersPaid;
+    @Column(nullable = false)
+    private Double revenue;
+    @Column(nullable = false)
+    private Long creditsGranted;
+}
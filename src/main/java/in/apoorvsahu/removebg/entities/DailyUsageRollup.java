@@ -0,0 +1,28 @@
+package in.apoorvsahu.removebg.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Entity
+@Table(name = "tbl_daily_usage_rollups")
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Data
+public class DailyUsageRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    @Column(unique = true, nullable = false)
+    private LocalDate rollupDate;
+    @Column(nullable = false)
+    private Long imagesProcessed;
+    @Column(nullable = false)
+    private Long creditsConsumed;
+}
@@ -0,0 +1,28 @@
+package in.apoorvsahu.removebg.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.sql.Timestamp;
+
+// how far an incremental job has processed its source table, rows before the watermark are never read again
+@Entity
+@Table(name = "tbl_job_watermarks")
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Data
+public class JobWatermark {
+
+    @Id
+    @Column(length = 64)
+    private String jobName;
+    @Column(nullable = false)
+    private Timestamp watermark;
+    // for jobs that walk their source by id instead of time
+    private Long position;
+    private Timestamp updatedAt;
+}
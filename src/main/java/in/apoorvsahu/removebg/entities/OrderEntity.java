@@ -10,7 +10,16 @@ import org.hibernate.annotations.CreationTimestamp;
 import java.sql.Timestamp;
 
 @Entity
-@Table(name = "tbl_orders")
+@Table(name = "tbl_orders", indexes = {
+        // history seek key; created by V1 on existing schemas, see db/migration/mysql
+        @Index(name = "idx_orders_clerk_created", columnList = "clerkId, createdAt, id"),
+        @Index(name = "idx_orders_payment_created", columnList = "payment, createdAt"),
+        @Index(name = "idx_orders_created", columnList = "createdAt"),
+        @Index(name = "idx_orders_paid_at", columnList = "paidAt"),
+        @Index(name = "idx_orders_unattached", columnList = "orderId, createdAt"),
+        @Index(name = "idx_orders_next_check", columnList = "payment, nextCheckAt"),
+        @Index(name = "idx_orders_attached_at", columnList = "attachedAt")
+})
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
@@ -22,6 +31,9 @@ public class OrderEntity {
     private Long id;
     @Column(unique = true)
     private String orderId;
+    // our own id, sent to Razorpay before orderId is known so a crash between the two can be recovered
+    @Column(unique = true, length = 40)
+    private String receipt;
     private String clerkId;
     private String plan;
     private Double amount;
@@ -30,6 +42,12 @@ public class OrderEntity {
     @CreationTimestamp
     @Column(nullable = false, updatable = false)
     private Timestamp createdAt;
+    // when the Razorpay order id was attached, which can be well after createdAt when recovery attaches it
+    private Timestamp attachedAt;
+    private Timestamp paidAt;
+    // set by reconciliation once the gateway reported the order unpaid, see OrderReconciliationServiceImpl
+    private Timestamp nextCheckAt;
+    private Integer checkCount;
 
     @PrePersist
     public void prePersist(){
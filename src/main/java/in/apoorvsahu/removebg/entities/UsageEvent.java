@@ -0,0 +1,51 @@
+package in.apoorvsahu.removebg.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.sql.Timestamp;
+
+@Entity
+@Table(name = "tbl_usage_events", indexes = {
+        // covers the usage history projection so a page is served from the index alone
+        @Index(name = "idx_usage_events_clerk_created", columnList = "clerkId, createdAt, id, outcome, creditsCharged, inputBytes, width, height, upstreamLatencyMs"),
+        @Index(name = "idx_usage_events_created", columnList = "createdAt")
+})
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Data
+public class UsageEvent {
+
+    public enum Outcome {
+        SUCCESS,
+        INSUFFICIENT_CREDITS,
+        THROTTLED,
+        FAILED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    @Column(nullable = false)
+    private String clerkId;
+    @Column(nullable = false)
+    private Long inputBytes;
+    private String contentType;
+    private Integer width;
+    private Integer height;
+    private Long upstreamLatencyMs;
+    @Column(nullable = false, length = 32)
+    private String engine;
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private Outcome outcome;
+    @Column(nullable = false)
+    private Integer creditsCharged;
+    // taken when the request finished, not when the batch was flushed
+    @Column(nullable = false, updatable = false)
+    private Timestamp createdAt;
+}
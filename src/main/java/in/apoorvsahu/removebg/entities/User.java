@@ -14,6 +14,8 @@ import lombok.NoArgsConstructor;
 @Builder
 public class User {
 
+    public static final int DEFAULT_CREDITS = 5;
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -29,7 +31,7 @@ public class User {
     @PrePersist
     public void prePersist(){
         if(credits == null){
-            credits = 5;
+            credits = DEFAULT_CREDITS;
         }
     }
 }
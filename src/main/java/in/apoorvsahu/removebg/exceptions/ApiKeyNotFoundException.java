@@ -0,0 +1,11 @@
+package in.apoorvsahu.removebg.exceptions;
+
+public class ApiKeyNotFoundException extends RuntimeException {
+    public ApiKeyNotFoundException(String message) {
+        super(message);
+    }
+
+    public ApiKeyNotFoundException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,11 @@
+package in.apoorvsahu.removebg.exceptions;
+
+public class BulkheadException extends RuntimeException {
+    public BulkheadException(String message) {
+        super(message);
+    }
+
+    public BulkheadException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
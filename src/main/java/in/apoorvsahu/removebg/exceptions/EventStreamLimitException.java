@@ -0,0 +1,11 @@
+package in.apoorvsahu.removebg.exceptions;
+
+public class EventStreamLimitException extends RuntimeException {
+    public EventStreamLimitException(String message) {
+        super(message);
+    }
+
+    public EventStreamLimitException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
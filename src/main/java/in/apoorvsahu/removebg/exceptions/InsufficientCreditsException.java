@@ -0,0 +1,19 @@
+package in.apoorvsahu.removebg.exceptions;
+
+import lombok.Getter;
+
+@Getter
+public class InsufficientCreditsException extends RuntimeException {
+
+    private final Integer creditBalance;
+
+    public InsufficientCreditsException(String message, Integer creditBalance) {
+        super(message);
+        this.creditBalance = creditBalance;
+    }
+
+    public InsufficientCreditsException(String message, Integer creditBalance, Throwable cause) {
+        super(message, cause);
+        this.creditBalance = creditBalance;
+    }
+}
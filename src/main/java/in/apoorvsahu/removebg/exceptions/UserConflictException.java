@@ -0,0 +1,7 @@
+package in.apoorvsahu.removebg.exceptions;
+
+public class UserConflictException extends RuntimeException {
+    public UserConflictException(String message) {
+        super(message);
+    }
+}
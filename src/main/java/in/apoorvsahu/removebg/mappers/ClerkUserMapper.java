@@ -0,0 +1,56 @@
+package in.apoorvsahu.removebg.mappers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import in.apoorvsahu.removebg.dtos.UserDto;
+import in.apoorvsahu.removebg.exceptions.ValidationException;
+import org.springframework.stereotype.Component;
+
+// maps Clerk user objects, as sent in webhook data and returned by the Clerk users API, to a UserDto
+@Component
+public class ClerkUserMapper {
+
+    public UserDto toUserDto(JsonNode data) {
+        return UserDto.builder()
+                .clerkId(extractClerkId(data))
+                .email(extractEmail(data))
+                .firstName(extractFirstName(data))
+                .lastName(extractLastName(data))
+                .photoUrl(extractPhotoUrl(data))
+                .build();
+    }
+
+    public String extractClerkId(JsonNode data) {
+        String clerkId = data.path("id").asText();
+        if (clerkId == null || clerkId.trim().isEmpty()) {
+            throw new ValidationException("Missing user ID in webhook data");
+        }
+        return clerkId;
+    }
+
+    private String extractEmail(JsonNode data) {
+        JsonNode emailAddresses = data.path("email_addresses");
+        if (emailAddresses.isArray() && !emailAddresses.isEmpty()) {
+            String email = emailAddresses.get(0).path("email_address").asText();
+            if (email == null || email.trim().isEmpty()) {
+                throw new ValidationException("Missing email address in webhook data");
+            }
+            return email;
+        }
+        throw new ValidationException("No email addresses found in webhook data");
+    }
+
+    private String extractFirstName(JsonNode data) {
+        String firstName = data.path("first_name").asText();
+        return firstName != null && !firstName.trim().isEmpty() ? firstName : "Unknown";
+    }
+
+    private String extractLastName(JsonNode data) {
+        String lastName = data.path("last_name").asText();
+        return lastName != null && !lastName.trim().isEmpty() ? lastName : "User";
+    }
+
+    private String extractPhotoUrl(JsonNode data) {
+        String photoUrl = data.path("image_url").asText();
+        return photoUrl != null && !photoUrl.trim().isEmpty() ? photoUrl : null;
+    }
+}
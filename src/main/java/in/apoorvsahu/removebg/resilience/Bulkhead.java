@@ -0,0 +1,159 @@
+package in.apoorvsahu.removebg.resilience;
+
+import in.apoorvsahu.removebg.exceptions.BulkheadException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded executor dedicated to one external dependency, so a slow dependency can only exhaust its own
+ * threads and queue instead of the shared request threads.
+ */
+@Slf4j
+public class Bulkhead {
+
+    @FunctionalInterface
+    public interface Call<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    private final String name;
+    private final Duration timeout;
+    private final ThreadPoolExecutor executor;
+    private final Counter rejectedCounter;
+    private final Counter timeoutCounter;
+    private final Timer queueWaitTimer;
+
+    public Bulkhead(String name, int maxConcurrent, int queueCapacity, Duration timeout, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.timeout = timeout;
+
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "bulkhead-" + name + "-" + threadCounter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+
+        Gauge.builder("bulkhead.active", executor, ThreadPoolExecutor::getActiveCount)
+                .tag("name", name)
+                .description("Calls currently executing in the bulkhead")
+                .register(meterRegistry);
+        Gauge.builder("bulkhead.queued", executor, pool -> pool.getQueue().size())
+                .tag("name", name)
+                .description("Calls waiting for a bulkhead thread")
+                .register(meterRegistry);
+        Gauge.builder("bulkhead.saturation", executor,
+                        pool -> (double) (pool.getActiveCount() + pool.getQueue().size()) / (maxConcurrent + queueCapacity))
+                .tag("name", name)
+                .description("Fraction of bulkhead capacity (threads and queue) in use")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("bulkhead.rejected")
+                .tag("name", name)
+                .description("Calls rejected because the bulkhead was full")
+                .register(meterRegistry);
+        this.timeoutCounter = Counter.builder("bulkhead.timeouts")
+                .tag("name", name)
+                .description("Calls abandoned after exceeding the bulkhead timeout")
+                .register(meterRegistry);
+        this.queueWaitTimer = Timer.builder("bulkhead.queue.wait")
+                .tag("name", name)
+                .description("Time calls spent queued before starting")
+                .register(meterRegistry);
+    }
+
+    public <T, E extends Exception> T execute(Call<T, E> call) throws E {
+        Future<T> future = submitTask(call);
+        try {
+            return future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            timeoutCounter.increment();
+            log.warn("Call to {} timed out after {} ms", name, timeout.toMillis());
+            throw new BulkheadException(name + " did not respond in time", e);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new BulkheadException("Interrupted while waiting for " + name, e);
+        } catch (ExecutionException e) {
+            throw this.<E>rethrow(e.getCause());
+        }
+    }
+
+    // completes on a bulkhead thread, or exceptionally with BulkheadException when full or past the timeout
+    public <T, E extends Exception> CompletableFuture<T> executeAsync(Call<T, E> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<T> future;
+        try {
+            future = submitTask(() -> {
+                try {
+                    T value = call.call();
+                    result.complete(value);
+                    return value;
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                    throw e;
+                }
+            });
+        } catch (BulkheadException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+
+        CompletableFuture.delayedExecutor(timeout.toMillis(), TimeUnit.MILLISECONDS).execute(() -> {
+            if (result.completeExceptionally(new BulkheadException(name + " did not respond in time"))) {
+                future.cancel(true);
+                timeoutCounter.increment();
+                log.warn("Call to {} timed out after {} ms", name, timeout.toMillis());
+            }
+        });
+        return result;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private <T, E extends Exception> Future<T> submitTask(Call<T, E> call) {
+        long enqueuedAt = System.nanoTime();
+        try {
+            return executor.submit(() -> {
+                queueWaitTimer.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+                return call.call();
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            log.warn("Bulkhead {} is saturated, rejecting call", name);
+            throw new BulkheadException(name + " is saturated", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <E extends Exception> E rethrow(Throwable cause) throws E {
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        throw (E) cause;
+    }
+}
@@ -0,0 +1,72 @@
+package in.apoorvsahu.removebg.response;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpStatus;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Writes the same JSON as a successful {@link RemoveBgResponse} carrying a Base64 image in {@code data},
+ * but encodes the image straight into the response stream instead of building the Base64 string in memory.
+ * Written by {@link StreamingRemoveBgResponseConverter}.
+ */
+public class StreamingRemoveBgResponse {
+
+    private static final int CHUNK_SIZE = 3 * 8192;
+
+    private final byte[] imageBytes;
+    private final byte[] prefix;
+    private final byte[] suffix;
+
+    public StreamingRemoveBgResponse(byte[] imageBytes, String message, HttpStatus status, ObjectMapper objectMapper) {
+        this.imageBytes = imageBytes;
+        try {
+            this.prefix = "{\"success\":true,\"data\":\"".getBytes(StandardCharsets.UTF_8);
+            this.suffix = ("\",\"message\":" + objectMapper.writeValueAsString(message)
+                    + ",\"statusCode\":" + objectMapper.writeValueAsString(status) + "}")
+                    .getBytes(StandardCharsets.UTF_8);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize response envelope", e);
+        }
+    }
+
+    public long getContentLength() {
+        long encodedLength = 4L * ((imageBytes.length + 2) / 3);
+        return prefix.length + encodedLength + suffix.length;
+    }
+
+    public void writeTo(OutputStream outputStream) throws IOException {
+        outputStream.write(prefix);
+
+        try (OutputStream encoder = Base64.getEncoder().wrap(new NonClosingOutputStream(outputStream))) {
+            for (int offset = 0; offset < imageBytes.length; offset += CHUNK_SIZE) {
+                encoder.write(imageBytes, offset, Math.min(CHUNK_SIZE, imageBytes.length - offset));
+            }
+        }
+
+        outputStream.write(suffix);
+        outputStream.flush();
+    }
+
+    private static class NonClosingOutputStream extends FilterOutputStream {
+
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
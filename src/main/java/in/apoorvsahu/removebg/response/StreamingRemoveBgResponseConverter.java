@@ -0,0 +1,43 @@
+package in.apoorvsahu.removebg.response;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+@Component
+public class StreamingRemoveBgResponseConverter extends AbstractHttpMessageConverter<StreamingRemoveBgResponse> {
+
+    public StreamingRemoveBgResponseConverter() {
+        super(MediaType.APPLICATION_JSON);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return StreamingRemoveBgResponse.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected StreamingRemoveBgResponse readInternal(Class<? extends StreamingRemoveBgResponse> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("StreamingRemoveBgResponse is write-only", inputMessage);
+    }
+
+    @Override
+    protected Long getContentLength(StreamingRemoveBgResponse response, MediaType contentType) {
+        return response.getContentLength();
+    }
+
+    @Override
+    protected void writeInternal(StreamingRemoveBgResponse response, HttpOutputMessage outputMessage) throws IOException {
+        response.writeTo(outputMessage.getBody());
+    }
+}
@@ -0,0 +1,96 @@
+package in.apoorvsahu.removebg.security;
+
+import in.apoorvsahu.removebg.services.ApiKeyService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Authenticates server-to-server calls carrying an {@code X-API-Key} header as the key's owner, without any JWT
+ * work. Keys are only accepted on {@code api-keys.allowed-paths}; requests without the header fall through to
+ * {@link ClerkJwtAuthFilter}.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ApiKeyAuthFilter extends OncePerRequestFilter {
+
+    public static final String API_KEY_HEADER = "X-API-Key";
+    public static final String API_KEY_AUTHORITY = "ROLE_API_KEY";
+    private static final List<GrantedAuthority> AUTHORITIES = List.of(new SimpleGrantedAuthority(API_KEY_AUTHORITY));
+
+    private final ApiKeyService apiKeyService;
+
+    @Value("${api-keys.allowed-paths:/api/images/remove-background}")
+    private Set<String> allowedPaths;
+
+    public static boolean isApiKey(Authentication authentication) {
+        return authentication != null && authentication.getAuthorities().stream()
+                .anyMatch(authority -> API_KEY_AUTHORITY.equals(authority.getAuthority()));
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getHeader(API_KEY_HEADER) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (!allowedPaths.contains(path)) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN, "API keys are not accepted for this endpoint");
+            return;
+        }
+
+        ApiKeyService.ApiKeyAccess access;
+        try {
+            access = apiKeyService.authenticate(request.getHeader(API_KEY_HEADER), request.getRemoteAddr());
+        } catch (DataAccessException e) {
+            log.error("Unable to verify API key: {}", e.getMessage());
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Unable to verify API key. Please try again later");
+            return;
+        }
+
+        if (access.result() == ApiKeyService.AccessResult.INVALID) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN, "Invalid API key");
+            return;
+        }
+        if (access.result() == ApiKeyService.AccessResult.BLOCKED) {
+            response.setHeader("Retry-After", String.valueOf(60 - (System.currentTimeMillis() / 1000) % 60));
+            response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), "Too many invalid API keys");
+            return;
+        }
+        if (access.result() == ApiKeyService.AccessResult.RATE_LIMITED) {
+            // windows are whole minutes, so the next one opens at the top of the minute
+            response.setHeader("Retry-After", String.valueOf(60 - (System.currentTimeMillis() / 1000) % 60));
+            response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), "API key rate limit exceeded");
+            return;
+        }
+
+        UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(
+                access.clerkId(), null, AUTHORITIES
+        );
+        authenticationToken.setDetails(access.keyId());
+
+        SecurityContextHolder.getContext().setAuthentication(authenticationToken);
+        filterChain.doFilter(request, response);
+    }
+}
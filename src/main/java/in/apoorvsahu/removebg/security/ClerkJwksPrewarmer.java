@@ -0,0 +1,76 @@
+package in.apoorvsahu.removebg.security;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Loads Clerk's signing keys before the application reports itself ready, so the first authenticated request on a
+ * new instance does not pay for a JWKS fetch. Keys from {@code clerk.jwks-json} or {@code clerk.jwks-file} (any
+ * Spring resource location, e.g. {@code file:/etc/clerk/jwks.json}) are installed first, then the live JWKS is
+ * fetched once. Neither step fails startup; the provider falls back to fetching on demand.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ClerkJwksPrewarmer implements ApplicationRunner {
+
+    private final ClerkJwksProvider jwksProvider;
+    private final ResourceLoader resourceLoader;
+
+    @Value("${clerk.jwks-json:}")
+    private String jwksJson;
+
+    @Value("${clerk.jwks-file:}")
+    private String jwksFile;
+
+    @Value("${clerk.jwks.prewarm.enabled:true}")
+    private boolean prewarmEnabled;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        loadLocalKeys();
+
+        if (!prewarmEnabled) {
+            return;
+        }
+        try {
+            jwksProvider.refreshNow();
+            log.info("Fetched Clerk signing keys before accepting traffic");
+        } catch (Exception e) {
+            log.warn("Could not fetch Clerk signing keys at startup, will retry on demand: {}", e.getMessage());
+        }
+    }
+
+    private void loadLocalKeys() {
+        String source = null;
+        try {
+            String json = null;
+            if (jwksJson != null && !jwksJson.isBlank()) {
+                source = "clerk.jwks-json";
+                json = jwksJson;
+            } else if (jwksFile != null && !jwksFile.isBlank()) {
+                source = jwksFile;
+                Resource resource = resourceLoader.getResource(jwksFile);
+                try (InputStream inputStream = resource.getInputStream()) {
+                    json = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+                }
+            }
+
+            if (json != null) {
+                int loaded = jwksProvider.loadKeys(json);
+                log.info("Loaded {} Clerk signing keys from {}", loaded, source);
+            }
+        } catch (Exception e) {
+            log.warn("Ignoring local Clerk signing keys from {}: {}", source, e.getMessage());
+        }
+    }
+}
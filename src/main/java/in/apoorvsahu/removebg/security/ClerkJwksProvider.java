@@ -2,40 +2,253 @@ package in.apoorvsahu.removebg.security;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import in.apoorvsahu.removebg.resilience.Bulkhead;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.io.InputStream;
 import java.math.BigInteger;
 import java.net.URL;
+import java.net.URLConnection;
 import java.security.KeyFactory;
 import java.security.PublicKey;
 import java.security.spec.RSAPublicKeySpec;
+import java.time.Duration;
 import java.util.Base64;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Holds Clerk's signing keys as an immutable snapshot that is swapped on refresh. Only one JWKS fetch runs at a
+ * time and callers without a usable key wait for it. Keys are refreshed in the background before they expire, and
+ * an expired key is still served for up to {@code clerk.jwks.max-stale} while a refresh runs on the bulkhead, so a
+ * slow or failing endpoint never holds up a request that has a usable key. Unknown kids are remembered so they
+ * cannot force a fetch per request.
+ */
 @Component
+@Slf4j
 public class ClerkJwksProvider {
 
     @Value("${clerk.jwks-url}")
     private String jwksUrl;
 
-    private final Map<String, PublicKey> keyCache = new HashMap<>();
-    private long lastFetchTime = 0;
-    private static final long CACHE_TTL = 3600000; // 1 hour
+    @Value("${clerk.jwks-connect-timeout-ms:2000}")
+    private int connectTimeoutMs;
+
+    @Value("${clerk.jwks-read-timeout-ms:3000}")
+    private int readTimeoutMs;
+
+    @Value("${clerk.jwks.ttl:1h}")
+    private Duration ttl;
+
+    @Value("${clerk.jwks.refresh-ahead:5m}")
+    private Duration refreshAhead;
+
+    @Value("${clerk.jwks.max-stale:6h}")
+    private Duration maxStale;
+
+    @Value("${clerk.jwks.min-refresh-interval:10s}")
+    private Duration minRefreshInterval;
+
+    private record KeySnapshot(Map<String, PublicKey> keys, long fetchedAtMillis) {
+
+        long ageMillis() {
+            return System.currentTimeMillis() - fetchedAtMillis;
+        }
+    }
+
+    private final Bulkhead clerkJwksBulkhead;
+    private final Cache<String, Boolean> unknownKids;
+    private final AtomicReference<CompletableFuture<KeySnapshot>> inFlightRefresh = new AtomicReference<>();
+
+    private final Timer refreshSuccesses;
+    private final Timer refreshFailures;
+    private final Counter sharedRefreshes;
+    private final Counter staleLookups;
+    private final Counter unknownKidLookups;
+
+    private volatile KeySnapshot snapshot = new KeySnapshot(Map.of(), 0);
+    private volatile long lastRefreshAttemptMillis = 0;
+
+    public ClerkJwksProvider(@Qualifier("clerkJwksBulkhead") Bulkhead clerkJwksBulkhead,
+                             @Value("${clerk.jwks.unknown-kid-ttl:5m}") Duration unknownKidTtl,
+                             MeterRegistry meterRegistry) {
+        this.clerkJwksBulkhead = clerkJwksBulkhead;
+        this.unknownKids = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(unknownKidTtl)
+                .build();
+
+        this.refreshSuccesses = refreshTimer(meterRegistry, "success");
+        this.refreshFailures = refreshTimer(meterRegistry, "failure");
+        this.sharedRefreshes = Counter.builder("clerk.jwks.refresh.shared")
+                .description("Callers that waited on a JWKS fetch already in flight instead of starting one")
+                .register(meterRegistry);
+        this.staleLookups = lookupCounter(meterRegistry, "stale");
+        this.unknownKidLookups = lookupCounter(meterRegistry, "unknown_kid");
+        Gauge.builder("clerk.jwks.age", this, provider -> provider.snapshot.fetchedAtMillis() == 0
+                        ? Double.NaN : provider.snapshot.ageMillis() / 1000.0)
+                .description("Seconds since the signing keys were last fetched")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("clerk.jwks.keys", this, provider -> provider.snapshot.keys().size())
+                .description("Signing keys currently held")
+                .register(meterRegistry);
+    }
 
     public PublicKey getPublicKey(String kid) throws Exception {
-        if(keyCache.containsKey(kid) && System.currentTimeMillis() - lastFetchTime < CACHE_TTL){
-            return keyCache.get(kid);
+        KeySnapshot current = snapshot;
+        PublicKey key = current.keys().get(kid);
+        if (key != null && current.ageMillis() < ttl.toMillis()) {
+            return key;
         }
+        if (key != null && isUsable(current)) {
+            // stale while revalidate: answer now and let the refresh replace the snapshot behind us
+            staleLookups.increment();
+            revalidate(current);
+            return key;
+        }
+        if (key == null && unknownKids.getIfPresent(kid) != null) {
+            unknownKidLookups.increment();
+            return null;
+        }
+
+        if (refreshAllowed()) {
+            current = refreshKeys();
+            key = current.keys().get(kid);
+            if (key == null) {
+                unknownKids.put(kid, Boolean.TRUE);
+            }
+        }
+
+        if (key == null) {
+            unknownKidLookups.increment();
+            return null;
+        }
+        if (!isUsable(current)) {
+            throw new IllegalStateException("Signing keys are older than " + ttl.plus(maxStale) + " and could not be refreshed");
+        }
+        return key;
+    }
+
+    // true while kid still maps to this exact key, so results verified with a retired key are not reused
+    public boolean isCurrentKey(String kid, PublicKey key) {
+        KeySnapshot current = snapshot;
+        return isUsable(current) && key.equals(current.keys().get(kid));
+    }
+
+    // installs keys from local configuration unless a fetch has already loaded some; returns how many were usable.
+    // they are stamped as already expired, so they verify tokens within max-stale but the next lookup or background
+    // check replaces them with the live set
+    public int loadKeys(String jwksJson) throws Exception {
+        Map<String, PublicKey> keys = parseKeys(new ObjectMapper().readTree(jwksJson));
+        if (snapshot.fetchedAtMillis() == 0 && !keys.isEmpty()) {
+            snapshot = new KeySnapshot(keys, System.currentTimeMillis() - ttl.toMillis());
+            return keys.size();
+        }
+        return 0;
+    }
+
+    public void refreshNow() throws Exception {
         refreshKeys();
-        return keyCache.get(kid);
     }
 
-    private void refreshKeys() throws Exception{
-        ObjectMapper mapper = new ObjectMapper();
-        JsonNode jwks = mapper.readTree(new URL(jwksUrl));
+    @Scheduled(fixedDelayString = "${clerk.jwks.refresh-check-interval-ms:60000}")
+    public void refreshAheadOfExpiry() {
+        KeySnapshot current = snapshot;
+        // nothing to keep warm until a request has loaded the keys once
+        if (current.fetchedAtMillis() == 0 || current.ageMillis() < ttl.minus(refreshAhead).toMillis() || !refreshAllowed()) {
+            return;
+        }
+
+        try {
+            refreshKeys();
+        } catch (Exception e) {
+            log.warn("Background JWKS refresh failed, serving keys fetched {}s ago: {}", current.ageMillis() / 1000, e.getMessage());
+        }
+    }
+
+    private boolean isUsable(KeySnapshot current) {
+        return current.fetchedAtMillis() > 0 && current.ageMillis() < ttl.plus(maxStale).toMillis();
+    }
+
+    // a fetch already in flight can always be joined, and nothing holds back the first load; otherwise fetches
+    // are spaced out so failures and unknown kids cannot hammer the endpoint
+    private boolean refreshAllowed() {
+        return inFlightRefresh.get() != null
+                || snapshot.fetchedAtMillis() == 0
+                || System.currentTimeMillis() - lastRefreshAttemptMillis >= minRefreshInterval.toMillis();
+    }
+
+    private KeySnapshot refreshKeys() throws Exception {
+        return awaitRefresh(startRefresh());
+    }
+
+    private void revalidate(KeySnapshot stale) {
+        // a refresh already in flight will replace the snapshot, and failures are spaced out by refreshAllowed
+        if (inFlightRefresh.get() != null || !refreshAllowed()) {
+            return;
+        }
+        startRefresh().exceptionally(e -> {
+            log.warn("JWKS refresh failed, serving keys fetched {}s ago: {}", stale.ageMillis() / 1000, e.getMessage());
+            return null;
+        });
+    }
+
+    private CompletableFuture<KeySnapshot> startRefresh() {
+        CompletableFuture<KeySnapshot> refresh = new CompletableFuture<>();
+        CompletableFuture<KeySnapshot> inFlight = inFlightRefresh.compareAndExchange(null, refresh);
+        if (inFlight != null) {
+            sharedRefreshes.increment();
+            return inFlight;
+        }
+
+        lastRefreshAttemptMillis = System.currentTimeMillis();
+        Timer.Sample sample = Timer.start();
+        clerkJwksBulkhead.executeAsync(() -> parseKeys(fetchJwks())).whenComplete((keys, failure) -> {
+            if (failure != null) {
+                inFlightRefresh.set(null);
+                sample.stop(refreshFailures);
+                refresh.completeExceptionally(failure);
+                return;
+            }
+            KeySnapshot refreshed = new KeySnapshot(keys, System.currentTimeMillis());
+            snapshot = refreshed;
+            unknownKids.invalidateAll();
+            inFlightRefresh.set(null);
+            sample.stop(refreshSuccesses);
+            refresh.complete(refreshed);
+        });
+        return refresh;
+    }
+
+    private KeySnapshot awaitRefresh(CompletableFuture<KeySnapshot> inFlight) throws Exception {
+        try {
+            return inFlight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private Map<String, PublicKey> parseKeys(JsonNode jwks) throws Exception {
         JsonNode keys = jwks.get("keys");
+        // replaced as a whole so keys dropped from the JWKS stop verifying tokens
+        Map<String, PublicKey> refreshedKeys = new HashMap<>();
         for(JsonNode keyNode : keys){
             String kid = keyNode.get("kid").asText();
             String kty = keyNode.get("kty").asText();
@@ -46,10 +259,19 @@ public class ClerkJwksProvider {
                 String e = keyNode.get("e").asText();
 
                 PublicKey publicKey = createPublicKey(n, e);
-                keyCache.put(kid, publicKey);
+                refreshedKeys.put(kid, publicKey);
             }
         }
-        lastFetchTime = System.currentTimeMillis();
+        return Map.copyOf(refreshedKeys);
+    }
+
+    private JsonNode fetchJwks() throws Exception {
+        URLConnection connection = new URL(jwksUrl).openConnection();
+        connection.setConnectTimeout(connectTimeoutMs);
+        connection.setReadTimeout(readTimeoutMs);
+        try (InputStream inputStream = connection.getInputStream()) {
+            return new ObjectMapper().readTree(inputStream);
+        }
     }
 
     private PublicKey createPublicKey(String modulus, String exponent) throws Exception {
@@ -64,4 +286,18 @@ public class ClerkJwksProvider {
 
         return factory.generatePublic(spec);
     }
+
+    private Timer refreshTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("clerk.jwks.refresh")
+                .tag("outcome", outcome)
+                .description("JWKS fetches from Clerk")
+                .register(meterRegistry);
+    }
+
+    private Counter lookupCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("clerk.jwks.lookups")
+                .tag("result", result)
+                .description("Key lookups that could not be answered from fresh keys")
+                .register(meterRegistry);
+    }
 }
@@ -1,9 +1,12 @@
 package in.apoorvsahu.removebg.security;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.MalformedJwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -11,6 +14,7 @@ import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
@@ -19,64 +23,136 @@ import org.springframework.web.filter.OncePerRequestFilter;
 import java.io.IOException;
 import java.security.PublicKey;
 import java.util.Base64;
-import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 @RequiredArgsConstructor
 public class ClerkJwtAuthFilter extends OncePerRequestFilter {
 
+    private static final String BEARER_PREFIX = "Bearer ";
+    // same paths SecurityConfig permits as /api/webhooks/**
+    private static final String WEBHOOK_PATH = "/api/webhooks";
+    private static final List<GrantedAuthority> AUTHORITIES = List.of(new SimpleGrantedAuthority("ROLE_ADMIN"));
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
     @Value("${clerk.issuer}")
     private String clerkIssuer;
 
     private final ClerkJwksProvider jwksProvider;
+    private final VerifiedTokenCache verifiedTokenCache;
+
+    // parsers are immutable and thread-safe, so one is built per signing key instead of per request
+    private final Map<String, KeyedParser> parsersByKid = new ConcurrentHashMap<>();
+
+    private record KeyedParser(PublicKey key, JwtParser parser) {}
 
     @Override
-    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        // already authenticated by an earlier filter, e.g. an API key
+        if (SecurityContextHolder.getContext().getAuthentication() != null) {
+            return true;
+        }
 
-        if (request.getRequestURI().contains("/api/webhooks")){
-            filterChain.doFilter(request, response);
-            return;
+        String uri = request.getRequestURI();
+        int offset = request.getContextPath().length();
+        if (!uri.startsWith(WEBHOOK_PATH, offset)) {
+            return false;
         }
+        int end = offset + WEBHOOK_PATH.length();
+        return uri.length() == end || uri.charAt(end) == '/';
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
 
         String authHeader = request.getHeader("Authorization");
 
-        if(authHeader == null || !authHeader.startsWith("Bearer ")){
+        if(authHeader == null || !authHeader.startsWith(BEARER_PREFIX)){
             response.sendError(HttpServletResponse.SC_FORBIDDEN, "Authorization header missing/invalid.");
             return;
         }
 
         try {
-            String token = authHeader.substring(7);
-
-            //extract the kid from token header
-            String[] chunks = token.split("\\.");
-            String headerJson = new String(Base64.getUrlDecoder().decode(chunks[0]));
-            ObjectMapper mapper = new ObjectMapper();
-            JsonNode headerNode = mapper.readTree(headerJson);
-            String kid = headerNode.get("kid").asText();
-
-            //get correct public key
-            PublicKey publicKey = jwksProvider.getPublicKey(kid);
-
-            //verify token
-            Claims claims = Jwts.parserBuilder()
-                    .setSigningKey(publicKey)
-                    .setAllowedClockSkewSeconds(60)
-                    .requireIssuer(clerkIssuer)
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
-
-            String clerkUserId = claims.getSubject();
+            String token = authHeader.substring(BEARER_PREFIX.length());
+
+            //reuse an earlier verification of the same token while its key is still current
+            VerifiedTokenCache.VerifiedToken verified = verifiedTokenCache.get(token);
+            if (verified != null && !jwksProvider.isCurrentKey(verified.kid(), verified.key())) {
+                verifiedTokenCache.invalidate(token);
+                verified = null;
+            }
+            if (verified == null) {
+                verified = verify(token);
+            }
 
             UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(
-                    clerkUserId, null, Collections.singletonList(new SimpleGrantedAuthority("ROLE_ADMIN"))
+                    verified.subject(), null, AUTHORITIES
             );
 
             SecurityContextHolder.getContext().setAuthentication(authenticationToken);
-            filterChain.doFilter(request, response);
         } catch (Exception e) {
             response.sendError(HttpServletResponse.SC_FORBIDDEN, "Invalid JWT token");
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private VerifiedTokenCache.VerifiedToken verify(String token) throws Exception {
+        String kid = readKid(token);
+
+        //get correct public key
+        PublicKey publicKey = jwksProvider.getPublicKey(kid);
+
+        //verify token
+        Claims claims = parserFor(kid, publicKey)
+                .parseClaimsJws(token)
+                .getBody();
+
+        VerifiedTokenCache.VerifiedToken verified = new VerifiedTokenCache.VerifiedToken(claims.getSubject(), kid, publicKey);
+        verifiedTokenCache.put(token, verified, claims.getExpiration());
+        return verified;
+    }
+
+    // streams the header for its kid instead of building a JSON tree
+    static String readKid(String token) throws IOException {
+        int headerEnd = token.indexOf('.');
+        if (headerEnd <= 0) {
+            throw new MalformedJwtException("JWT has no header segment");
+        }
+
+        byte[] header = Base64.getUrlDecoder().decode(token.substring(0, headerEnd));
+        try (JsonParser parser = JSON_FACTORY.createParser(header)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new MalformedJwtException("JWT header is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("kid".equals(field) && value == JsonToken.VALUE_STRING) {
+                    return parser.getText();
+                }
+                parser.skipChildren();
+            }
+        }
+        throw new MalformedJwtException("JWT header has no kid");
+    }
+
+    private JwtParser parserFor(String kid, PublicKey publicKey) {
+        if (publicKey == null) {
+            throw new MalformedJwtException("No signing key for kid: " + kid);
+        }
+
+        KeyedParser keyed = parsersByKid.get(kid);
+        if (keyed == null || !keyed.key().equals(publicKey)) {
+            keyed = new KeyedParser(publicKey, Jwts.parserBuilder()
+                    .setSigningKey(publicKey)
+                    .setAllowedClockSkewSeconds(60)
+                    .requireIssuer(clerkIssuer)
+                    .build());
+            parsersByKid.put(kid, keyed);
         }
+        return keyed.parser();
     }
 }
@@ -0,0 +1,108 @@
+package in.apoorvsahu.removebg.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.time.Duration;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded cache of session tokens that already passed full signature verification, keyed by a SHA-256 digest
+ * so raw tokens are never held in memory. Each entry lives until the token's {@code exp} minus a safety skew
+ * and remembers the key that verified it, so callers can reject hits once that key has been rotated out.
+ */
+@Component
+public class VerifiedTokenCache {
+
+    private static final HexFormat HEX = HexFormat.of();
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+
+    public record VerifiedToken(String subject, String kid, PublicKey key) {}
+
+    private record Entry(VerifiedToken token, long expiresAtMillis) {}
+
+    private final Cache<String, Entry> cache;
+    private final boolean enabled;
+    private final long expirySkewMillis;
+
+    public VerifiedTokenCache(@Value("${security.jwt-cache.enabled:true}") boolean enabled,
+                              @Value("${security.jwt-cache.max-size:50000}") long maxSize,
+                              @Value("${security.jwt-cache.expiry-skew:30s}") Duration expirySkew,
+                              MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.expirySkewMillis = expirySkew.toMillis();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, Entry>() {
+                    @Override
+                    public long expireAfterCreate(String digest, Entry entry, long currentTime) {
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, entry.expiresAtMillis() - System.currentTimeMillis()));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String digest, Entry entry, long currentTime, long currentDuration) {
+                        return expireAfterCreate(digest, entry, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String digest, Entry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "verifiedTokens");
+    }
+
+    public VerifiedToken get(String token) {
+        if (!enabled) {
+            return null;
+        }
+
+        Entry entry = cache.getIfPresent(digest(token));
+        if (entry == null || entry.expiresAtMillis() <= System.currentTimeMillis()) {
+            return null;
+        }
+        return entry.token();
+    }
+
+    public void put(String token, VerifiedToken verified, Date expiration) {
+        if (!enabled || expiration == null) {
+            return;
+        }
+
+        long expiresAtMillis = expiration.getTime() - expirySkewMillis;
+        if (expiresAtMillis > System.currentTimeMillis()) {
+            cache.put(digest(token), new Entry(verified, expiresAtMillis));
+        }
+    }
+
+    public void invalidate(String token) {
+        cache.invalidate(digest(token));
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private String digest(String token) {
+        return HEX.formatHex(SHA_256.get().digest(token.getBytes(StandardCharsets.US_ASCII)));
+    }
+}
@@ -0,0 +1,12 @@
+package in.apoorvsahu.removebg.services;
+
+import in.apoorvsahu.removebg.dtos.AnalyticsReportDto;
+
+import java.time.LocalDate;
+
+public interface AnalyticsService {
+
+    void refreshRollups();
+
+    AnalyticsReportDto getReport(LocalDate from, LocalDate to);
+}
@@ -0,0 +1,28 @@
+package in.apoorvsahu.removebg.services;
+
+import in.apoorvsahu.removebg.dtos.ApiKeyDto;
+
+import java.util.List;
+
+public interface ApiKeyService {
+
+    enum AccessResult {
+        GRANTED,
+        INVALID,
+        RATE_LIMITED,
+        // too many invalid keys from the same client, rejected before any lookup
+        BLOCKED
+    }
+
+    record ApiKeyAccess(AccessResult result, String keyId, String clerkId) {}
+
+    ApiKeyDto createKey(String clerkId, ApiKeyDto request);
+
+    List<ApiKeyDto> getKeys(String clerkId);
+
+    void revokeKey(String clerkId, String keyId);
+
+    ApiKeyAccess authenticate(String presentedKey, String clientAddress);
+
+    int flushUsage();
+}
@@ -0,0 +1,22 @@
+package in.apoorvsahu.removebg.services;
+
+import java.time.Instant;
+import java.util.Optional;
+
+public interface ClipdropQuotaService {
+
+    enum Priority {
+        HIGH,
+        LOW
+    }
+
+    void recordUsage(Integer remainingCredits, Integer creditsConsumed);
+
+    boolean tryAdmit(Priority priority);
+
+    Optional<Integer> getRemainingCredits();
+
+    double getBurnRatePerMinute();
+
+    Optional<Instant> getProjectedExhaustion();
+}
@@ -0,0 +1,12 @@
+package in.apoorvsahu.removebg.services;
+
+import in.apoorvsahu.removebg.dtos.CreditReservationDto;
+
+public interface CreditLedgerService {
+
+    CreditReservationDto reserve(String clerkId, int amount);
+
+    boolean commit(String reservationId);
+
+    boolean release(String reservationId, String reason);
+}
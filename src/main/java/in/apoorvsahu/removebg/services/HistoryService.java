@@ -0,0 +1,12 @@
+package in.apoorvsahu.removebg.services;
+
+import in.apoorvsahu.removebg.dtos.HistoryPageDto;
+import in.apoorvsahu.removebg.dtos.OrderHistoryDto;
+import in.apoorvsahu.removebg.dtos.UsageHistoryDto;
+
+public interface HistoryService {
+
+    HistoryPageDto<OrderHistoryDto> getOrderHistory(String clerkId, String cursor, int limit);
+
+    HistoryPageDto<UsageHistoryDto> getUsageHistory(String clerkId, String cursor, int limit);
+}
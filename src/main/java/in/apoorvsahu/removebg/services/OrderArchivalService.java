@@ -0,0 +1,6 @@
+package in.apoorvsahu.removebg.services;
+
+public interface OrderArchivalService {
+
+    int archiveStaleOrders();
+}
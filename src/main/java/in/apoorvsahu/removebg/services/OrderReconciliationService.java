@@ -0,0 +1,8 @@
+package in.apoorvsahu.removebg.services;
+
+public interface OrderReconciliationService {
+
+    int reconcilePendingOrders();
+
+    int recheckUnpaidOrders();
+}
@@ -1,9 +1,10 @@
 package in.apoorvsahu.removebg.services;
 
 import com.razorpay.Order;
-import com.razorpay.RazorpayException;
+
+import java.util.concurrent.CompletableFuture;
 
 public interface OrderService {
 
-    Order createOrder(String planId, String clerkId) throws RazorpayException;
+    CompletableFuture<Order> createOrder(String planId, String clerkId);
 }
@@ -0,0 +1,12 @@
+package in.apoorvsahu.removebg.services;
+
+import in.apoorvsahu.removebg.dtos.OrderSettlementDto;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface OrderSettlementService {
+
+    OrderSettlementDto settle(String razorpayOrderId);
+
+    CompletableFuture<OrderSettlementDto> settleAsync(String razorpayOrderId);
+}
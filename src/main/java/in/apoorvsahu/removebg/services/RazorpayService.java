@@ -4,10 +4,13 @@ import com.razorpay.Order;
 import com.razorpay.RazorpayException;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public interface RazorpayService {
 
-    Order createOrder(Double amount, String currency) throws RazorpayException;
+    Order createOrder(Double amount, String currency, String receipt) throws RazorpayException;
+
+    CompletableFuture<Order> createOrderAsync(Double amount, String currency, String receipt);
 
     Map<String, Object> verifyPayment(String razorpayOrderId) throws RazorpayException;
 }
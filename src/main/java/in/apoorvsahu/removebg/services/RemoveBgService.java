@@ -1,8 +1,9 @@
 package in.apoorvsahu.removebg.services;
 
+import in.apoorvsahu.removebg.dtos.ProcessedImageDto;
 import org.springframework.web.multipart.MultipartFile;
 
 public interface RemoveBgService {
 
-    byte[] removeBackground(MultipartFile file);
+    ProcessedImageDto removeBackground(MultipartFile file);
 }
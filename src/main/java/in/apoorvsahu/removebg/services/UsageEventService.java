@@ -0,0 +1,10 @@
+package in.apoorvsahu.removebg.services;
+
+import in.apoorvsahu.removebg.entities.UsageEvent;
+
+public interface UsageEventService {
+
+    boolean record(UsageEvent event);
+
+    int flush();
+}
@@ -0,0 +1,14 @@
+package in.apoorvsahu.removebg.services;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+public interface UserEventService {
+
+    SseEmitter subscribe(String clerkId);
+
+    void publishCredits(String clerkId, Integer credits);
+
+    void publishProcessingStatus(String clerkId, String status, String message);
+
+    void disconnectUser(String clerkId);
+}
@@ -0,0 +1,11 @@
+package in.apoorvsahu.removebg.services;
+
+import in.apoorvsahu.removebg.dtos.UserImportResultDto;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public interface UserImportService {
+
+    UserImportResultDto importUsers(InputStream export) throws IOException;
+}
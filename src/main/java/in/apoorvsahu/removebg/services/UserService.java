@@ -5,7 +5,13 @@ import in.apoorvsahu.removebg.dtos.UserDto;
 public interface UserService {
     UserDto saveUser(UserDto userDto);
 
+    void upsertProfile(UserDto userDto);
+
     UserDto getUserByClerkId(String clerkId);
 
     void deleteUserByClerkId(String clerkId);
+
+    int debitCredits(String clerkId, int amount);
+
+    int grantCredits(String clerkId, int amount);
 }
@@ -2,4 +2,6 @@ package in.apoorvsahu.removebg.services;
 
 public interface WebhookSignatureService {
     boolean verifyWebhookSignature(String svixId, String svixTimestamp, String svixSignature, String payload);
+
+    boolean verifyRazorpaySignature(String signature, String payload);
 }
@@ -0,0 +1,169 @@
+package in.apoorvsahu.removebg.services.impl;
+
+import in.apoorvsahu.removebg.Repositories.DailyOrderRollupRepository;
+import in.apoorvsahu.removebg.Repositories.DailyUsageRollupRepository;
+import in.apoorvsahu.removebg.Repositories.JobWatermarkRepository;
+import in.apoorvsahu.removebg.dtos.AnalyticsReportDto;
+import in.apoorvsahu.removebg.dtos.DailyRevenueDto;
+import in.apoorvsahu.removebg.dtos.DailyUsageDto;
+import in.apoorvsahu.removebg.entities.JobWatermark;
+import in.apoorvsahu.removebg.exceptions.ValidationException;
+import in.apoorvsahu.removebg.services.AnalyticsService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AnalyticsServiceImpl implements AnalyticsService {
+
+    private static final String ORDERS_CREATED_JOB = "rollup.orders_created";
+    private static final String ORDERS_PAID_JOB = "rollup.orders_paid";
+    private static final String USAGE_JOB = "rollup.usage";
+    private static final Timestamp INITIAL_WATERMARK = Timestamp.valueOf("2000-01-01 00:00:00");
+
+    // windowed by attach time so an order attached late, e.g. by recovery, is still counted once on the day it
+    // was created; unattached orders have no attached_at and are not counted until they get one
+    private static final String ORDERS_CREATED_SQL = "SELECT CAST(created_at AS DATE) AS rollup_date, plan, COUNT(*) AS orders_created "
+            + "FROM tbl_orders WHERE attached_at >= :from AND attached_at < :to "
+            + "GROUP BY CAST(created_at AS DATE), plan";
+
+    private static final String ORDERS_PAID_SQL = "SELECT CAST(paid_at AS DATE) AS rollup_date, plan, COUNT(*) AS orders_paid, "
+            + "SUM(amount) AS revenue, SUM(credits) AS credits_granted "
+            + "FROM tbl_orders WHERE paid_at >= :from AND paid_at < :to "
+            + "GROUP BY CAST(paid_at AS DATE), plan";
+
+    private static final String USAGE_SQL = "SELECT CAST(created_at AS DATE) AS rollup_date, "
+            + "SUM(CASE WHEN outcome = 'SUCCESS' THEN 1 ELSE 0 END) AS images_processed, "
+            + "SUM(credits_charged) AS credits_consumed "
+            + "FROM tbl_usage_events WHERE created_at >= :from AND created_at < :to "
+            + "GROUP BY CAST(created_at AS DATE)";
+
+    private static final String UPSERT_ORDER_ROLLUP_SQL = "INSERT INTO tbl_daily_order_rollups "
+            + "(rollup_date, plan, orders_created, orders_paid, revenue, credits_granted) "
+            + "VALUES (:rollupDate, :plan, :ordersCreated, :ordersPaid, :revenue, :creditsGranted) "
+            + "ON DUPLICATE KEY UPDATE orders_created = orders_created + VALUES(orders_created), "
+            + "orders_paid = orders_paid + VALUES(orders_paid), revenue = revenue + VALUES(revenue), "
+            + "credits_granted = credits_granted + VALUES(credits_granted)";
+
+    private static final String UPSERT_USAGE_ROLLUP_SQL = "INSERT INTO tbl_daily_usage_rollups "
+            + "(rollup_date, images_processed, credits_consumed) "
+            + "VALUES (:rollupDate, :imagesProcessed, :creditsConsumed) "
+            + "ON DUPLICATE KEY UPDATE images_processed = images_processed + VALUES(images_processed), "
+            + "credits_consumed = credits_consumed + VALUES(credits_consumed)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JobWatermarkRepository jobWatermarkRepository;
+    private final DailyOrderRollupRepository dailyOrderRollupRepository;
+    private final DailyUsageRollupRepository dailyUsageRollupRepository;
+
+    // rows newer than this may still belong to uncommitted transactions or unflushed usage batches
+    @Value("${analytics.rollups.settle-lag:5m}")
+    private Duration settleLag;
+
+    @Value("${analytics.max-report-days:366}")
+    private int maxReportDays;
+
+    @Override
+    @Scheduled(fixedDelayString = "${analytics.rollups.interval-ms:300000}", initialDelayString = "${analytics.rollups.initial-delay-ms:30000}")
+    public void refreshRollups() {
+        Timestamp upTo = new Timestamp(System.currentTimeMillis() - settleLag.toMillis());
+        advance(ORDERS_CREATED_JOB, upTo, ORDERS_CREATED_SQL, (rs, rowNum) -> orderRollupRow(rs.getDate("rollup_date"),
+                rs.getString("plan"), rs.getLong("orders_created"), 0L, 0.0, 0L), UPSERT_ORDER_ROLLUP_SQL);
+        advance(ORDERS_PAID_JOB, upTo, ORDERS_PAID_SQL, (rs, rowNum) -> orderRollupRow(rs.getDate("rollup_date"),
+                rs.getString("plan"), 0L, rs.getLong("orders_paid"), rs.getDouble("revenue"), rs.getLong("credits_granted")),
+                UPSERT_ORDER_ROLLUP_SQL);
+        advance(USAGE_JOB, upTo, USAGE_SQL, (rs, rowNum) -> new MapSqlParameterSource()
+                .addValue("rollupDate", rs.getDate("rollup_date"))
+                .addValue("imagesProcessed", rs.getLong("images_processed"))
+                .addValue("creditsConsumed", rs.getLong("credits_consumed")), UPSERT_USAGE_ROLLUP_SQL);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public AnalyticsReportDto getReport(LocalDate from, LocalDate to) {
+        if (from == null || to == null || from.isAfter(to)) {
+            throw new ValidationException("A valid date range is required");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= maxReportDays) {
+            throw new ValidationException("Date range cannot exceed " + maxReportDays + " days");
+        }
+
+        List<DailyRevenueDto> revenue = dailyOrderRollupRepository.findRange(from, to);
+        List<DailyUsageDto> usage = dailyUsageRollupRepository.findRange(from, to);
+
+        return AnalyticsReportDto.builder()
+                .from(from)
+                .to(to)
+                .revenue(revenue)
+                .usage(usage)
+                .ordersPaid(revenue.stream().mapToLong(DailyRevenueDto::getOrdersPaid).sum())
+                .totalRevenue(revenue.stream().mapToDouble(DailyRevenueDto::getRevenue).sum())
+                .creditsGranted(revenue.stream().mapToLong(DailyRevenueDto::getCreditsGranted).sum())
+                .imagesProcessed(usage.stream().mapToLong(DailyUsageDto::getImagesProcessed).sum())
+                .creditsConsumed(usage.stream().mapToLong(DailyUsageDto::getCreditsConsumed).sum())
+                .build();
+    }
+
+    // aggregates the window since the last watermark and moves the watermark in the same transaction,
+    // so every source row is counted exactly once even if the job fails or runs on several instances
+    private void advance(String jobName, Timestamp upTo, String aggregateSql,
+                         RowMapper<SqlParameterSource> rowMapper, String upsertSql) {
+        try {
+            Integer groups = transactionTemplate.execute(status -> {
+                jobWatermarkRepository.createIfAbsent(jobName, INITIAL_WATERMARK);
+                JobWatermark watermark = jobWatermarkRepository.lockByJobName(jobName)
+                        .orElseThrow(() -> new IllegalStateException("Missing watermark for " + jobName));
+                if (!upTo.after(watermark.getWatermark())) {
+                    return 0;
+                }
+
+                List<SqlParameterSource> rows = jdbcTemplate.query(aggregateSql, new MapSqlParameterSource()
+                        .addValue("from", watermark.getWatermark())
+                        .addValue("to", upTo), rowMapper);
+
+                if (!rows.isEmpty()) {
+                    jdbcTemplate.batchUpdate(upsertSql, rows.toArray(new SqlParameterSource[0]));
+                }
+                watermark.setWatermark(upTo);
+                watermark.setUpdatedAt(new Timestamp(System.currentTimeMillis()));
+                return rows.size();
+            });
+
+            if (groups != null && groups > 0) {
+                log.info("Rollup job {} folded {} daily groups up to {}", jobName, groups, upTo);
+            }
+        } catch (DataAccessException e) {
+            log.error("Rollup job {} failed, will retry from the same watermark", jobName, e);
+        }
+    }
+
+    private SqlParameterSource orderRollupRow(Date rollupDate, String plan, long ordersCreated, long ordersPaid,
+                                              double revenue, long creditsGranted) {
+        return new MapSqlParameterSource()
+                .addValue("rollupDate", rollupDate)
+                .addValue("plan", plan)
+                .addValue("ordersCreated", ordersCreated)
+                .addValue("ordersPaid", ordersPaid)
+                .addValue("revenue", revenue)
+                .addValue("creditsGranted", creditsGranted);
+    }
+}
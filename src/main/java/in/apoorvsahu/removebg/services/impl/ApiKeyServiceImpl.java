@@ -0,0 +1,257 @@
+package in.apoorvsahu.removebg.services.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import in.apoorvsahu.removebg.Repositories.ApiKeyRepository;
+import in.apoorvsahu.removebg.cache.ApiKeyCache;
+import in.apoorvsahu.removebg.dtos.ApiKeyDto;
+import in.apoorvsahu.removebg.entities.ApiKey;
+import in.apoorvsahu.removebg.exceptions.ApiKeyNotFoundException;
+import in.apoorvsahu.removebg.exceptions.ValidationException;
+import in.apoorvsahu.removebg.services.ApiKeyService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+@Service
+@Slf4j
+public class ApiKeyServiceImpl implements ApiKeyService {
+
+    // keys look like rbg_<16 hex key id>.<base64url secret>; only the key id is ever looked up
+    private static final String KEY_PREFIX = "rbg_";
+    private static final int KEY_ID_LENGTH = KEY_PREFIX.length() + 16;
+    private static final int SECRET_BYTES = 32;
+    private static final int MAX_NAME_LENGTH = 100;
+
+    private static final HexFormat HEX = HexFormat.of();
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+
+    private final ApiKeyRepository apiKeyRepository;
+    private final ApiKeyCache apiKeyCache;
+    private final TransactionTemplate transactionTemplate;
+
+    // requests per key and minute, keyed by "<keyId>:<minute>"
+    private final Cache<String, AtomicInteger> requestWindows = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofMinutes(2))
+            .build();
+    // invalid keys per client address and minute, keyed by "<address>:<minute>"
+    private final Cache<String, AtomicInteger> failureWindows = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterWrite(Duration.ofMinutes(2))
+            .build();
+    private final Map<String, LongAdder> pendingUsage = new ConcurrentHashMap<>();
+
+    private final Counter grantedRequests;
+    private final Counter invalidRequests;
+    private final Counter rateLimitedRequests;
+    private final Counter blockedRequests;
+
+    @Value("${api-keys.default-rate-limit-per-minute:60}")
+    private int defaultRateLimitPerMinute;
+
+    @Value("${api-keys.max-rate-limit-per-minute:600}")
+    private int maxRateLimitPerMinute;
+
+    // bounds how many unknown key ids one client can make us look up
+    @Value("${api-keys.max-failures-per-minute:20}")
+    private int maxFailuresPerMinute;
+
+    @Value("${api-keys.max-keys-per-user:10}")
+    private int maxKeysPerUser;
+
+    public ApiKeyServiceImpl(ApiKeyRepository apiKeyRepository,
+                             ApiKeyCache apiKeyCache,
+                             TransactionTemplate transactionTemplate,
+                             MeterRegistry meterRegistry) {
+        this.apiKeyRepository = apiKeyRepository;
+        this.apiKeyCache = apiKeyCache;
+        this.transactionTemplate = transactionTemplate;
+
+        this.grantedRequests = requestCounter(meterRegistry, AccessResult.GRANTED);
+        this.invalidRequests = requestCounter(meterRegistry, AccessResult.INVALID);
+        this.rateLimitedRequests = requestCounter(meterRegistry, AccessResult.RATE_LIMITED);
+        this.blockedRequests = requestCounter(meterRegistry, AccessResult.BLOCKED);
+    }
+
+    @Override
+    @Transactional
+    public ApiKeyDto createKey(String clerkId, ApiKeyDto request) {
+        String name = request != null && request.getName() != null ? request.getName().trim() : "";
+        if (name.isEmpty() || name.length() > MAX_NAME_LENGTH) {
+            throw new ValidationException("API key name is required and must be at most " + MAX_NAME_LENGTH + " characters");
+        }
+
+        Integer rateLimit = request.getRateLimitPerMinute() != null ? request.getRateLimitPerMinute() : defaultRateLimitPerMinute;
+        if (rateLimit < 1 || rateLimit > maxRateLimitPerMinute) {
+            throw new ValidationException("Rate limit must be between 1 and " + maxRateLimitPerMinute + " requests per minute");
+        }
+
+        if (apiKeyRepository.countByClerkIdAndRevokedFalse(clerkId) >= maxKeysPerUser) {
+            throw new ValidationException("You can have at most " + maxKeysPerUser + " active API keys");
+        }
+
+        byte[] keyIdBytes = new byte[8];
+        byte[] secretBytes = new byte[SECRET_BYTES];
+        RANDOM.nextBytes(keyIdBytes);
+        RANDOM.nextBytes(secretBytes);
+        String keyId = KEY_PREFIX + HEX.formatHex(keyIdBytes);
+        String secret = Base64.getUrlEncoder().withoutPadding().encodeToString(secretBytes);
+
+        ApiKey apiKey = apiKeyRepository.save(ApiKey.builder()
+                .keyId(keyId)
+                .secretHash(HEX.formatHex(hash(secret)))
+                .clerkId(clerkId)
+                .name(name)
+                .rateLimitPerMinute(rateLimit)
+                .build());
+        // drops a cached miss in case this id was probed before it existed
+        apiKeyCache.invalidate(keyId);
+
+        log.info("Created API key {} for user: {}", keyId, clerkId);
+        ApiKeyDto created = toDto(apiKey);
+        created.setKey(keyId + "." + secret);
+        return created;
+    }
+
+    @Override
+    public List<ApiKeyDto> getKeys(String clerkId) {
+        return apiKeyRepository.findByClerkIdOrderByCreatedAtDesc(clerkId).stream()
+                .map(this::toDto)
+                .toList();
+    }
+
+    @Override
+    @Transactional
+    public void revokeKey(String clerkId, String keyId) {
+        if (apiKeyRepository.revoke(keyId, clerkId, new Timestamp(System.currentTimeMillis())) == 0) {
+            throw new ApiKeyNotFoundException("No active API key " + keyId + " for this account");
+        }
+        apiKeyCache.put(ApiKeyCache.CachedKey.inactive(keyId));
+        log.info("Revoked API key {} for user: {}", keyId, clerkId);
+    }
+
+    @Override
+    public ApiKeyAccess authenticate(String presentedKey, String clientAddress) {
+        long minute = System.currentTimeMillis() / 60_000;
+        String failureWindow = clientAddress + ":" + minute;
+        AtomicInteger failures = failureWindows.getIfPresent(failureWindow);
+        if (failures != null && failures.get() >= maxFailuresPerMinute) {
+            blockedRequests.increment();
+            return new ApiKeyAccess(AccessResult.BLOCKED, null, null);
+        }
+
+        int separator = presentedKey != null ? presentedKey.indexOf('.') : -1;
+        if (separator != KEY_ID_LENGTH || !presentedKey.startsWith(KEY_PREFIX)) {
+            return invalid(failureWindow, null);
+        }
+
+        String keyId = presentedKey.substring(0, separator);
+        ApiKeyCache.CachedKey key = apiKeyCache.get(keyId);
+        if (key == null) {
+            key = load(keyId);
+        }
+
+        // the digest is compared in constant time so response timing says nothing about the stored hash
+        if (!key.isActive() || !MessageDigest.isEqual(hash(presentedKey.substring(separator + 1)), key.secretHash())) {
+            return invalid(failureWindow, keyId);
+        }
+
+        AtomicInteger window = requestWindows.get(keyId + ":" + minute, ignored -> new AtomicInteger());
+        if (window.incrementAndGet() > key.rateLimitPerMinute()) {
+            rateLimitedRequests.increment();
+            return new ApiKeyAccess(AccessResult.RATE_LIMITED, keyId, key.clerkId());
+        }
+
+        pendingUsage.computeIfAbsent(keyId, ignored -> new LongAdder()).increment();
+        grantedRequests.increment();
+        return new ApiKeyAccess(AccessResult.GRANTED, keyId, key.clerkId());
+    }
+
+    // usage is counted in memory and added to the row in the background, lastUsedAt is accurate to the flush interval
+    @Override
+    @Scheduled(fixedDelayString = "${api-keys.usage.flush-interval-ms:10000}")
+    public int flushUsage() {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        int flushed = 0;
+        for (Map.Entry<String, LongAdder> entry : pendingUsage.entrySet()) {
+            long requests = entry.getValue().sumThenReset();
+            if (requests == 0) {
+                continue;
+            }
+
+            try {
+                transactionTemplate.executeWithoutResult(status -> apiKeyRepository.addUsage(entry.getKey(), requests, now));
+                flushed++;
+            } catch (DataAccessException e) {
+                entry.getValue().add(requests);
+                log.warn("Failed to record usage for API key {}, will retry: {}", entry.getKey(), e.getMessage());
+            }
+        }
+        return flushed;
+    }
+
+    private ApiKeyAccess invalid(String failureWindow, String keyId) {
+        failureWindows.get(failureWindow, ignored -> new AtomicInteger()).incrementAndGet();
+        invalidRequests.increment();
+        return new ApiKeyAccess(AccessResult.INVALID, keyId, null);
+    }
+
+    private ApiKeyCache.CachedKey load(String keyId) {
+        ApiKey apiKey = apiKeyRepository.findByKeyId(keyId).orElse(null);
+        ApiKeyCache.CachedKey key = apiKey == null || Boolean.TRUE.equals(apiKey.getRevoked())
+                ? ApiKeyCache.CachedKey.inactive(keyId)
+                : new ApiKeyCache.CachedKey(keyId, HEX.parseHex(apiKey.getSecretHash()), apiKey.getClerkId(), apiKey.getRateLimitPerMinute());
+        apiKeyCache.put(key);
+        return key;
+    }
+
+    private byte[] hash(String secret) {
+        return SHA_256.get().digest(secret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private ApiKeyDto toDto(ApiKey apiKey) {
+        return ApiKeyDto.builder()
+                .keyId(apiKey.getKeyId())
+                .name(apiKey.getName())
+                .rateLimitPerMinute(apiKey.getRateLimitPerMinute())
+                .requestCount(apiKey.getRequestCount())
+                .lastUsedAt(apiKey.getLastUsedAt())
+                .revoked(apiKey.getRevoked())
+                .createdAt(apiKey.getCreatedAt())
+                .build();
+    }
+
+    private Counter requestCounter(MeterRegistry meterRegistry, AccessResult result) {
+        return Counter.builder("api.keys.requests")
+                .tag("result", result.name().toLowerCase())
+                .description("Requests authenticated with an API key")
+                .register(meterRegistry);
+    }
+}
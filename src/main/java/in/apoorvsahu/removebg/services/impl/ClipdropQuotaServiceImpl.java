@@ -0,0 +1,138 @@
+package in.apoorvsahu.removebg.services.impl;
+
+import in.apoorvsahu.removebg.services.ClipdropQuotaService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Optional;
+
+@Service
+@Slf4j
+public class ClipdropQuotaServiceImpl implements ClipdropQuotaService {
+
+    @Value("${clipdrop.quota.burn-rate-window:15m}")
+    private Duration burnRateWindow;
+
+    @Value("${clipdrop.quota.low-priority-reserve:500}")
+    private int lowPriorityReserve;
+
+    @Value("${clipdrop.quota.low-priority-min-runway:6h}")
+    private Duration lowPriorityMinRunway;
+
+    private final Deque<UsageSample> samples = new ArrayDeque<>();
+    private final Counter throttledLowPriority;
+
+    private volatile Integer remainingCredits;
+
+    private record UsageSample(long timestampMillis, int creditsConsumed) {}
+
+    public ClipdropQuotaServiceImpl(MeterRegistry meterRegistry) {
+        Gauge.builder("clipdrop.quota.remaining", this, service -> service.getRemainingCredits().map(Integer::doubleValue).orElse(Double.NaN))
+                .description("Remaining Clipdrop credits reported by the last response")
+                .register(meterRegistry);
+        Gauge.builder("clipdrop.quota.burn.rate", this, ClipdropQuotaServiceImpl::getBurnRatePerMinute)
+                .description("Clipdrop credits consumed per minute over the burn rate window")
+                .register(meterRegistry);
+        Gauge.builder("clipdrop.quota.runway", this, service -> service.getProjectedExhaustion()
+                        .map(exhaustion -> (double) Duration.between(Instant.now(), exhaustion).toSeconds())
+                        .orElse(Double.NaN))
+                .description("Seconds until the Clipdrop quota is projected to run out")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        this.throttledLowPriority = Counter.builder("clipdrop.quota.throttled")
+                .tag("priority", Priority.LOW.name().toLowerCase())
+                .description("Requests rejected to preserve Clipdrop quota")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void recordUsage(Integer remainingCredits, Integer creditsConsumed) {
+        if (remainingCredits != null) {
+            this.remainingCredits = remainingCredits;
+        }
+
+        if (creditsConsumed != null && creditsConsumed > 0) {
+            long now = System.currentTimeMillis();
+            synchronized (samples) {
+                samples.addLast(new UsageSample(now, creditsConsumed));
+                evictExpiredSamples(now);
+            }
+        }
+    }
+
+    @Override
+    public boolean tryAdmit(Priority priority) {
+        if (priority == Priority.HIGH) {
+            return true;
+        }
+
+        Integer remaining = remainingCredits;
+        if (remaining == null) {
+            return true;
+        }
+
+        boolean belowReserve = remaining <= lowPriorityReserve;
+        boolean runwayTooShort = getProjectedExhaustion()
+                .map(exhaustion -> Duration.between(Instant.now(), exhaustion).compareTo(lowPriorityMinRunway) < 0)
+                .orElse(false);
+
+        if (belowReserve || runwayTooShort) {
+            throttledLowPriority.increment();
+            log.warn("Throttling low priority request - remaining Clipdrop credits: {}, burn rate: {}/min",
+                    remaining, String.format("%.2f", getBurnRatePerMinute()));
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public Optional<Integer> getRemainingCredits() {
+        return Optional.ofNullable(remainingCredits);
+    }
+
+    @Override
+    public double getBurnRatePerMinute() {
+        long now = System.currentTimeMillis();
+        synchronized (samples) {
+            evictExpiredSamples(now);
+            if (samples.isEmpty()) {
+                return 0.0;
+            }
+
+            long consumed = 0;
+            for (UsageSample sample : samples) {
+                consumed += sample.creditsConsumed();
+            }
+
+            long observedMillis = Math.max(now - samples.peekFirst().timestampMillis(), Duration.ofMinutes(1).toMillis());
+            return consumed / (observedMillis / 60000.0);
+        }
+    }
+
+    @Override
+    public Optional<Instant> getProjectedExhaustion() {
+        Integer remaining = remainingCredits;
+        double burnRate = getBurnRatePerMinute();
+        if (remaining == null || burnRate <= 0) {
+            return Optional.empty();
+        }
+
+        long secondsLeft = (long) (remaining / burnRate * 60);
+        return Optional.of(Instant.now().plusSeconds(secondsLeft));
+    }
+
+    private void evictExpiredSamples(long now) {
+        long cutoff = now - burnRateWindow.toMillis();
+        while (!samples.isEmpty() && samples.peekFirst().timestampMillis() < cutoff) {
+            samples.removeFirst();
+        }
+    }
+}
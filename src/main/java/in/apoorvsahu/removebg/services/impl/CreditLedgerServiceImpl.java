@@ -0,0 +1,232 @@
+package in.apoorvsahu.removebg.services.impl;
+
+import in.apoorvsahu.removebg.Repositories.CreditLedgerRepository;
+import in.apoorvsahu.removebg.Repositories.JobWatermarkRepository;
+import in.apoorvsahu.removebg.Repositories.UserRepository;
+import in.apoorvsahu.removebg.cache.UserProfileCache;
+import in.apoorvsahu.removebg.datasource.ReplicaRoutingDataSource;
+import in.apoorvsahu.removebg.dtos.CreditReservationDto;
+import in.apoorvsahu.removebg.entities.CreditLedgerEntry;
+import in.apoorvsahu.removebg.entities.JobWatermark;
+import in.apoorvsahu.removebg.exceptions.InsufficientCreditsException;
+import in.apoorvsahu.removebg.exceptions.UserNotFoundException;
+import in.apoorvsahu.removebg.exceptions.UserServiceException;
+import in.apoorvsahu.removebg.services.CreditLedgerService;
+import in.apoorvsahu.removebg.services.UserEventService;
+import in.apoorvsahu.removebg.services.UserService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CreditLedgerServiceImpl implements CreditLedgerService {
+
+    private static final String SWEEP_JOB_NAME = "credits.ledger.sweep";
+
+    private final CreditLedgerRepository creditLedgerRepository;
+    private final JobWatermarkRepository jobWatermarkRepository;
+    private final UserRepository userRepository;
+    private final UserService userService;
+    private final UserEventService userEventService;
+    private final UserProfileCache userProfileCache;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectProvider<ReplicaRoutingDataSource> replicaRouting;
+
+    @Value("${credits.ledger.reservation-ttl:5m}")
+    private Duration reservationTtl;
+
+    @Value("${credits.ledger.batch-size:500}")
+    private int batchSize;
+
+    private record ReleaseBatch(int entriesRead, Map<String, Integer> balancesByUser) {}
+
+    @Override
+    @Transactional
+    public CreditReservationDto reserve(String clerkId, int amount) {
+        try {
+            String reservationId = UUID.randomUUID().toString();
+
+            // the ledger row goes in first and the conditional debit last, so the user row is only locked
+            // from the debit to the commit; an insufficient balance rolls the ledger row back. tbl_users.credits
+            // stays the balance of record, so concurrent reservations for one user still queue on that row
+            creditLedgerRepository.saveAndFlush(CreditLedgerEntry.builder()
+                    .reservationId(reservationId)
+                    .clerkId(clerkId)
+                    .entryType(CreditLedgerEntry.EntryType.RESERVE)
+                    .amount(amount)
+                    .settled(true)
+                    .build());
+            int remainingCredits = userService.debitCredits(clerkId, amount);
+
+            log.info("Reserved {} credits for user: {} (reservation: {})", amount, clerkId, reservationId);
+            return CreditReservationDto.builder()
+                    .reservationId(reservationId)
+                    .clerkId(clerkId)
+                    .amount(amount)
+                    .remainingCredits(remainingCredits)
+                    .build();
+        } catch (InsufficientCreditsException | UserNotFoundException | UserServiceException e) {
+            throw e;
+        } catch (DataAccessException e) {
+            log.error("Database error while reserving credits for clerkId: {}", clerkId, e);
+            throw new UserServiceException("Unable to reserve credits. Please try again later");
+        }
+    }
+
+    @Override
+    public boolean commit(String reservationId) {
+        return resolve(reservationId, CreditLedgerEntry.EntryType.COMMIT, null);
+    }
+
+    @Override
+    public boolean release(String reservationId, String reason) {
+        return resolve(reservationId, CreditLedgerEntry.EntryType.RELEASE, reason);
+    }
+
+    @Scheduled(fixedDelayString = "${credits.ledger.materialize-interval-ms:5000}")
+    public void materializeReleases() {
+        ReleaseBatch batch;
+        do {
+            batch = transactionTemplate.execute(status -> applyReleaseBatch());
+            if (batch == null) {
+                return;
+            }
+
+            batch.balancesByUser().forEach(userEventService::publishCredits);
+        } while (batch.entriesRead() == batchSize);
+    }
+
+    @Scheduled(fixedDelayString = "${credits.ledger.sweep-interval-ms:60000}")
+    public void expireStaleReservations() {
+        Timestamp cutoff = new Timestamp(System.currentTimeMillis() - reservationTtl.toMillis());
+
+        // reservations up to this id are known to be resolved, so each sweep only reads newer ones
+        long sweptThroughId;
+        try {
+            sweptThroughId = readSweepPosition(cutoff);
+        } catch (DataAccessException e) {
+            log.error("Credit reservation sweep could not read its position, will retry on the next run", e);
+            return;
+        }
+
+        int expired = 0;
+        List<CreditLedgerEntry> open;
+        do {
+            open = creditLedgerRepository.findOpenReservationsBefore(
+                    CreditLedgerEntry.EntryType.RESERVE, sweptThroughId, cutoff, PageRequest.of(0, batchSize));
+
+            for (CreditLedgerEntry reservation : open) {
+                if (release(reservation.getReservationId(), "expired")) {
+                    expired++;
+                }
+                sweptThroughId = reservation.getId();
+            }
+        } while (open.size() == batchSize);
+
+        // every reservation past the cutoff is resolved by now, including the ones after the last open one
+        Long lastBeforeCutoff = creditLedgerRepository.findLastReservationIdBefore(
+                CreditLedgerEntry.EntryType.RESERVE, sweptThroughId, cutoff);
+        advanceSweepPosition(lastBeforeCutoff != null ? lastBeforeCutoff : sweptThroughId, cutoff);
+
+        if (expired > 0) {
+            log.warn("Expired {} stale credit reservations", expired);
+        }
+    }
+
+    private long readSweepPosition(Timestamp initial) {
+        return transactionTemplate.execute(status -> {
+            jobWatermarkRepository.createIfAbsent(SWEEP_JOB_NAME, initial);
+            return jobWatermarkRepository.findById(SWEEP_JOB_NAME)
+                    .map(JobWatermark::getPosition)
+                    .orElse(0L);
+        });
+    }
+
+    // only ever moves forward, so an instance finishing late cannot rewind a newer sweep
+    private void advanceSweepPosition(long position, Timestamp cutoff) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> jobWatermarkRepository.lockByJobName(SWEEP_JOB_NAME)
+                    .filter(watermark -> watermark.getPosition() == null || position > watermark.getPosition())
+                    .ifPresent(watermark -> {
+                        watermark.setPosition(position);
+                        watermark.setWatermark(cutoff);
+                        watermark.setUpdatedAt(new Timestamp(System.currentTimeMillis()));
+                    }));
+        } catch (DataAccessException e) {
+            log.error("Credit reservation sweep could not save its position, the range will be read again", e);
+        }
+    }
+
+    private boolean resolve(String reservationId, CreditLedgerEntry.EntryType entryType, String reason) {
+        try {
+            CreditLedgerEntry reservation = creditLedgerRepository
+                    .findByReservationIdAndEntryType(reservationId, CreditLedgerEntry.EntryType.RESERVE)
+                    .orElseThrow(() -> new UserServiceException("Unknown credit reservation: " + reservationId));
+
+            creditLedgerRepository.saveAndFlush(CreditLedgerEntry.builder()
+                    .reservationId(reservationId)
+                    .clerkId(reservation.getClerkId())
+                    .entryType(entryType)
+                    .amount(reservation.getAmount())
+                    .resolutionKey(reservationId)
+                    .settled(entryType != CreditLedgerEntry.EntryType.RELEASE)
+                    .reason(reason)
+                    .build());
+
+            log.info("Reservation {} resolved as {}{}", reservationId, entryType, reason != null ? " (" + reason + ")" : "");
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Reservation {} was already resolved, ignoring {}", reservationId, entryType);
+            return false;
+        }
+    }
+
+    private ReleaseBatch applyReleaseBatch() {
+        List<CreditLedgerEntry> releases = creditLedgerRepository.findByEntryTypeAndSettledFalseOrderByIdAsc(
+                CreditLedgerEntry.EntryType.RELEASE, PageRequest.of(0, batchSize));
+
+        // sorted so concurrent materializers lock user rows in the same order
+        Map<String, Integer> refundsByUser = new TreeMap<>();
+        for (CreditLedgerEntry release : releases) {
+            // another instance may have claimed the entry since it was read
+            if (creditLedgerRepository.markSettled(release.getId()) == 1) {
+                refundsByUser.merge(release.getClerkId(), release.getAmount(), Integer::sum);
+            }
+        }
+
+        // balances are read back inside this write transaction, which always runs on the primary; this thread
+        // has no principal, so a read after commit would be routed to a possibly lagging replica
+        Map<String, Integer> balancesByUser = new TreeMap<>();
+        refundsByUser.forEach((clerkId, refund) -> {
+            userProfileCache.invalidate(clerkId);
+            replicaRouting.ifAvailable(routing -> routing.markRecentWriter(clerkId));
+            if (userRepository.grantCredits(clerkId, refund) == 0) {
+                log.warn("Dropping refund of {} credits for missing user: {}", refund, clerkId);
+                return;
+            }
+            userRepository.findCreditsByClerkId(clerkId).ifPresent(credits -> balancesByUser.put(clerkId, credits));
+        });
+
+        if (!refundsByUser.isEmpty()) {
+            log.info("Materialized {} credit releases for {} users", releases.size(), refundsByUser.size());
+        }
+        return new ReleaseBatch(releases.size(), balancesByUser);
+    }
+}
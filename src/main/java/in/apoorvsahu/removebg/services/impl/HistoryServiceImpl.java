@@ -0,0 +1,118 @@
+package in.apoorvsahu.removebg.services.impl;
+
+import in.apoorvsahu.removebg.Repositories.ArchivedOrderRepository;
+import in.apoorvsahu.removebg.Repositories.OrderRepository;
+import in.apoorvsahu.removebg.Repositories.UsageEventRepository;
+import in.apoorvsahu.removebg.dtos.HistoryPageDto;
+import in.apoorvsahu.removebg.dtos.OrderHistoryDto;
+import in.apoorvsahu.removebg.dtos.UsageHistoryDto;
+import in.apoorvsahu.removebg.exceptions.ValidationException;
+import in.apoorvsahu.removebg.services.HistoryService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+@Service
+@RequiredArgsConstructor
+public class HistoryServiceImpl implements HistoryService {
+
+    private final OrderRepository orderRepository;
+    private final ArchivedOrderRepository archivedOrderRepository;
+    private final UsageEventRepository usageEventRepository;
+
+    @Value("${history.max-page-size:100}")
+    private int maxPageSize;
+
+    private static final Comparator<OrderHistoryDto> NEWEST_ORDER_FIRST = Comparator
+            .comparing(OrderHistoryDto::getCreatedAt)
+            .thenComparing(OrderHistoryDto::getId)
+            .reversed();
+
+    private record Cursor(Timestamp createdAt, Long id) {}
+
+    @Override
+    @Transactional(readOnly = true)
+    public HistoryPageDto<OrderHistoryDto> getOrderHistory(String clerkId, String cursor, int limit) {
+        Pageable page = pageOf(limit);
+        Cursor position = decodeCursor(cursor);
+        List<OrderHistoryDto> hot = position == null
+                ? orderRepository.findHistory(clerkId, page)
+                : orderRepository.findHistoryBefore(clerkId, position.createdAt(), position.id(), page);
+        // archival keeps ids, so (createdAt, id) orders both tables as one and a cursor can span them
+        List<OrderHistoryDto> archived = position == null
+                ? archivedOrderRepository.findHistory(clerkId, page)
+                : archivedOrderRepository.findHistoryBefore(clerkId, position.createdAt(), position.id(), page);
+        List<OrderHistoryDto> rows = Stream.concat(hot.stream(), archived.stream())
+                .sorted(NEWEST_ORDER_FIRST)
+                .limit(page.getPageSize())
+                .toList();
+        return toPage(rows, page.getPageSize() - 1, row -> new Cursor(row.getCreatedAt(), row.getId()));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public HistoryPageDto<UsageHistoryDto> getUsageHistory(String clerkId, String cursor, int limit) {
+        Pageable page = pageOf(limit);
+        Cursor position = decodeCursor(cursor);
+        List<UsageHistoryDto> rows = position == null
+                ? usageEventRepository.findHistory(clerkId, page)
+                : usageEventRepository.findHistoryBefore(clerkId, position.createdAt(), position.id(), page);
+        return toPage(rows, page.getPageSize() - 1, row -> new Cursor(row.getCreatedAt(), row.getId()));
+    }
+
+    // one extra row is fetched to tell whether another page exists without a count query
+    private Pageable pageOf(int limit) {
+        if (limit < 1 || limit > maxPageSize) {
+            throw new ValidationException("Limit must be between 1 and " + maxPageSize);
+        }
+        return PageRequest.of(0, limit + 1);
+    }
+
+    private <T> HistoryPageDto<T> toPage(List<T> rows, int limit, Function<T, Cursor> cursorOf) {
+        if (rows.size() <= limit) {
+            return HistoryPageDto.<T>builder().items(rows).build();
+        }
+
+        List<T> items = rows.subList(0, limit);
+        return HistoryPageDto.<T>builder()
+                .items(items)
+                .nextCursor(encodeCursor(cursorOf.apply(items.get(limit - 1))))
+                .build();
+    }
+
+    private String encodeCursor(Cursor cursor) {
+        Instant createdAt = cursor.createdAt().toInstant();
+        String raw = createdAt.getEpochSecond() + ":" + createdAt.getNano() + ":" + cursor.id();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Cursor decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+            if (parts.length != 3) {
+                throw new ValidationException("Invalid cursor");
+            }
+            Instant createdAt = Instant.ofEpochSecond(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+            return new Cursor(Timestamp.from(createdAt), Long.parseLong(parts[2]));
+        } catch (IllegalArgumentException | DateTimeException e) {
+            throw new ValidationException("Invalid cursor", e);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package in.apoorvsahu.removebg.services.impl;
+
+import in.apoorvsahu.removebg.services.OrderArchivalService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.List;
+
+@Service
+@Slf4j
+public class OrderArchivalServiceImpl implements OrderArchivalService {
+
+    // rows are locked so a payment landing mid-batch either commits before the move or waits for it
+    private static final String SELECT_CANDIDATES_SQL = "SELECT id FROM tbl_orders "
+            + "WHERE payment = :payment AND created_at < :cutoff ORDER BY created_at, id LIMIT :limit FOR UPDATE";
+
+    private static final String COPY_SQL = "INSERT INTO tbl_orders_archive "
+            + "(id, order_id, receipt, clerk_id, plan, amount, credits, payment, created_at, paid_at, archived_at) "
+            + "SELECT id, order_id, receipt, clerk_id, plan, amount, credits, payment, created_at, paid_at, :archivedAt "
+            + "FROM tbl_orders WHERE id IN (:ids)";
+
+    private static final String DELETE_SQL = "DELETE FROM tbl_orders WHERE id IN (:ids)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter archivedUnpaid;
+    private final Counter archivedPaid;
+
+    @Value("${orders.archival.unpaid-after:7d}")
+    private Duration unpaidAfter;
+
+    @Value("${orders.archival.paid-retention:365d}")
+    private Duration paidRetention;
+
+    @Value("${orders.archival.batch-size:500}")
+    private int batchSize;
+
+    @Value("${orders.archival.batch-pause:200ms}")
+    private Duration batchPause;
+
+    @Value("${orders.archival.max-batches-per-run:100}")
+    private int maxBatchesPerRun;
+
+    public OrderArchivalServiceImpl(NamedParameterJdbcTemplate jdbcTemplate,
+                                    TransactionTemplate transactionTemplate,
+                                    MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.archivedUnpaid = archivedCounter(meterRegistry, "unpaid");
+        this.archivedPaid = archivedCounter(meterRegistry, "paid");
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${orders.archival.interval-ms:3600000}", initialDelayString = "${orders.archival.initial-delay-ms:60000}")
+    public int archiveStaleOrders() {
+        long now = System.currentTimeMillis();
+        int unpaid = archive(false, new Timestamp(now - unpaidAfter.toMillis()), archivedUnpaid);
+        int paid = archive(true, new Timestamp(now - paidRetention.toMillis()), archivedPaid);
+
+        if (unpaid + paid > 0) {
+            log.info("Archived {} unpaid and {} paid orders", unpaid, paid);
+        }
+        return unpaid + paid;
+    }
+
+    private int archive(boolean payment, Timestamp cutoff, Counter counter) {
+        int archived = 0;
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            Integer moved;
+            try {
+                moved = transactionTemplate.execute(status -> moveBatch(payment, cutoff));
+            } catch (DataAccessException e) {
+                log.error("Order archival batch failed, will retry on the next run", e);
+                break;
+            }
+
+            if (moved == null || moved == 0) {
+                break;
+            }
+            archived += moved;
+            counter.increment(moved);
+
+            if (moved < batchSize || !pause()) {
+                break;
+            }
+        }
+        return archived;
+    }
+
+    private int moveBatch(boolean payment, Timestamp cutoff) {
+        List<Long> ids = jdbcTemplate.queryForList(SELECT_CANDIDATES_SQL, new MapSqlParameterSource()
+                .addValue("payment", payment)
+                .addValue("cutoff", cutoff)
+                .addValue("limit", batchSize), Long.class);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("ids", ids)
+                .addValue("archivedAt", new Timestamp(System.currentTimeMillis()));
+        jdbcTemplate.update(COPY_SQL, params);
+        return jdbcTemplate.update(DELETE_SQL, params);
+    }
+
+    // spreads batches out so archival never holds locks or saturates the primary for long
+    private boolean pause() {
+        try {
+            Thread.sleep(batchPause.toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private Counter archivedCounter(MeterRegistry meterRegistry, String state) {
+        return Counter.builder("orders.archived")
+                .tag("state", state)
+                .description("Orders moved from tbl_orders to tbl_orders_archive")
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,320 @@
+package in.apoorvsahu.removebg.services.impl;
+
+import com.razorpay.Order;
+import in.apoorvsahu.removebg.Repositories.JobWatermarkRepository;
+import in.apoorvsahu.removebg.clients.RazorpayGateway;
+import in.apoorvsahu.removebg.entities.JobWatermark;
+import in.apoorvsahu.removebg.services.OrderReconciliationService;
+import in.apoorvsahu.removebg.services.OrderSettlementService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+
+@Service
+@Slf4j
+public class OrderReconciliationServiceImpl implements OrderReconciliationService {
+
+    private static final String JOB_NAME = "reconcile.orders";
+
+    // orders the gateway has not been asked about yet; checked ones leave through payment or next_check_at,
+    // so each batch is simply the oldest remaining new work
+    private static final String SELECT_PENDING_SQL = "SELECT id, order_id, check_count FROM tbl_orders "
+            + "WHERE payment = false AND order_id IS NOT NULL AND next_check_at IS NULL "
+            + "AND created_at > :from AND created_at < :to "
+            + "ORDER BY created_at, id LIMIT :limit";
+
+    private static final String SELECT_DUE_RECHECKS_SQL = "SELECT id, order_id, check_count FROM tbl_orders "
+            + "WHERE payment = false AND next_check_at <= :now AND created_at > :earliest "
+            + "ORDER BY next_check_at, id LIMIT :limit";
+
+    private static final String SCHEDULE_RECHECK_SQL = "UPDATE tbl_orders SET next_check_at = :nextCheckAt, "
+            + "check_count = :checkCount WHERE id = :id AND payment = false";
+
+    private enum Outcome {
+        SETTLED,
+        ALREADY_SETTLED,
+        UNPAID,
+        FAILED
+    }
+
+    private record PendingOrder(long id, String orderId, int checkCount) {}
+
+    private record BatchResult(int settled, boolean gatewayFailed) {}
+
+    private static final RowMapper<PendingOrder> PENDING_ORDER_MAPPER = (rs, rowNum) ->
+            new PendingOrder(rs.getLong("id"), rs.getString("order_id"), rs.getInt("check_count"));
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JobWatermarkRepository jobWatermarkRepository;
+    private final RazorpayGateway razorpayGateway;
+    private final OrderSettlementService orderSettlementService;
+    private final MeterRegistry meterRegistry;
+
+    // younger orders are still being paid, and the webhook or the client's verify call will settle them
+    @Value("${orders.reconciliation.min-age:15m}")
+    private Duration minAge;
+
+    // older unpaid orders are left to archival, this also bounds the first run
+    @Value("${orders.reconciliation.lookback:7d}")
+    private Duration lookback;
+
+    @Value("${orders.reconciliation.batch-size:100}")
+    private int batchSize;
+
+    @Value("${orders.reconciliation.max-batches-per-run:10}")
+    private int maxBatchesPerRun;
+
+    @Value("${orders.reconciliation.max-concurrent:4}")
+    private int maxConcurrent;
+
+    @Value("${orders.reconciliation.rate-per-second:5}")
+    private double ratePerSecond;
+
+    // an order found unpaid is asked about again after this, doubling per check up to max-backoff
+    @Value("${orders.reconciliation.recheck.initial-backoff:30m}")
+    private Duration recheckInitialBackoff;
+
+    @Value("${orders.reconciliation.recheck.max-backoff:12h}")
+    private Duration recheckMaxBackoff;
+
+    @Value("${orders.reconciliation.recheck.batch-size:20}")
+    private int recheckBatchSize;
+
+    public OrderReconciliationServiceImpl(NamedParameterJdbcTemplate jdbcTemplate,
+                                          TransactionTemplate transactionTemplate,
+                                          JobWatermarkRepository jobWatermarkRepository,
+                                          RazorpayGateway razorpayGateway,
+                                          OrderSettlementService orderSettlementService,
+                                          MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.jobWatermarkRepository = jobWatermarkRepository;
+        this.razorpayGateway = razorpayGateway;
+        this.orderSettlementService = orderSettlementService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${orders.reconciliation.interval-ms:300000}", initialDelayString = "${orders.reconciliation.initial-delay-ms:60000}")
+    public synchronized int reconcilePendingOrders() {
+        long now = System.currentTimeMillis();
+        Timestamp upTo = new Timestamp(now - minAge.toMillis());
+        Timestamp earliest = new Timestamp(now - lookback.toMillis());
+
+        Timestamp from;
+        try {
+            from = readWatermark(earliest);
+        } catch (DataAccessException e) {
+            log.error("Order reconciliation could not read its watermark, will retry on the next run", e);
+            return 0;
+        }
+        if (from.before(earliest)) {
+            from = earliest;
+        }
+        if (!upTo.after(from)) {
+            return 0;
+        }
+
+        Semaphore permits = new Semaphore(maxConcurrent);
+        long dispatchIntervalNanos = (long) (1_000_000_000L / ratePerSecond);
+        boolean windowComplete = false;
+        int settled = 0;
+
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            List<PendingOrder> pending;
+            try {
+                pending = findPending(from, upTo);
+            } catch (DataAccessException e) {
+                log.error("Order reconciliation batch failed, will retry on the next run", e);
+                break;
+            }
+            if (pending.isEmpty()) {
+                windowComplete = true;
+                break;
+            }
+
+            BatchResult result = checkAndRecord(pending, permits, dispatchIntervalNanos);
+            settled += result.settled();
+            if (result.gatewayFailed()) {
+                // the gateway is struggling; orders it could not answer for are still new work next run
+                break;
+            }
+            if (pending.size() < batchSize) {
+                windowComplete = true;
+                break;
+            }
+        }
+
+        if (windowComplete) {
+            // orders found unpaid moved to the recheck schedule, so the window never needs another look
+            advanceWatermark(upTo);
+        }
+        if (settled > 0) {
+            log.warn("Reconciliation settled {} orders that were paid but never verified", settled);
+        }
+        return settled;
+    }
+
+    // a user can still pay an order after it was first checked; those are asked about again with a per-order
+    // backoff and a small batch per run, so abandoned orders cost a handful of gateway calls over their lifetime
+    @Override
+    @Scheduled(fixedDelayString = "${orders.reconciliation.recheck.interval-ms:300000}", initialDelayString = "${orders.reconciliation.initial-delay-ms:60000}")
+    public synchronized int recheckUnpaidOrders() {
+        long now = System.currentTimeMillis();
+        List<PendingOrder> due;
+        try {
+            due = jdbcTemplate.query(SELECT_DUE_RECHECKS_SQL, new MapSqlParameterSource()
+                            .addValue("now", new Timestamp(now))
+                            .addValue("earliest", new Timestamp(now - lookback.toMillis()))
+                            .addValue("limit", recheckBatchSize),
+                    PENDING_ORDER_MAPPER);
+        } catch (DataAccessException e) {
+            log.error("Unpaid order recheck failed, will retry on the next run", e);
+            return 0;
+        }
+        if (due.isEmpty()) {
+            return 0;
+        }
+
+        int settled = checkAndRecord(due, new Semaphore(maxConcurrent), (long) (1_000_000_000L / ratePerSecond)).settled();
+        if (settled > 0) {
+            log.warn("Recheck settled {} orders that were paid after reconciliation first saw them", settled);
+        }
+        return settled;
+    }
+
+    private Timestamp readWatermark(Timestamp initial) {
+        return transactionTemplate.execute(status -> {
+            jobWatermarkRepository.createIfAbsent(JOB_NAME, initial);
+            return jobWatermarkRepository.findById(JOB_NAME)
+                    .map(JobWatermark::getWatermark)
+                    .orElse(initial);
+        });
+    }
+
+    // only ever moves forward, so an instance finishing late cannot rewind a newer run
+    private void advanceWatermark(Timestamp upTo) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> jobWatermarkRepository.lockByJobName(JOB_NAME)
+                    .filter(watermark -> upTo.after(watermark.getWatermark()))
+                    .ifPresent(watermark -> {
+                        watermark.setWatermark(upTo);
+                        watermark.setUpdatedAt(new Timestamp(System.currentTimeMillis()));
+                    }));
+        } catch (DataAccessException e) {
+            log.error("Order reconciliation could not advance its watermark, the window will be checked again", e);
+        }
+    }
+
+    private List<PendingOrder> findPending(Timestamp from, Timestamp upTo) {
+        return jdbcTemplate.query(SELECT_PENDING_SQL, new MapSqlParameterSource()
+                        .addValue("from", from)
+                        .addValue("to", upTo)
+                        .addValue("limit", batchSize),
+                PENDING_ORDER_MAPPER);
+    }
+
+    private BatchResult checkAndRecord(List<PendingOrder> orders, Semaphore permits, long dispatchIntervalNanos) {
+        List<Outcome> outcomes = check(orders, permits, dispatchIntervalNanos);
+        List<MapSqlParameterSource> rechecks = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        int settled = 0;
+        boolean gatewayFailed = false;
+
+        for (int i = 0; i < orders.size(); i++) {
+            Outcome outcome = outcomes.get(i);
+            countOutcome(outcome);
+            switch (outcome) {
+                case SETTLED -> settled++;
+                case UNPAID -> {
+                    PendingOrder order = orders.get(i);
+                    rechecks.add(new MapSqlParameterSource()
+                            .addValue("id", order.id())
+                            .addValue("checkCount", order.checkCount() + 1)
+                            .addValue("nextCheckAt", new Timestamp(now + recheckBackoff(order.checkCount()).toMillis())));
+                }
+                case FAILED -> gatewayFailed = true;
+                case ALREADY_SETTLED -> { }
+            }
+        }
+
+        if (!rechecks.isEmpty()) {
+            try {
+                jdbcTemplate.batchUpdate(SCHEDULE_RECHECK_SQL, rechecks.toArray(MapSqlParameterSource[]::new));
+            } catch (DataAccessException e) {
+                // the orders are simply checked again as new or due work
+                log.error("Could not schedule rechecks for {} unpaid orders", rechecks.size(), e);
+            }
+        }
+        return new BatchResult(settled, gatewayFailed);
+    }
+
+    private Duration recheckBackoff(int previousChecks) {
+        Duration backoff = recheckInitialBackoff.multipliedBy(1L << Math.min(previousChecks, 20));
+        return backoff.compareTo(recheckMaxBackoff) > 0 ? recheckMaxBackoff : backoff;
+    }
+
+    // paces gateway calls to the configured rate and keeps at most maxConcurrent of them in flight,
+    // so a backlog never crowds out the checkout traffic sharing the razorpay bulkhead
+    private List<Outcome> check(List<PendingOrder> pending, Semaphore permits, long dispatchIntervalNanos) {
+        List<CompletableFuture<Outcome>> checks = new ArrayList<>(pending.size());
+        long nextDispatch = System.nanoTime();
+
+        for (PendingOrder order : pending) {
+            try {
+                long wait = nextDispatch - System.nanoTime();
+                if (wait > 0) {
+                    Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+                }
+                nextDispatch = Math.max(nextDispatch, System.nanoTime()) + dispatchIntervalNanos;
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                checks.add(CompletableFuture.completedFuture(Outcome.FAILED));
+                continue;
+            }
+
+            checks.add(razorpayGateway.fetchOrderAsync(order.orderId())
+                    .thenCompose(gatewayOrder -> isPaid(gatewayOrder)
+                            ? orderSettlementService.settleAsync(order.orderId())
+                                    .thenApply(settlement -> settlement.isNewlySettled() ? Outcome.SETTLED : Outcome.ALREADY_SETTLED)
+                            : CompletableFuture.completedFuture(Outcome.UNPAID))
+                    .exceptionally(failure -> {
+                        log.warn("Could not reconcile order {}: {}", order.orderId(), failure.getMessage());
+                        return Outcome.FAILED;
+                    })
+                    .whenComplete((outcome, failure) -> permits.release()));
+        }
+
+        return checks.stream().map(CompletableFuture::join).toList();
+    }
+
+    private boolean isPaid(Order order) {
+        Object status = order.get("status");
+        return status != null && "paid".equalsIgnoreCase(status.toString());
+    }
+
+    private void countOutcome(Outcome outcome) {
+        Counter.builder("orders.reconciled")
+                .tag("outcome", outcome.name().toLowerCase())
+                .description("Pending orders checked against the payment gateway by the reconciliation job")
+                .register(meterRegistry)
+                .increment();
+    }
+}
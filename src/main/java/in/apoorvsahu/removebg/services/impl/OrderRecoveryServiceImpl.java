@@ -0,0 +1,122 @@
+package in.apoorvsahu.removebg.services.impl;
+
+import com.razorpay.Order;
+import com.razorpay.RazorpayException;
+import in.apoorvsahu.removebg.Repositories.OrderRepository;
+import in.apoorvsahu.removebg.clients.RazorpayGateway;
+import in.apoorvsahu.removebg.exceptions.BulkheadException;
+import in.apoorvsahu.removebg.services.OrderRecoveryService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repairs orders left behind by a crash or failure between recording an order and attaching its gateway
+ * id. Razorpay is asked for the order by our receipt: if it exists the id is attached, otherwise the
+ * gateway never saw the order and the pending row is dropped.
+ */
+@Service
+@Slf4j
+public class OrderRecoveryServiceImpl implements OrderRecoveryService {
+
+    private static final String SELECT_UNATTACHED_SQL = "SELECT receipt FROM tbl_orders "
+            + "WHERE order_id IS NULL AND receipt IS NOT NULL AND created_at < :cutoff "
+            + "ORDER BY created_at, id LIMIT :limit";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final OrderRepository orderRepository;
+    private final RazorpayGateway razorpayGateway;
+    private final Counter attached;
+    private final Counter discarded;
+
+    // comfortably longer than a gateway call can take, so in-flight orders are never touched
+    @Value("${orders.recovery.min-age:2m}")
+    private Duration minAge;
+
+    @Value("${orders.recovery.batch-size:50}")
+    private int batchSize;
+
+    public OrderRecoveryServiceImpl(NamedParameterJdbcTemplate jdbcTemplate,
+                                    TransactionTemplate transactionTemplate,
+                                    OrderRepository orderRepository,
+                                    RazorpayGateway razorpayGateway,
+                                    MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.orderRepository = orderRepository;
+        this.razorpayGateway = razorpayGateway;
+        this.attached = recoveredCounter(meterRegistry, "attached");
+        this.discarded = recoveredCounter(meterRegistry, "discarded");
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${orders.recovery.interval-ms:60000}", initialDelayString = "${orders.recovery.initial-delay-ms:60000}")
+    public int recoverUnattachedOrders() {
+        List<String> receipts;
+        try {
+            receipts = jdbcTemplate.queryForList(SELECT_UNATTACHED_SQL, new MapSqlParameterSource()
+                    .addValue("cutoff", new Timestamp(System.currentTimeMillis() - minAge.toMillis()))
+                    .addValue("limit", batchSize), String.class);
+        } catch (DataAccessException e) {
+            log.error("Order recovery could not read pending orders, will retry on the next run", e);
+            return 0;
+        }
+
+        int recovered = 0;
+        for (String receipt : receipts) {
+            Optional<Order> gatewayOrder;
+            try {
+                // looked up with no transaction open, each outcome is then applied in its own short one
+                gatewayOrder = razorpayGateway.findOrderByReceipt(receipt);
+            } catch (RazorpayException | BulkheadException e) {
+                log.warn("Order recovery stopped, gateway lookup for receipt {} failed: {}", receipt, e.getMessage());
+                break;
+            }
+
+            try {
+                if (gatewayOrder.isPresent()) {
+                    String orderId = gatewayOrder.get().get("id").toString();
+                    Integer updated = transactionTemplate.execute(status -> orderRepository.attachGatewayOrder(receipt, orderId));
+                    if (updated != null && updated > 0) {
+                        attached.increment();
+                        recovered++;
+                        log.warn("Recovered gateway order {} for receipt {}", orderId, receipt);
+                    }
+                } else {
+                    Integer deleted = transactionTemplate.execute(status -> orderRepository.deleteUnattached(receipt));
+                    if (deleted != null && deleted > 0) {
+                        discarded.increment();
+                        recovered++;
+                    }
+                }
+            } catch (DataAccessException e) {
+                log.error("Order recovery could not update receipt {}, will retry on the next run", receipt, e);
+            }
+        }
+
+        if (recovered > 0) {
+            log.info("Recovered {} pending orders", recovered);
+        }
+        return recovered;
+    }
+
+    private Counter recoveredCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("orders.recovered")
+                .tag("outcome", outcome)
+                .description("Orders whose gateway id was never stored, resolved by looking them up by receipt")
+                .register(meterRegistry);
+    }
+}
@@ -1,21 +1,24 @@
 package in.apoorvsahu.removebg.services.impl;
 
 import com.razorpay.Order;
-import com.razorpay.RazorpayException;
 import in.apoorvsahu.removebg.Repositories.OrderRepository;
 import in.apoorvsahu.removebg.entities.OrderEntity;
 import in.apoorvsahu.removebg.exceptions.InvalidPlanException;
 import in.apoorvsahu.removebg.exceptions.OrderServiceException;
 import in.apoorvsahu.removebg.exceptions.PaymentProcessingException;
+import in.apoorvsahu.removebg.resilience.Bulkhead;
 import in.apoorvsahu.removebg.services.OrderService;
 import in.apoorvsahu.removebg.services.RazorpayService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 @RequiredArgsConstructor
@@ -24,6 +27,9 @@ public class OrderServiceImpl implements OrderService {
 
     private final RazorpayService razorpayService;
     private final OrderRepository orderRepository;
+    private final TransactionTemplate transactionTemplate;
+    @Qualifier("orderPersistenceBulkhead")
+    private final Bulkhead orderPersistenceBulkhead;
 
     private static final Map<String, PlanDetails> PLAN_DETAILS = Map.of(
             "Basic", new PlanDetails("Basic", 100, 499.00),
@@ -34,56 +40,85 @@ public class OrderServiceImpl implements OrderService {
     private record PlanDetails(String name, int credits, double amount) {}
 
     @Override
-    @Transactional
-    public Order createOrder(String planId, String clerkId) throws RazorpayException {
-        try {
-            if (planId == null || planId.trim().isEmpty()) {
-                throw new InvalidPlanException("Plan ID cannot be empty");
-            }
+    public CompletableFuture<Order> createOrder(String planId, String clerkId) {
+        if (planId == null || planId.trim().isEmpty()) {
+            throw new InvalidPlanException("Plan ID cannot be empty");
+        }
 
-            PlanDetails details = PLAN_DETAILS.get(planId);
-            if (details == null) {
-                log.warn("Invalid plan requested: {}", planId);
-                throw new InvalidPlanException("Selected plan is not available. Please choose from: Basic, Premium, or Ultimate");
-            }
+        PlanDetails details = PLAN_DETAILS.get(planId);
+        if (details == null) {
+            log.warn("Invalid plan requested: {}", planId);
+            throw new InvalidPlanException("Selected plan is not available. Please choose from: Basic, Premium, or Ultimate");
+        }
 
-            if (clerkId == null || clerkId.trim().isEmpty()) {
-                throw new OrderServiceException("User identification is required");
-            }
+        if (clerkId == null || clerkId.trim().isEmpty()) {
+            throw new OrderServiceException("User identification is required");
+        }
 
-            log.info("Creating order for user: {} with plan: {}", clerkId, planId);
+        log.info("Creating order for user: {} with plan: {}", clerkId, planId);
 
-            Order razorpayOrder = razorpayService.createOrder(details.amount(), "INR");
+        //phase 1: record the intent under our own receipt, so no connection is held during the gateway call
+        String receipt = "rcpt_" + UUID.randomUUID().toString().replace("-", "");
+        savePendingOrder(receipt, details, clerkId);
 
-            if (razorpayOrder == null || razorpayOrder.get("id") == null) {
-                throw new PaymentProcessingException("Failed to create payment order");
-            }
+        //phase 2: create the gateway order, the request thread is released while it is in flight
+        CompletableFuture<Order> gatewayOrder;
+        try {
+            gatewayOrder = razorpayService.createOrderAsync(details.amount(), "INR", receipt);
+        } catch (RuntimeException e) {
+            // rejected before reaching the gateway, so there is nothing to recover
+            discardPendingOrder(receipt);
+            throw e;
+        }
 
-            OrderEntity newOrder = OrderEntity.builder()
+        //phase 3: attach the gateway id off the razorpay threads, which should only ever wait on the gateway;
+        //a crash or a full bulkhead before this point is repaired by OrderRecoveryService
+        return gatewayOrder.thenCompose(razorpayOrder ->
+                orderPersistenceBulkhead.executeAsync(() -> attachGatewayOrder(razorpayOrder, receipt)));
+    }
+
+    private void savePendingOrder(String receipt, PlanDetails details, String clerkId) {
+        try {
+            orderRepository.save(OrderEntity.builder()
                     .clerkId(clerkId)
                     .plan(details.name())
                     .credits(details.credits())
                     .amount(details.amount())
-                    .orderId(razorpayOrder.get("id").toString())
+                    .receipt(receipt)
                     .payment(false)
-                    .build();
+                    .build());
+        } catch (DataAccessException e) {
+            log.error("Database error while creating order: {}", e.getMessage());
+            throw new OrderServiceException("Failed to save order details. Please try again later");
+        }
+    }
+
+    private void discardPendingOrder(String receipt) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> orderRepository.deleteUnattached(receipt));
+        } catch (DataAccessException e) {
+            log.warn("Could not discard pending order {}, recovery will remove it: {}", receipt, e.getMessage());
+        }
+    }
 
-            orderRepository.save(newOrder);
-            log.info("Order saved successfully with ID: {}", (Object) razorpayOrder.get("id"));
+    private Order attachGatewayOrder(Order razorpayOrder, String receipt) {
+        if (razorpayOrder == null || razorpayOrder.get("id") == null) {
+            throw new PaymentProcessingException("Failed to create payment order");
+        }
 
+        String orderId = razorpayOrder.get("id").toString();
+        try {
+            Integer attached = transactionTemplate.execute(status -> orderRepository.attachGatewayOrder(receipt, orderId));
+            if ((attached == null || attached == 0) && orderRepository.findByOrderId(orderId).isEmpty()) {
+                throw new OrderServiceException("Failed to save order details. Please try again later");
+            }
+
+            log.info("Order saved successfully with ID: {}", orderId);
             return razorpayOrder;
 
-        } catch (InvalidPlanException | PaymentProcessingException | OrderServiceException e) {
-            throw e;
-        } catch (RazorpayException e) {
-            log.error("Razorpay error while creating order: {}", e.getMessage());
-            throw new PaymentProcessingException("Payment gateway error: " + e.getMessage());
         } catch (DataAccessException e) {
             log.error("Database error while creating order: {}", e.getMessage());
             throw new OrderServiceException("Failed to save order details. Please try again later");
-        } catch (Exception e) {
-            log.error("Unexpected error while creating order: ", e);
-            throw new OrderServiceException("An unexpected error occurred while creating the order");
         }
     }
 
@@ -0,0 +1,117 @@
+package in.apoorvsahu.removebg.services.impl;
+
+import in.apoorvsahu.removebg.Repositories.ArchivedOrderRepository;
+import in.apoorvsahu.removebg.Repositories.OrderRepository;
+import in.apoorvsahu.removebg.cache.SettledOrderCache;
+import in.apoorvsahu.removebg.dtos.OrderSettlementDto;
+import in.apoorvsahu.removebg.entities.OrderEntity;
+import in.apoorvsahu.removebg.exceptions.OrderNotFoundException;
+import in.apoorvsahu.removebg.exceptions.PaymentProcessingException;
+import in.apoorvsahu.removebg.exceptions.UserNotFoundException;
+import in.apoorvsahu.removebg.resilience.Bulkhead;
+import in.apoorvsahu.removebg.services.OrderSettlementService;
+import in.apoorvsahu.removebg.services.UserEventService;
+import in.apoorvsahu.removebg.services.UserService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderSettlementServiceImpl implements OrderSettlementService {
+
+    private final OrderRepository orderRepository;
+    private final ArchivedOrderRepository archivedOrderRepository;
+    private final UserService userService;
+    private final UserEventService userEventService;
+    private final TransactionTemplate transactionTemplate;
+    private final SettledOrderCache settledOrderCache;
+    @Qualifier("settlementBulkhead")
+    private final Bulkhead settlementBulkhead;
+
+    @Override
+    public OrderSettlementDto settle(String razorpayOrderId) {
+        Optional<OrderSettlementDto> settled = settledOrderCache.get(razorpayOrderId);
+        if (settled.isPresent()) {
+            OrderSettlementDto settlement = settled.get();
+            settlement.setTotalCredits(userService.getUserByClerkId(settlement.getClerkId()).getCredits());
+            return settlement;
+        }
+
+        OrderSettlementDto settlement;
+        try {
+            settlement = transactionTemplate.execute(status -> settleInTransaction(razorpayOrderId));
+        } catch (OrderNotFoundException | PaymentProcessingException e) {
+            throw e;
+        } catch (UserNotFoundException e) {
+            log.error("User not found while settling order {}: {}", razorpayOrderId, e.getMessage());
+            throw new PaymentProcessingException("User account not found. Please contact support", e);
+        } catch (DataAccessException e) {
+            log.error("Database error while settling order {}: {}", razorpayOrderId, e.getMessage());
+            throw new PaymentProcessingException("Database error during payment processing. Please contact support", e);
+        } catch (Exception e) {
+            log.error("Unexpected error while settling order {}: ", razorpayOrderId, e);
+            throw new PaymentProcessingException("Failed to process payment. Please contact support", e);
+        }
+
+        if (settlement != null) {
+            settledOrderCache.put(razorpayOrderId, settlement.getClerkId(), settlement.getCreditsAdded());
+            if (settlement.isNewlySettled()) {
+                userEventService.publishCredits(settlement.getClerkId(), settlement.getTotalCredits());
+            }
+        }
+        return settlement;
+    }
+
+    @Override
+    public CompletableFuture<OrderSettlementDto> settleAsync(String razorpayOrderId) {
+        return settlementBulkhead.executeAsync(() -> settle(razorpayOrderId));
+    }
+
+    private OrderSettlementDto settleInTransaction(String razorpayOrderId) {
+        OrderEntity order = orderRepository.findByOrderId(razorpayOrderId)
+                .or(() -> restoreArchived(razorpayOrderId))
+                .orElseThrow(() -> new OrderNotFoundException("Order not found in our records: " + razorpayOrderId));
+
+        if (orderRepository.markPaid(razorpayOrderId, new Timestamp(System.currentTimeMillis())) == 0) {
+            log.debug("Order {} was already settled", razorpayOrderId);
+            return OrderSettlementDto.builder()
+                    .orderId(razorpayOrderId)
+                    .clerkId(order.getClerkId())
+                    .creditsAdded(order.getCredits())
+                    .totalCredits(userService.getUserByClerkId(order.getClerkId()).getCredits())
+                    .newlySettled(false)
+                    .build();
+        }
+
+        int totalCredits = userService.grantCredits(order.getClerkId(), order.getCredits());
+        log.info("Settled order: {} - Added {} credits to user: {}", razorpayOrderId, order.getCredits(), order.getClerkId());
+
+        return OrderSettlementDto.builder()
+                .orderId(razorpayOrderId)
+                .clerkId(order.getClerkId())
+                .creditsAdded(order.getCredits())
+                .totalCredits(totalCredits)
+                .newlySettled(true)
+                .build();
+    }
+
+    // a Razorpay order can still be paid after archival has moved it out of the hot table, so the row is moved
+    // back and settled as usual; a concurrent restore fails on the unique order id and is retried by its caller
+    private Optional<OrderEntity> restoreArchived(String razorpayOrderId) {
+        if (orderRepository.restoreArchived(razorpayOrderId) == 0) {
+            return Optional.empty();
+        }
+        archivedOrderRepository.deleteArchived(razorpayOrderId);
+        log.warn("Restored archived order {} to settle a late payment", razorpayOrderId);
+        return orderRepository.findByOrderId(razorpayOrderId);
+    }
+}
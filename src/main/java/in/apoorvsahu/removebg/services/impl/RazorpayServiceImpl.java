@@ -1,26 +1,32 @@
 package in.apoorvsahu.removebg.services.impl;
 
 import com.razorpay.Order;
-import com.razorpay.RazorpayClient;
 import com.razorpay.RazorpayException;
 import in.apoorvsahu.removebg.Repositories.OrderRepository;
-import in.apoorvsahu.removebg.dtos.UserDto;
+import in.apoorvsahu.removebg.cache.SettledOrderCache;
+import in.apoorvsahu.removebg.clients.RazorpayGateway;
+import in.apoorvsahu.removebg.dtos.OrderSettlementDto;
 import in.apoorvsahu.removebg.entities.OrderEntity;
 import in.apoorvsahu.removebg.exceptions.OrderNotFoundException;
 import in.apoorvsahu.removebg.exceptions.PaymentProcessingException;
-import in.apoorvsahu.removebg.exceptions.UserNotFoundException;
+import in.apoorvsahu.removebg.exceptions.BulkheadException;
+import in.apoorvsahu.removebg.services.OrderSettlementService;
 import in.apoorvsahu.removebg.services.RazorpayService;
 import in.apoorvsahu.removebg.services.UserService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 @RequiredArgsConstructor
@@ -33,137 +39,214 @@ public class RazorpayServiceImpl implements RazorpayService {
     @Value("${razorpay.key.secret}")
     private String razorpayKeySecret;
 
+    @Value("${razorpay.webhook.secret:}")
+    private String razorpayWebhookSecret;
+
     private final OrderRepository orderRepository;
     private final UserService userService;
+    private final OrderSettlementService orderSettlementService;
+    private final SettledOrderCache settledOrderCache;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, CompletableFuture<Map<String, Object>>> inFlightVerifications = new ConcurrentHashMap<>();
+    private final RazorpayGateway razorpayGateway;
 
     @Override
-    public Order createOrder(Double amount, String currency) throws RazorpayException {
+    public Order createOrder(Double amount, String currency, String receipt) throws RazorpayException {
         try {
-            if (amount == null || amount <= 0) {
-                throw new PaymentProcessingException("Invalid amount specified");
-            }
-
-            if (currency == null || currency.trim().isEmpty()) {
-                throw new PaymentProcessingException("Currency is required");
-            }
-
-            if (razorpayKeyId == null || razorpayKeyId.trim().isEmpty() ||
-                    razorpayKeySecret == null || razorpayKeySecret.trim().isEmpty()) {
-                log.error("Razorpay credentials not configured properly");
-                throw new PaymentProcessingException("Payment service configuration error");
-            }
-
-            RazorpayClient razorpayClient = new RazorpayClient(razorpayKeyId, razorpayKeySecret);
-
-            JSONObject orderRequest = new JSONObject();
-            orderRequest.put("amount", Math.round(amount * 100));
-            orderRequest.put("currency", currency.toUpperCase());
-            orderRequest.put("receipt", "order_rcptid_" + System.currentTimeMillis());
-            orderRequest.put("payment_capture", 1);
+            JSONObject orderRequest = buildOrderRequest(amount, currency, receipt);
 
             log.info("Creating Razorpay order with amount: {} {}", amount, currency);
-            Order order = razorpayClient.orders.create(orderRequest);
+            Order order = razorpayGateway.createOrder(orderRequest);
 
             log.info("Razorpay order created successfully: {}", (Object) order.get("id"));
             return order;
 
-        } catch (RazorpayException e) {
-            log.error("Razorpay API error: {}", e.getMessage());
-            throw new PaymentProcessingException("Payment gateway error: " + e.getMessage());
+        } catch (PaymentProcessingException e) {
+            throw e;
         } catch (Exception e) {
-            log.error("Unexpected error while creating Razorpay order: ", e);
-            throw new PaymentProcessingException("Failed to create payment order");
+            throw translateOrderCreationFailure(e);
         }
     }
 
     @Override
-    @Transactional
+    public CompletableFuture<Order> createOrderAsync(Double amount, String currency, String receipt) {
+        JSONObject orderRequest = buildOrderRequest(amount, currency, receipt);
+
+        log.info("Creating Razorpay order with amount: {} {}", amount, currency);
+        return razorpayGateway.createOrderAsync(orderRequest)
+                .handle((order, failure) -> {
+                    if (failure != null) {
+                        Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                                ? failure.getCause() : failure;
+                        throw translateOrderCreationFailure(cause);
+                    }
+                    log.info("Razorpay order created successfully: {}", (Object) order.get("id"));
+                    return order;
+                });
+    }
+
+    @Override
     public Map<String, Object> verifyPayment(String razorpayOrderId) throws RazorpayException {
-        Map<String, Object> returnValue = new HashMap<>();
+        if (razorpayOrderId == null || razorpayOrderId.trim().isEmpty()) {
+            throw new PaymentProcessingException("Order ID is required for verification");
+        }
 
-        try {
-            if (razorpayOrderId == null || razorpayOrderId.trim().isEmpty()) {
-                throw new PaymentProcessingException("Order ID is required for verification");
-            }
+        Optional<OrderSettlementDto> settled = settledOrderCache.get(razorpayOrderId);
+        if (settled.isPresent()) {
+            countVerification("cache");
+            return paidResult(settled.get().getCreditsAdded(), userService.getUserByClerkId(settled.get().getClerkId()).getCredits());
+        }
 
-            if (razorpayKeyId == null || razorpayKeyId.trim().isEmpty() ||
-                    razorpayKeySecret == null || razorpayKeySecret.trim().isEmpty()) {
-                log.error("Razorpay credentials not configured for verification");
-                throw new PaymentProcessingException("Payment service configuration error");
-            }
+        // clients poll verify, so concurrent calls for one order share a single lookup
+        CompletableFuture<Map<String, Object>> verification = new CompletableFuture<>();
+        CompletableFuture<Map<String, Object>> inFlight = inFlightVerifications.putIfAbsent(razorpayOrderId, verification);
+        if (inFlight != null) {
+            countVerification("shared");
+            return awaitVerification(inFlight);
+        }
 
-            RazorpayClient razorpayClient = new RazorpayClient(razorpayKeyId, razorpayKeySecret);
+        countVerification("lookup");
+        try {
+            Map<String, Object> result = verifyOrder(razorpayOrderId);
+            verification.complete(result);
+            return new HashMap<>(result);
+        } catch (RuntimeException e) {
+            verification.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightVerifications.remove(razorpayOrderId, verification);
+        }
+    }
 
-            log.info("Verifying payment for order: {}", razorpayOrderId);
-            Order orderInfo = razorpayClient.orders.fetch(razorpayOrderId);
+    private Map<String, Object> verifyOrder(String razorpayOrderId) {
+        try {
+            OrderEntity order = orderRepository.findByOrderId(razorpayOrderId)
+                    .orElseThrow(() -> new OrderNotFoundException("Order not found in our records: " + razorpayOrderId));
 
-            if (orderInfo == null) {
-                throw new OrderNotFoundException("Order not found in payment gateway");
+            if (Boolean.TRUE.equals(order.getPayment())) {
+                settledOrderCache.put(razorpayOrderId, order.getClerkId(), order.getCredits());
+                return paidResult(order.getCredits(), userService.getUserByClerkId(order.getClerkId()).getCredits());
             }
 
-            String orderStatus = orderInfo.get("status") != null ? orderInfo.get("status").toString() : "";
-
-            if ("paid".equalsIgnoreCase(orderStatus)) {
-                return processPaidOrder(razorpayOrderId);
-            } else {
-                log.warn("Payment not completed for order: {} - Status: {}", razorpayOrderId, orderStatus);
+            // settlement is pushed by the webhook, so an unpaid order only means it has not arrived yet
+            if (razorpayWebhookSecret != null && !razorpayWebhookSecret.trim().isEmpty()) {
+                Map<String, Object> returnValue = new HashMap<>();
                 returnValue.put("success", false);
-                returnValue.put("message", "Payment not completed. Please try again or contact support");
+                returnValue.put("pending", true);
+                returnValue.put("message", "Payment is being confirmed. Your credits will appear shortly");
                 return returnValue;
             }
 
+            return verifyWithGateway(razorpayOrderId);
+
         } catch (PaymentProcessingException | OrderNotFoundException e) {
             throw e;
         } catch (RazorpayException e) {
             log.error("Razorpay error during payment verification: {}", e.getMessage());
             throw new PaymentProcessingException("Payment gateway error during verification: " + e.getMessage());
+        } catch (BulkheadException e) {
+            log.error("Razorpay bulkhead rejected payment verification: {}", e.getMessage());
+            throw new PaymentProcessingException("Payment gateway is busy. Please try again later");
         } catch (Exception e) {
             log.error("Unexpected error during payment verification: ", e);
             throw new PaymentProcessingException("Payment verification failed");
         }
     }
 
-    private Map<String, Object> processPaidOrder(String razorpayOrderId) {
-        Map<String, Object> returnValue = new HashMap<>();
-
+    private Map<String, Object> awaitVerification(CompletableFuture<Map<String, Object>> inFlight) {
         try {
-            OrderEntity existingOrder = orderRepository.findByOrderId(razorpayOrderId)
-                    .orElseThrow(() -> new OrderNotFoundException("Order not found in our records: " + razorpayOrderId));
-
-            if (Boolean.TRUE.equals(existingOrder.getPayment())) {
-                log.warn("Payment already processed for order: {}", razorpayOrderId);
-                returnValue.put("success", false);
-                returnValue.put("message", "Payment has already been processed for this order");
-                return returnValue;
+            return new HashMap<>(inFlight.join());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
             }
+            throw new PaymentProcessingException("Payment verification failed", e.getCause());
+        }
+    }
 
-            UserDto userDto = userService.getUserByClerkId(existingOrder.getClerkId());
-            int newCredits = userDto.getCredits() + existingOrder.getCredits();
-            userDto.setCredits(newCredits);
-            userService.saveUser(userDto);
+    private void countVerification(String source) {
+        Counter.builder("orders.verify")
+                .tag("source", source)
+                .description("Payment verifications by how they were answered")
+                .register(meterRegistry)
+                .increment();
+    }
 
-            existingOrder.setPayment(true);
-            orderRepository.save(existingOrder);
+    // fallback for deployments without a webhook: ask the gateway and settle on the caller's thread
+    private Map<String, Object> verifyWithGateway(String razorpayOrderId) throws RazorpayException {
+        if (razorpayKeyId == null || razorpayKeyId.trim().isEmpty() ||
+                razorpayKeySecret == null || razorpayKeySecret.trim().isEmpty()) {
+            log.error("Razorpay credentials not configured for verification");
+            throw new PaymentProcessingException("Payment service configuration error");
+        }
 
-            log.info("Payment processed successfully for order: {} - Added {} credits to user: {}",
-                    razorpayOrderId, existingOrder.getCredits(), existingOrder.getClerkId());
+        log.info("Verifying payment for order: {}", razorpayOrderId);
+        Order orderInfo = razorpayGateway.fetchOrder(razorpayOrderId);
 
-            returnValue.put("success", true);
-            returnValue.put("message", String.format("Payment successful! %d credits added to your account", existingOrder.getCredits()));
-            returnValue.put("creditsAdded", existingOrder.getCredits());
-            returnValue.put("totalCredits", newCredits);
+        if (orderInfo == null) {
+            throw new OrderNotFoundException("Order not found in payment gateway");
+        }
 
-            return returnValue;
+        String orderStatus = orderInfo.get("status") != null ? orderInfo.get("status").toString() : "";
 
-        } catch (UserNotFoundException e) {
-            log.error("User not found while processing payment: {}", e.getMessage());
-            throw new PaymentProcessingException("User account not found. Please contact support");
-        } catch (DataAccessException e) {
-            log.error("Database error while processing payment: {}", e.getMessage());
-            throw new PaymentProcessingException("Database error during payment processing. Please contact support");
-        } catch (Exception e) {
-            log.error("Unexpected error while processing paid order: ", e);
-            throw new PaymentProcessingException("Failed to process payment. Please contact support");
+        if ("paid".equalsIgnoreCase(orderStatus)) {
+            OrderSettlementDto settlement = orderSettlementService.settle(razorpayOrderId);
+            return paidResult(settlement.getCreditsAdded(), settlement.getTotalCredits());
+        }
+
+        log.warn("Payment not completed for order: {} - Status: {}", razorpayOrderId, orderStatus);
+        Map<String, Object> returnValue = new HashMap<>();
+        returnValue.put("success", false);
+        returnValue.put("message", "Payment not completed. Please try again or contact support");
+        return returnValue;
+    }
+
+    private Map<String, Object> paidResult(Integer creditsAdded, Integer totalCredits) {
+        Map<String, Object> returnValue = new HashMap<>();
+        returnValue.put("success", true);
+        returnValue.put("message", String.format("Payment successful! %d credits added to your account", creditsAdded));
+        returnValue.put("creditsAdded", creditsAdded);
+        returnValue.put("totalCredits", totalCredits);
+        return returnValue;
+    }
+
+    private JSONObject buildOrderRequest(Double amount, String currency, String receipt) {
+        if (amount == null || amount <= 0) {
+            throw new PaymentProcessingException("Invalid amount specified");
+        }
+
+        if (currency == null || currency.trim().isEmpty()) {
+            throw new PaymentProcessingException("Currency is required");
+        }
+
+        if (razorpayKeyId == null || razorpayKeyId.trim().isEmpty() ||
+                razorpayKeySecret == null || razorpayKeySecret.trim().isEmpty()) {
+            log.error("Razorpay credentials not configured properly");
+            throw new PaymentProcessingException("Payment service configuration error");
+        }
+
+        JSONObject orderRequest = new JSONObject();
+        orderRequest.put("amount", Math.round(amount * 100));
+        orderRequest.put("currency", currency.toUpperCase());
+        orderRequest.put("receipt", receipt);
+        orderRequest.put("payment_capture", 1);
+        return orderRequest;
+    }
+
+    private PaymentProcessingException translateOrderCreationFailure(Throwable e) {
+        if (e instanceof PaymentProcessingException paymentProcessingException) {
+            return paymentProcessingException;
+        }
+        if (e instanceof RazorpayException) {
+            log.error("Razorpay API error: {}", e.getMessage());
+            return new PaymentProcessingException("Payment gateway error: " + e.getMessage());
+        }
+        if (e instanceof BulkheadException) {
+            log.error("Razorpay bulkhead rejected order creation: {}", e.getMessage());
+            return new PaymentProcessingException("Payment gateway is busy. Please try again later");
         }
+        log.error("Unexpected error while creating Razorpay order: ", e);
+        return new PaymentProcessingException("Failed to create payment order");
     }
 }
\ No newline at end of file
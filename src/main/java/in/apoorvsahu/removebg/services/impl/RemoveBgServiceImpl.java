@@ -1,17 +1,27 @@
 package in.apoorvsahu.removebg.services.impl;
 
+import in.apoorvsahu.removebg.clients.BufferedMultipartFile;
 import in.apoorvsahu.removebg.clients.ClipdropClient;
+import in.apoorvsahu.removebg.dtos.ProcessedImageDto;
+import in.apoorvsahu.removebg.exceptions.BulkheadException;
 import in.apoorvsahu.removebg.exceptions.RemoveBgServiceException;
+import in.apoorvsahu.removebg.resilience.Bulkhead;
+import in.apoorvsahu.removebg.services.ClipdropQuotaService;
 import in.apoorvsahu.removebg.services.RemoveBgService;
 import feign.FeignException;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.concurrent.TimeUnit;
+
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class RemoveBgServiceImpl implements RemoveBgService {
 
@@ -19,23 +29,63 @@ public class RemoveBgServiceImpl implements RemoveBgService {
     private String apiKey;
 
     private final ClipdropClient clipdropClient;
+    private final ClipdropQuotaService clipdropQuotaService;
+    private final Bulkhead clipdropBulkhead;
+    private final Timer clipdropLatency;
+
+    public RemoveBgServiceImpl(ClipdropClient clipdropClient,
+                               ClipdropQuotaService clipdropQuotaService,
+                               MeterRegistry meterRegistry,
+                               @Qualifier("clipdropBulkhead") Bulkhead clipdropBulkhead) {
+        this.clipdropClient = clipdropClient;
+        this.clipdropQuotaService = clipdropQuotaService;
+        this.clipdropBulkhead = clipdropBulkhead;
+        this.clipdropLatency = Timer.builder("clipdrop.request.duration")
+                .description("Latency of Clipdrop remove-background calls")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
 
     @Override
-    public byte[] removeBackground(MultipartFile file) {
+    public ProcessedImageDto removeBackground(MultipartFile file) {
         try {
             validateApiKey();
 
             log.info("Processing image: {} (size: {} bytes)", file.getOriginalFilename(), file.getSize());
 
-            byte[] result = clipdropClient.removeBackground(file, apiKey);
+            // read here rather than on the bulkhead thread, the upload's temp file goes away with the request
+            MultipartFile upload = new BufferedMultipartFile(file);
+
+            long startNanos = System.nanoTime();
+            ResponseEntity<byte[]> response;
+            try {
+                response = clipdropBulkhead.execute(() -> clipdropClient.removeBackground(upload, apiKey));
+            } finally {
+                clipdropLatency.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            }
+            long latencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+            Integer remainingCredits = parseCreditsHeader(response.getHeaders(), ClipdropClient.REMAINING_CREDITS_HEADER);
+            Integer creditsConsumed = parseCreditsHeader(response.getHeaders(), ClipdropClient.CREDITS_CONSUMED_HEADER);
+            clipdropQuotaService.recordUsage(remainingCredits, creditsConsumed);
 
+            byte[] result = response.getBody();
             if (result == null || result.length == 0) {
                 throw new RemoveBgServiceException("No image data received from processing service");
             }
 
-            log.info("Successfully processed image: {}", file.getOriginalFilename());
-            return result;
+            log.info("Successfully processed image: {} in {} ms (Clipdrop credits remaining: {})",
+                    file.getOriginalFilename(), latencyMs, remainingCredits);
+            return ProcessedImageDto.builder()
+                    .imageData(result)
+                    .upstreamLatencyMs(latencyMs)
+                    .remainingCredits(remainingCredits)
+                    .creditsConsumed(creditsConsumed)
+                    .build();
 
+        } catch (BulkheadException e) {
+            log.error("Clipdrop bulkhead rejected request: {}", e.getMessage());
+            throw new RemoveBgServiceException("Service is busy. Please try again in a few minutes");
         } catch (FeignException.Unauthorized e) {
             log.error("Unauthorized access to Clipdrop API: {}", e.getMessage());
             throw new RemoveBgServiceException("Invalid API configuration. Please contact support");
@@ -57,6 +107,19 @@ public class RemoveBgServiceImpl implements RemoveBgService {
         }
     }
 
+    private Integer parseCreditsHeader(HttpHeaders headers, String headerName) {
+        String value = headers.getFirst(headerName);
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring malformed {} header from Clipdrop: {}", headerName, value);
+            return null;
+        }
+    }
+
     private void validateApiKey() {
         if (apiKey == null || apiKey.trim().isEmpty()) {
             log.error("Clipdrop API key is not configured");
@@ -0,0 +1,152 @@
+package in.apoorvsahu.removebg.services.impl;
+
+import in.apoorvsahu.removebg.entities.UsageEvent;
+import in.apoorvsahu.removebg.services.UsageEventService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+@Slf4j
+public class UsageEventServiceImpl implements UsageEventService {
+
+    private static final String INSERT_SQL = "INSERT INTO tbl_usage_events "
+            + "(clerk_id, input_bytes, content_type, width, height, upstream_latency_ms, engine, outcome, credits_charged, created_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BlockingQueue<UsageEvent> queue;
+    private final int batchSize;
+    private final long dropLogIntervalMs;
+    private final AtomicLong droppedSinceLastLog = new AtomicLong();
+    private final AtomicLong lastDropLogAt = new AtomicLong();
+    private final Counter droppedEvents;
+    private final Counter persistedEvents;
+    private final Counter failedEvents;
+
+    public UsageEventServiceImpl(JdbcTemplate jdbcTemplate,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${usage.events.queue-capacity:10000}") int queueCapacity,
+                                 @Value("${usage.events.batch-size:500}") int batchSize,
+                                 @Value("${usage.events.drop-log-interval-ms:60000}") long dropLogIntervalMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.dropLogIntervalMs = dropLogIntervalMs;
+
+        Gauge.builder("usage.events.queued", queue, BlockingQueue::size)
+                .description("Usage events waiting to be written")
+                .register(meterRegistry);
+        this.droppedEvents = Counter.builder("usage.events.dropped")
+                .description("Usage events discarded because the queue was full")
+                .register(meterRegistry);
+        this.persistedEvents = Counter.builder("usage.events.persisted")
+                .description("Usage events written to the database")
+                .register(meterRegistry);
+        this.failedEvents = Counter.builder("usage.events.failed")
+                .description("Usage events lost because a batch insert failed")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public boolean record(UsageEvent event) {
+        if (event.getCreatedAt() == null) {
+            event.setCreatedAt(new Timestamp(System.currentTimeMillis()));
+        }
+
+        // the request path never blocks on the audit trail, newest events are dropped when the writer falls behind
+        if (!queue.offer(event)) {
+            droppedEvents.increment();
+            logDropped();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${usage.events.flush-interval-ms:2000}")
+    public int flush() {
+        int written = 0;
+        List<UsageEvent> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            written += writeBatch(batch);
+            boolean partial = batch.size() < batchSize;
+            batch.clear();
+            if (partial) {
+                break;
+            }
+        }
+        return written;
+    }
+
+    @PreDestroy
+    public void drain() {
+        int written = flush();
+        if (written > 0) {
+            log.info("Flushed {} usage events on shutdown", written);
+        }
+    }
+
+    // a full queue drops on every request, so only one thread per interval reports the accumulated count
+    private void logDropped() {
+        droppedSinceLastLog.incrementAndGet();
+        long now = System.currentTimeMillis();
+        long lastLoggedAt = lastDropLogAt.get();
+        if (now - lastLoggedAt >= dropLogIntervalMs && lastDropLogAt.compareAndSet(lastLoggedAt, now)) {
+            log.warn("Usage event queue is full, dropped {} events since the last report",
+                    droppedSinceLastLog.getAndSet(0));
+        }
+    }
+
+    private int writeBatch(List<UsageEvent> batch) {
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, event) -> {
+                ps.setString(1, event.getClerkId());
+                ps.setLong(2, event.getInputBytes());
+                ps.setString(3, event.getContentType());
+                setNullableInt(ps, 4, event.getWidth());
+                setNullableInt(ps, 5, event.getHeight());
+                if (event.getUpstreamLatencyMs() != null) {
+                    ps.setLong(6, event.getUpstreamLatencyMs());
+                } else {
+                    ps.setNull(6, Types.BIGINT);
+                }
+                ps.setString(7, event.getEngine());
+                ps.setString(8, event.getOutcome().name());
+                ps.setInt(9, event.getCreditsCharged());
+                ps.setTimestamp(10, event.getCreatedAt());
+            });
+            persistedEvents.increment(batch.size());
+            return batch.size();
+        } catch (DataAccessException e) {
+            failedEvents.increment(batch.size());
+            log.error("Failed to write batch of {} usage events", batch.size(), e);
+            return 0;
+        }
+    }
+
+    private void setNullableInt(PreparedStatement ps, int index, Integer value) throws SQLException {
+        if (value != null) {
+            ps.setInt(index, value);
+        } else {
+            ps.setNull(index, Types.INTEGER);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package in.apoorvsahu.removebg.services.impl;
+
+import in.apoorvsahu.removebg.exceptions.EventStreamLimitException;
+import in.apoorvsahu.removebg.services.UserEventService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+@Slf4j
+public class UserEventServiceImpl implements UserEventService {
+
+    private static final String CREDITS_EVENT = "credits";
+    private static final String PROCESSING_EVENT = "processing";
+
+    @Value("${events.sse.timeout-ms:1800000}")
+    private long emitterTimeoutMs;
+
+    @Value("${events.sse.max-connections:2000}")
+    private int maxConnections;
+
+    @Value("${events.sse.max-connections-per-user:3}")
+    private int maxConnectionsPerUser;
+
+    private final Map<String, Set<SseEmitter>> emittersByUser = new ConcurrentHashMap<>();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+
+    @Override
+    public SseEmitter subscribe(String clerkId) {
+        if (connectionCount.incrementAndGet() > maxConnections) {
+            connectionCount.decrementAndGet();
+            log.warn("Rejected event stream for user: {} - server connection limit reached", clerkId);
+            throw new EventStreamLimitException("Too many open event streams. Please try again later");
+        }
+
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        boolean[] accepted = {false};
+        emittersByUser.compute(clerkId, (key, emitters) -> {
+            Set<SseEmitter> current = emitters != null ? emitters : ConcurrentHashMap.newKeySet();
+            if (current.size() < maxConnectionsPerUser) {
+                current.add(emitter);
+                accepted[0] = true;
+            }
+            return current;
+        });
+
+        if (!accepted[0]) {
+            connectionCount.decrementAndGet();
+            log.warn("Rejected event stream for user: {} - per-user connection limit reached", clerkId);
+            throw new EventStreamLimitException("Too many open event streams for this account");
+        }
+
+        emitter.onCompletion(() -> removeEmitter(clerkId, emitter));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> removeEmitter(clerkId, emitter));
+
+        log.debug("Opened event stream for user: {} ({} open streams)", clerkId, connectionCount.get());
+        return emitter;
+    }
+
+    @Override
+    public void publishCredits(String clerkId, Integer credits) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("credits", credits != null ? credits : 0);
+        send(clerkId, CREDITS_EVENT, data);
+    }
+
+    @Override
+    public void publishProcessingStatus(String clerkId, String status, String message) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("status", status);
+        data.put("message", message);
+        send(clerkId, PROCESSING_EVENT, data);
+    }
+
+    @Override
+    public void disconnectUser(String clerkId) {
+        Set<SseEmitter> emitters = emittersByUser.remove(clerkId);
+        if (emitters != null) {
+            connectionCount.addAndGet(-emitters.size());
+            emitters.forEach(SseEmitter::complete);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${events.sse.heartbeat-interval-ms:25000}")
+    public void sendHeartbeats() {
+        emittersByUser.forEach((clerkId, emitters) -> {
+            for (SseEmitter emitter : emitters) {
+                try {
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+                } catch (Exception e) {
+                    removeEmitter(clerkId, emitter);
+                }
+            }
+        });
+    }
+
+    private void send(String clerkId, String eventName, Object data) {
+        if (clerkId == null) {
+            return;
+        }
+
+        Set<SseEmitter> emitters = emittersByUser.get(clerkId);
+        if (emitters == null || emitters.isEmpty()) {
+            return;
+        }
+
+        for (SseEmitter emitter : emitters) {
+            try {
+                emitter.send(SseEmitter.event().name(eventName).data(data, MediaType.APPLICATION_JSON));
+            } catch (Exception e) {
+                log.debug("Dropping event stream for user: {} - {}", clerkId, e.getMessage());
+                removeEmitter(clerkId, emitter);
+            }
+        }
+    }
+
+    private void removeEmitter(String clerkId, SseEmitter emitter) {
+        boolean[] removed = {false};
+        emittersByUser.computeIfPresent(clerkId, (key, emitters) -> {
+            removed[0] = emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+
+        if (removed[0]) {
+            connectionCount.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package in.apoorvsahu.removebg.services.impl;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import in.apoorvsahu.removebg.Repositories.UserRepository;
+import in.apoorvsahu.removebg.cache.UserProfileCache;
+import in.apoorvsahu.removebg.dtos.UserDto;
+import in.apoorvsahu.removebg.dtos.UserImportResultDto;
+import in.apoorvsahu.removebg.entities.User;
+import in.apoorvsahu.removebg.exceptions.ValidationException;
+import in.apoorvsahu.removebg.mappers.ClerkUserMapper;
+import in.apoorvsahu.removebg.services.UserImportService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UserImportServiceImpl implements UserImportService {
+
+    private final ObjectMapper objectMapper;
+    private final ClerkUserMapper clerkUserMapper;
+    private final UserRepository userRepository;
+    private final UserProfileCache userProfileCache;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${users.import.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${users.import.progress-interval:10000}")
+    private int progressInterval;
+
+    private static class Progress {
+        long read;
+        long upserted;
+        long skipped;
+        long conflicted;
+        long failed;
+    }
+
+    // accepts a JSON array of Clerk users or one user object per line, only one batch is held in memory
+    @Override
+    public UserImportResultDto importUsers(InputStream export) throws IOException {
+        long startedAt = System.nanoTime();
+        Progress progress = new Progress();
+        List<UserDto> batch = new ArrayList<>(batchSize);
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(export)) {
+            JsonToken token = parser.nextToken();
+            boolean array = token == JsonToken.START_ARRAY;
+            if (array) {
+                token = parser.nextToken();
+            }
+
+            while (token != null && token != JsonToken.END_ARRAY) {
+                JsonNode record = objectMapper.readTree(parser);
+                progress.read++;
+                try {
+                    batch.add(clerkUserMapper.toUserDto(record));
+                } catch (ValidationException e) {
+                    progress.skipped++;
+                    log.debug("Skipping import record {}: {}", progress.read, e.getMessage());
+                }
+
+                if (batch.size() == batchSize) {
+                    writeBatch(batch, progress);
+                }
+                if (progress.read % progressInterval == 0) {
+                    logProgress(progress, startedAt);
+                }
+                token = parser.nextToken();
+            }
+        }
+        writeBatch(batch, progress);
+
+        long durationMs = (System.nanoTime() - startedAt) / 1_000_000;
+        UserImportResultDto result = UserImportResultDto.builder()
+                .recordsRead(progress.read)
+                .usersUpserted(progress.upserted)
+                .recordsSkipped(progress.skipped)
+                .recordsConflicted(progress.conflicted)
+                .recordsFailed(progress.failed)
+                .durationMs(durationMs)
+                .recordsPerSecond(recordsPerSecond(progress.read, durationMs))
+                .build();
+        log.info("User import finished: {}", result);
+        return result;
+    }
+
+    private void writeBatch(List<UserDto> batch, Progress progress) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        SqlParameterSource[] params = batch.stream().map(this::toParams).toArray(SqlParameterSource[]::new);
+        List<UserDto> written = batch;
+        Set<String> existing;
+        try {
+            // the check runs in the write transaction so it reads the primary, not a replica that may lag the batch
+            existing = transactionTemplate.execute(status -> {
+                userRepository.upsertProfiles(params);
+                return new HashSet<>(userRepository.findExistingClerkIds(batch.stream().map(UserDto::getClerkId).toList()));
+            });
+        } catch (DataAccessException e) {
+            log.warn("Batch of {} users failed, retrying row by row: {}", batch.size(), e.getMessage());
+            List<UserDto> rows = writeRows(batch, progress);
+            written = rows;
+            existing = rows.isEmpty() ? Set.of() : transactionTemplate.execute(status -> new HashSet<>(
+                    userRepository.findExistingClerkIds(rows.stream().map(UserDto::getClerkId).toList())));
+        }
+
+        // the upsert leaves a row owned by another clerk id untouched when the email matches, and driver
+        // update counts cannot tell that apart from an unchanged profile, so the result is checked by clerk id
+        for (UserDto user : written) {
+            if (existing.contains(user.getClerkId())) {
+                progress.upserted++;
+            } else {
+                progress.conflicted++;
+                log.warn("Skipped importing user {}: email already belongs to another account", user.getClerkId());
+            }
+        }
+
+        batch.forEach(user -> userProfileCache.invalidate(user.getClerkId()));
+        batch.clear();
+    }
+
+    // so one bad record only costs itself instead of the whole batch
+    private List<UserDto> writeRows(List<UserDto> batch, Progress progress) {
+        List<UserDto> written = new ArrayList<>(batch.size());
+        for (UserDto user : batch) {
+            try {
+                userRepository.upsertProfile(user.getClerkId(), user.getEmail(), user.getFirstName(),
+                        user.getLastName(), user.getPhotoUrl(), User.DEFAULT_CREDITS);
+                written.add(user);
+            } catch (DataAccessException e) {
+                progress.failed++;
+                log.error("Failed to import user {}: {}", user.getClerkId(), e.getMessage());
+            }
+        }
+        return written;
+    }
+
+    private SqlParameterSource toParams(UserDto user) {
+        return new MapSqlParameterSource()
+                .addValue("clerkId", user.getClerkId())
+                .addValue("email", user.getEmail())
+                .addValue("firstName", user.getFirstName())
+                .addValue("lastName", user.getLastName())
+                .addValue("photoUrl", user.getPhotoUrl())
+                .addValue("credits", User.DEFAULT_CREDITS);
+    }
+
+    private void logProgress(Progress progress, long startedAt) {
+        long elapsedMs = (System.nanoTime() - startedAt) / 1_000_000;
+        log.info("User import progress - read: {}, upserted: {}, skipped: {}, conflicted: {}, failed: {}, {} records/s",
+                progress.read, progress.upserted, progress.skipped, progress.conflicted, progress.failed,
+                String.format("%.1f", recordsPerSecond(progress.read, elapsedMs)));
+    }
+
+    private double recordsPerSecond(long records, long elapsedMs) {
+        return elapsedMs > 0 ? records * 1000.0 / elapsedMs : records;
+    }
+}
@@ -1,13 +1,18 @@
 package in.apoorvsahu.removebg.services.impl;
 
 import in.apoorvsahu.removebg.Repositories.UserRepository;
+import in.apoorvsahu.removebg.cache.UserProfileCache;
+import in.apoorvsahu.removebg.datasource.ReplicaRoutingDataSource;
 import in.apoorvsahu.removebg.dtos.UserDto;
 import in.apoorvsahu.removebg.entities.User;
+import in.apoorvsahu.removebg.exceptions.InsufficientCreditsException;
+import in.apoorvsahu.removebg.exceptions.UserConflictException;
 import in.apoorvsahu.removebg.exceptions.UserNotFoundException;
 import in.apoorvsahu.removebg.exceptions.UserServiceException;
 import in.apoorvsahu.removebg.services.UserService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -20,11 +25,14 @@ import java.util.Optional;
 public class UserServiceImpl implements UserService {
 
     private final UserRepository userRepository;
+    private final UserProfileCache userProfileCache;
+    private final ObjectProvider<ReplicaRoutingDataSource> replicaRouting;
 
     @Override
     @Transactional
     public UserDto saveUser(UserDto userDto) {
         try {
+            userProfileCache.invalidate(userDto.getClerkId());
             Optional<User> optionalUser = userRepository.findByClerkId(userDto.getClerkId());
 
             if (optionalUser.isPresent()) {
@@ -49,11 +57,37 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
+    @Transactional
+    public void upsertProfile(UserDto userDto) {
+        try {
+            userProfileCache.invalidate(userDto.getClerkId());
+            int affected = userRepository.upsertProfile(userDto.getClerkId(), userDto.getEmail(), userDto.getFirstName(),
+                    userDto.getLastName(), userDto.getPhotoUrl(), User.DEFAULT_CREDITS);
+
+            // 2 means the row was updated; 1 is either an insert or a row left as it was, and the latter is
+            // also what a duplicate email owned by another clerk id looks like
+            if (affected != 2 && !userRepository.existsByClerkId(userDto.getClerkId())) {
+                log.warn("Email of user with clerkId: {} already belongs to another user, profile not saved", userDto.getClerkId());
+                throw new UserConflictException("Email already belongs to another user");
+            }
+            log.info("Upserted profile for user with clerkId: {}", userDto.getClerkId());
+        } catch (UserConflictException e) {
+            throw e;
+        } catch (DataAccessException e) {
+            log.error("Database error while upserting user with clerkId: {}", userDto.getClerkId(), e);
+            throw new UserServiceException("Unable to save user data. Please try again later");
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public UserDto getUserByClerkId(String clerkId) {
         try {
-            User user = userRepository.findByClerkId(clerkId)
-                    .orElseThrow(() -> new UserNotFoundException("User with ID " + clerkId + " not found"));
-            return mapToDto(user);
+            return userProfileCache.get(clerkId, id -> userRepository.findByClerkId(id)
+                    .map(this::mapToDto)
+                    .orElseThrow(() -> new UserNotFoundException("User with ID " + id + " not found")));
+        } catch (UserNotFoundException e) {
+            throw e;
         } catch (DataAccessException e) {
             log.error("Database error while fetching user with clerkId: {}", clerkId, e);
             throw new UserServiceException("Unable to fetch user data. Please try again later");
@@ -67,6 +101,7 @@ public class UserServiceImpl implements UserService {
     @Transactional
     public void deleteUserByClerkId(String clerkId) {
         try {
+            userProfileCache.invalidate(clerkId);
             User user = userRepository.findByClerkId(clerkId)
                     .orElseThrow(() -> new UserNotFoundException("User with ID " + clerkId + " not found"));
             userRepository.delete(user);
@@ -80,6 +115,75 @@ public class UserServiceImpl implements UserService {
         }
     }
 
+    @Override
+    @Transactional
+    public int debitCredits(String clerkId, int amount) {
+        try {
+            if (amount <= 0) {
+                throw new UserServiceException("Credit amount must be positive");
+            }
+
+            userProfileCache.invalidate(clerkId);
+            markRecentWriter(clerkId);
+            if (userRepository.debitCredits(clerkId, amount) == 0) {
+                Integer balance = userRepository.findCreditsByClerkId(clerkId)
+                        .orElseThrow(() -> new UserNotFoundException("User with ID " + clerkId + " not found"));
+                throw new InsufficientCreditsException("Insufficient credits", balance);
+            }
+
+            // the row stays locked by the update until commit, so this read is the exact new balance
+            int balance = currentCredits(clerkId);
+            log.info("Debited {} credits from user with clerkId: {}, new balance: {}", amount, clerkId, balance);
+            return balance;
+        } catch (UserNotFoundException | InsufficientCreditsException | UserServiceException e) {
+            throw e;
+        } catch (DataAccessException e) {
+            log.error("Database error while debiting credits for clerkId: {}", clerkId, e);
+            throw new UserServiceException("Unable to update credits. Please try again later");
+        } catch (Exception e) {
+            log.error("Unexpected error while debiting credits for clerkId: {}", clerkId, e);
+            throw new UserServiceException("An unexpected error occurred while updating credits");
+        }
+    }
+
+    @Override
+    @Transactional
+    public int grantCredits(String clerkId, int amount) {
+        try {
+            if (amount <= 0) {
+                throw new UserServiceException("Credit amount must be positive");
+            }
+
+            userProfileCache.invalidate(clerkId);
+            markRecentWriter(clerkId);
+            if (userRepository.grantCredits(clerkId, amount) == 0) {
+                throw new UserNotFoundException("User with ID " + clerkId + " not found");
+            }
+
+            int balance = currentCredits(clerkId);
+            log.info("Granted {} credits to user with clerkId: {}, new balance: {}", amount, clerkId, balance);
+            return balance;
+        } catch (UserNotFoundException | UserServiceException e) {
+            throw e;
+        } catch (DataAccessException e) {
+            log.error("Database error while granting credits for clerkId: {}", clerkId, e);
+            throw new UserServiceException("Unable to update credits. Please try again later");
+        } catch (Exception e) {
+            log.error("Unexpected error while granting credits for clerkId: {}", clerkId, e);
+            throw new UserServiceException("An unexpected error occurred while updating credits");
+        }
+    }
+
+    // credits also change from webhooks and background jobs, so pin the owner rather than the caller to the primary
+    private void markRecentWriter(String clerkId) {
+        replicaRouting.ifAvailable(routing -> routing.markRecentWriter(clerkId));
+    }
+
+    private int currentCredits(String clerkId) {
+        return userRepository.findCreditsByClerkId(clerkId)
+                .orElseThrow(() -> new UserNotFoundException("User with ID " + clerkId + " not found"));
+    }
+
     private void updateExistingUser(User existingUser, UserDto userDto) {
         existingUser.setEmail(userDto.getEmail());
         existingUser.setFirstName(userDto.getFirstName());
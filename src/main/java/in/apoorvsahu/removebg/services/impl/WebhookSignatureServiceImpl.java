@@ -13,6 +13,7 @@ import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
 import java.util.Base64;
+import java.util.HexFormat;
 
 @Service
 @Slf4j
@@ -21,6 +22,9 @@ public class WebhookSignatureServiceImpl implements WebhookSignatureService {
     @Value("${clerk.webhook.secret}")
     private String webhookSecret;
 
+    @Value("${razorpay.webhook.secret:}")
+    private String razorpayWebhookSecret;
+
     private static final String HMAC_SHA256 = "HmacSHA256";
     private static final long TIMESTAMP_TOLERANCE = 300;
 
@@ -82,6 +86,39 @@ public class WebhookSignatureServiceImpl implements WebhookSignatureService {
         }
     }
 
+    @Override
+    public boolean verifyRazorpaySignature(String signature, String payload) {
+        try {
+            if (razorpayWebhookSecret == null || razorpayWebhookSecret.trim().isEmpty()) {
+                log.warn("Razorpay webhook secret not configured - signature verification disabled");
+                return false;
+            }
+
+            if (signature == null || payload == null) {
+                return false;
+            }
+
+            // Razorpay signs the raw body with the webhook secret and sends the hex digest
+            Mac mac = Mac.getInstance(HMAC_SHA256);
+            mac.init(new SecretKeySpec(razorpayWebhookSecret.getBytes(StandardCharsets.UTF_8), HMAC_SHA256));
+            String expectedSignature = HexFormat.of().formatHex(mac.doFinal(payload.getBytes(StandardCharsets.UTF_8)));
+
+            if (constantTimeEquals(expectedSignature, signature.trim().toLowerCase())) {
+                return true;
+            }
+
+            log.warn("Razorpay webhook signature verification failed");
+            return false;
+
+        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            log.error("Error verifying Razorpay webhook signature: ", e);
+            return false;
+        } catch (Exception e) {
+            log.error("Unexpected error during Razorpay webhook signature verification: ", e);
+            return false;
+        }
+    }
+
     private boolean isTimestampValid(String timestampStr) {
         try {
             long timestamp = Long.parseLong(timestampStr);
@@ -0,0 +1,20 @@
+-- idx_orders_clerk_created used to cover the whole order history projection, which exceeds InnoDB's
+-- 3072-byte key limit under utf8mb4, so ddl-auto could not create it. Replace it with the seek key alone.
+-- Flyway runs before Hibernate: on a fresh schema tbl_orders does not exist yet and ddl-auto creates the
+-- narrow index with the table, so every statement here is conditional.
+
+SET @has_orders = (SELECT COUNT(*) FROM information_schema.tables
+                   WHERE table_schema = DATABASE() AND table_name = 'tbl_orders');
+SET @has_index = (SELECT COUNT(*) FROM information_schema.statistics
+                  WHERE table_schema = DATABASE() AND table_name = 'tbl_orders'
+                    AND index_name = 'idx_orders_clerk_created');
+
+SET @ddl = CASE
+    WHEN @has_orders = 0 THEN 'DO 0'
+    WHEN @has_index > 0 THEN 'ALTER TABLE tbl_orders DROP INDEX idx_orders_clerk_created, ADD INDEX idx_orders_clerk_created (clerk_id, created_at, id), ALGORITHM=INPLACE, LOCK=NONE'
+    ELSE 'ALTER TABLE tbl_orders ADD INDEX idx_orders_clerk_created (clerk_id, created_at, id), ALGORITHM=INPLACE, LOCK=NONE'
+END;
+
+PREPARE narrow_orders_history_index FROM @ddl;
+EXECUTE narrow_orders_history_index;
+DEALLOCATE PREPARE narrow_orders_history_index;
@@ -0,0 +1,18 @@
+-- The paid-orders rollup keys on paid_at, which orders paid before the column existed never got. Date them by
+-- created_at, the closest time recorded. When this runs ahead of ddl-auto on a schema that predates paid_at,
+-- the column is added here so the backfill is not skipped; on a fresh schema there is nothing to backfill.
+
+SET @has_orders = (SELECT COUNT(*) FROM information_schema.tables
+                   WHERE table_schema = DATABASE() AND table_name = 'tbl_orders');
+SET @has_paid_at = (SELECT COUNT(*) FROM information_schema.columns
+                    WHERE table_schema = DATABASE() AND table_name = 'tbl_orders' AND column_name = 'paid_at');
+
+SET @ddl = IF(@has_orders > 0 AND @has_paid_at = 0, 'ALTER TABLE tbl_orders ADD COLUMN paid_at DATETIME(6) NULL', 'DO 0');
+PREPARE add_paid_at FROM @ddl;
+EXECUTE add_paid_at;
+DEALLOCATE PREPARE add_paid_at;
+
+SET @dml = IF(@has_orders > 0, 'UPDATE tbl_orders SET paid_at = created_at WHERE payment = TRUE AND paid_at IS NULL', 'DO 0');
+PREPARE backfill_paid_at FROM @dml;
+EXECUTE backfill_paid_at;
+DEALLOCATE PREPARE backfill_paid_at;
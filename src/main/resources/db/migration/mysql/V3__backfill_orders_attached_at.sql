@@ -0,0 +1,19 @@
+-- The orders-created rollup is windowed by attached_at, which orders attached before the column existed never
+-- got. Date them by created_at: the rollup watermark already covers those created before it, and the rest are
+-- counted once by the next run. When this runs ahead of ddl-auto the column is added here so the backfill is not
+-- skipped; on a fresh schema there is nothing to backfill.
+
+SET @has_orders = (SELECT COUNT(*) FROM information_schema.tables
+                   WHERE table_schema = DATABASE() AND table_name = 'tbl_orders');
+SET @has_attached_at = (SELECT COUNT(*) FROM information_schema.columns
+                        WHERE table_schema = DATABASE() AND table_name = 'tbl_orders' AND column_name = 'attached_at');
+
+SET @ddl = IF(@has_orders > 0 AND @has_attached_at = 0, 'ALTER TABLE tbl_orders ADD COLUMN attached_at DATETIME(6) NULL', 'DO 0');
+PREPARE add_attached_at FROM @ddl;
+EXECUTE add_attached_at;
+DEALLOCATE PREPARE add_attached_at;
+
+SET @dml = IF(@has_orders > 0, 'UPDATE tbl_orders SET attached_at = created_at WHERE order_id IS NOT NULL AND attached_at IS NULL', 'DO 0');
+PREPARE backfill_attached_at FROM @dml;
+EXECUTE backfill_attached_at;
+DEALLOCATE PREPARE backfill_attached_at;
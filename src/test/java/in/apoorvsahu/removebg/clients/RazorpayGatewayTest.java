@@ -0,0 +1,86 @@
+package in.apoorvsahu.removebg.clients;
+
+import com.razorpay.Order;
+import com.razorpay.RazorpayException;
+import com.sun.net.httpserver.HttpExchange;
+import in.apoorvsahu.removebg.resilience.Bulkhead;
+import in.apoorvsahu.removebg.support.StubHttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RazorpayGatewayTest {
+
+    private StubHttpServer server;
+    private Bulkhead bulkhead;
+    private SimpleMeterRegistry meterRegistry;
+    private RazorpayGateway gateway;
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+
+    @BeforeEach
+    void setUp() {
+        server = StubHttpServer.start("/v1/orders", this::handle);
+
+        meterRegistry = new SimpleMeterRegistry();
+        bulkhead = new Bulkhead("razorpay", 4, 8, Duration.ofSeconds(5), meterRegistry);
+        gateway = new RazorpayGateway("rzp_test_key", "rzp_test_secret",
+                server.url("/v1"), Duration.ofSeconds(1), Duration.ofSeconds(2),
+                4, Duration.ofMinutes(1), bulkhead, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        gateway.shutdown();
+        bulkhead.shutdown();
+        server.close();
+    }
+
+    @Test
+    void createsAndFetchesOrdersOverOnePooledConnection() throws Exception {
+        Order created = gateway.createOrder(new JSONObject().put("amount", 49900).put("currency", "INR"));
+        assertEquals("order_created", created.get("id"));
+        assertEquals(49900, (int) created.get("amount"));
+
+        Order fetched = gateway.fetchOrderAsync("order_paid").get(5, TimeUnit.SECONDS);
+        assertEquals("paid", fetched.get("status"));
+
+        assertEquals(1, clientPorts.size());
+        assertEquals(1, meterRegistry.get("razorpay.request").tag("operation", "create_order").tag("outcome", "success").timer().count());
+    }
+
+    @Test
+    void gatewayErrorsSurfaceAsRazorpayExceptions() {
+        RazorpayException e = assertThrows(RazorpayException.class, () -> gateway.fetchOrder("order_missing"));
+        assertTrue(e.getMessage().contains("The id provided does not exist"));
+        assertEquals(1, meterRegistry.get("razorpay.request").tag("outcome", "client_error").timer().count());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        clientPorts.add(exchange.getRemoteAddress().getPort());
+        String path = exchange.getRequestURI().getPath();
+
+        if (!exchange.getRequestHeaders().getFirst("Authorization").startsWith("Basic ")) {
+            StubHttpServer.respond(exchange, 401, "{}");
+        } else if ("POST".equals(exchange.getRequestMethod())) {
+            JSONObject request = new JSONObject(StubHttpServer.readBody(exchange));
+            StubHttpServer.respond(exchange, 200, new JSONObject().put("id", "order_created").put("amount", request.getInt("amount"))
+                    .put("status", "created").toString());
+        } else if (path.endsWith("/order_paid")) {
+            StubHttpServer.respond(exchange, 200, new JSONObject().put("id", "order_paid").put("status", "paid").toString());
+        } else {
+            StubHttpServer.respond(exchange, 400, "{\"error\":{\"code\":\"BAD_REQUEST_ERROR\",\"description\":\"The id provided does not exist\"}}");
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package in.apoorvsahu.removebg.datasource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReplicaRoutingDataSourceTest {
+
+    private static final String LAG_QUERY = "SELECT lag AS Seconds_Behind_Source FROM replica_status";
+
+    private DriverManagerDataSource primary;
+    private DriverManagerDataSource replica;
+    private ReplicaRoutingDataSource routing;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readWrite;
+    private TransactionTemplate readOnly;
+
+    @BeforeEach
+    void setUp() {
+        primary = new DriverManagerDataSource("jdbc:h2:mem:routing_primary;DB_CLOSE_DELAY=-1");
+        replica = new DriverManagerDataSource("jdbc:h2:mem:routing_replica;DB_CLOSE_DELAY=-1");
+        createMarker(primary, "primary");
+        createMarker(replica, "replica");
+        new JdbcTemplate(replica).execute("CREATE TABLE replica_status (lag BIGINT)");
+        new JdbcTemplate(replica).update("INSERT INTO replica_status VALUES (0)");
+
+        routing = new ReplicaRoutingDataSource(primary, replica, Duration.ofSeconds(5), Duration.ofSeconds(30),
+                LAG_QUERY, new SimpleMeterRegistry());
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        new JdbcTemplate(primary).execute("DROP ALL OBJECTS");
+        new JdbcTemplate(replica).execute("DROP ALL OBJECTS");
+    }
+
+    @Test
+    void readOnlyTransactionsUseReplicaAndOthersUsePrimary() {
+        assertEquals("replica", readOnly.execute(status -> currentPool()));
+        assertEquals("primary", readWrite.execute(status -> currentPool()));
+        assertEquals("primary", currentPool());
+    }
+
+    @Test
+    void lagBeyondLimitFallsBackToPrimaryUntilReplicaCatchesUp() {
+        new JdbcTemplate(replica).update("UPDATE replica_status SET lag = 30");
+        routing.refreshReplicaStatus();
+        assertFalse(routing.isReplicaAvailable());
+        assertEquals("primary", readOnly.execute(status -> currentPool()));
+
+        new JdbcTemplate(replica).update("UPDATE replica_status SET lag = 1");
+        routing.refreshReplicaStatus();
+        assertTrue(routing.isReplicaAvailable());
+        assertEquals("replica", readOnly.execute(status -> currentPool()));
+    }
+
+    @Test
+    void stoppedReplicationFallsBackToPrimary() {
+        new JdbcTemplate(replica).update("UPDATE replica_status SET lag = NULL");
+        routing.refreshReplicaStatus();
+
+        assertFalse(routing.isReplicaAvailable());
+        assertEquals("primary", readOnly.execute(status -> currentPool()));
+    }
+
+    @Test
+    void usersReadTheirOwnWritesFromPrimary() {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("user_writer", null, List.of()));
+        assertEquals("replica", readOnly.execute(status -> currentPool()));
+
+        readWrite.executeWithoutResult(status -> currentPool());
+        assertEquals("primary", readOnly.execute(status -> currentPool()));
+
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("user_reader", null, List.of()));
+        assertEquals("replica", readOnly.execute(status -> currentPool()));
+    }
+
+    @Test
+    void writesMadeOnBehalfOfAUserPinThemToPrimary() {
+        readWrite.executeWithoutResult(status -> {
+            currentPool();
+            routing.markRecentWriter("user_credited");
+        });
+
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("user_credited", null, List.of()));
+        assertEquals("primary", readOnly.execute(status -> currentPool()));
+
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("user_other", null, List.of()));
+        assertEquals("replica", readOnly.execute(status -> currentPool()));
+    }
+
+    private String currentPool() {
+        return jdbcTemplate.queryForObject("SELECT pool FROM marker", String.class);
+    }
+
+    private void createMarker(DataSource dataSource, String pool) {
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.execute("CREATE TABLE marker (pool VARCHAR(16))");
+        template.update("INSERT INTO marker VALUES (?)", pool);
+    }
+}
@@ -0,0 +1,121 @@
+package in.apoorvsahu.removebg.resilience;
+
+import in.apoorvsahu.removebg.exceptions.BulkheadException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BulkheadTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private Bulkhead bulkhead;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (bulkhead != null) {
+            bulkhead.shutdown();
+        }
+    }
+
+    @Test
+    void callsBeyondThreadsAndQueueAreRejected() throws Exception {
+        bulkhead = new Bulkhead("test", 1, 1, Duration.ofSeconds(5), meterRegistry);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> running = bulkhead.executeAsync(() -> await(release, "first"));
+        CompletableFuture<String> queued = bulkhead.executeAsync(() -> await(release, "second"));
+        waitFor(() -> gauge("bulkhead.active") == 1 && gauge("bulkhead.queued") == 1);
+        assertEquals(1.0, gauge("bulkhead.saturation"));
+
+        assertThrows(BulkheadException.class, () -> bulkhead.execute(() -> "rejected"));
+        ExecutionException asyncRejection = assertThrows(ExecutionException.class,
+                () -> bulkhead.executeAsync(() -> "rejected").get(1, TimeUnit.SECONDS));
+        assertInstanceOf(BulkheadException.class, asyncRejection.getCause());
+        assertEquals(2, counter("bulkhead.rejected"));
+
+        release.countDown();
+        assertEquals("first", running.get(1, TimeUnit.SECONDS));
+        assertEquals("second", queued.get(1, TimeUnit.SECONDS));
+        assertEquals(2, meterRegistry.get("bulkhead.queue.wait").tag("name", "test").timer().count());
+        assertEquals(0, counter("bulkhead.timeouts"));
+        waitFor(() -> gauge("bulkhead.active") == 0 && gauge("bulkhead.saturation") == 0);
+    }
+
+    @Test
+    void slowCallsTimeOutAndFreeTheirThread() throws Exception {
+        bulkhead = new Bulkhead("test", 1, 1, Duration.ofMillis(100), meterRegistry);
+        CountDownLatch never = new CountDownLatch(1);
+
+        assertThrows(BulkheadException.class, () -> bulkhead.execute(() -> await(never, "late")));
+        assertEquals(1, counter("bulkhead.timeouts"));
+
+        // the timed out call is cancelled, so the single thread is available again
+        waitFor(() -> gauge("bulkhead.active") == 0);
+        ExecutionException asyncTimeout = assertThrows(ExecutionException.class,
+                () -> bulkhead.executeAsync(() -> await(never, "late")).get(1, TimeUnit.SECONDS));
+        assertInstanceOf(BulkheadException.class, asyncTimeout.getCause());
+        // the caller is released before the timeout is counted
+        waitFor(() -> counter("bulkhead.timeouts") == 2);
+
+        waitFor(() -> gauge("bulkhead.active") == 0);
+        assertEquals("ok", bulkhead.execute(() -> "ok"));
+        assertEquals(0, counter("bulkhead.rejected"));
+    }
+
+    @Test
+    void callFailuresPassThroughUnwrapped() {
+        bulkhead = new Bulkhead("test", 1, 1, Duration.ofSeconds(5), meterRegistry);
+
+        IOException failure = assertThrows(IOException.class, () -> bulkhead.execute(() -> {
+            throw new IOException("boom");
+        }));
+        assertEquals("boom", failure.getMessage());
+
+        ExecutionException asyncFailure = assertThrows(ExecutionException.class, () -> bulkhead.executeAsync(() -> {
+            throw new IOException("boom");
+        }).get(1, TimeUnit.SECONDS));
+        assertInstanceOf(IOException.class, asyncFailure.getCause());
+        assertEquals(0, counter("bulkhead.rejected"));
+        assertEquals(0, counter("bulkhead.timeouts"));
+    }
+
+    private static String await(CountDownLatch latch, String value) throws InterruptedException {
+        latch.await();
+        return value;
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.get(name).tag("name", "test").gauge().value();
+    }
+
+    private double counter(String name) {
+        return meterRegistry.get(name).tag("name", "test").counter().count();
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Condition not met in time");
+            Thread.sleep(10);
+        }
+    }
+}
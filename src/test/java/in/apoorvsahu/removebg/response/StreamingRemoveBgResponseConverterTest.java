@@ -0,0 +1,60 @@
+package in.apoorvsahu.removebg.response;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreamingRemoveBgResponseConverterTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final StreamingRemoveBgResponseConverter converter = new StreamingRemoveBgResponseConverter();
+
+    @Test
+    void writesTheSameJsonAsRemoveBgResponseWithAnExactContentLength() throws Exception {
+        // padding cases, and sizes around the encoder chunk so chunk boundaries never split a Base64 group
+        int[] sizes = {0, 1, 2, 3, 4, 3 * 8192 - 1, 3 * 8192, 3 * 8192 + 1, 2 * 3 * 8192 + 2, 100_000};
+        Random random = new Random(42);
+
+        for (int size : sizes) {
+            byte[] image = new byte[size];
+            random.nextBytes(image);
+            String message = "Background removed \"successfully\" ✓";
+
+            MockHttpOutputMessage output = new MockHttpOutputMessage();
+            converter.write(new StreamingRemoveBgResponse(image, message, HttpStatus.OK, objectMapper),
+                    MediaType.APPLICATION_JSON, output);
+
+            String expected = objectMapper.writeValueAsString(RemoveBgResponse.builder()
+                    .success(true)
+                    .data(Base64.getEncoder().encodeToString(image))
+                    .message(message)
+                    .statusCode(HttpStatus.OK)
+                    .build());
+            byte[] written = output.getBodyAsBytes();
+
+            assertEquals(expected, output.getBodyAsString(), "body for " + size + " bytes");
+            assertEquals(written.length, output.getHeaders().getContentLength(), "Content-Length for " + size + " bytes");
+
+            RemoveBgResponse parsed = objectMapper.readValue(written, RemoveBgResponse.class);
+            assertTrue(parsed.isSuccess());
+            assertArrayEquals(image, Base64.getDecoder().decode((String) parsed.getData()));
+        }
+    }
+
+    @Test
+    void isWriteOnly() {
+        assertTrue(converter.canWrite(StreamingRemoveBgResponse.class, MediaType.APPLICATION_JSON));
+        assertFalse(converter.canRead(StreamingRemoveBgResponse.class, MediaType.APPLICATION_JSON));
+        assertFalse(converter.canWrite(RemoveBgResponse.class, MediaType.APPLICATION_JSON));
+    }
+}
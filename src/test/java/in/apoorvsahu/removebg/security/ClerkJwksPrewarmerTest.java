@@ -0,0 +1,129 @@
+package in.apoorvsahu.removebg.security;
+
+import in.apoorvsahu.removebg.resilience.Bulkhead;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClerkJwksPrewarmerTest {
+
+    private static final String KID = "ins_bootstrap";
+
+    private SimpleMeterRegistry meterRegistry;
+    private Bulkhead bulkhead;
+    private ClerkJwksProvider provider;
+    private ClerkJwksPrewarmer prewarmer;
+    private RSAPublicKey publicKey;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        publicKey = (RSAPublicKey) generator.generateKeyPair().getPublic();
+
+        meterRegistry = new SimpleMeterRegistry();
+        bulkhead = new Bulkhead("clerk-jwks", 1, 4, Duration.ofSeconds(2), meterRegistry);
+        provider = new ClerkJwksProvider(bulkhead, Duration.ofMinutes(5), meterRegistry);
+        // nothing listens on port 1, so every fetch fails without leaving the machine
+        ReflectionTestUtils.setField(provider, "jwksUrl", "http://127.0.0.1:1/.well-known/jwks.json");
+        ReflectionTestUtils.setField(provider, "connectTimeoutMs", 500);
+        ReflectionTestUtils.setField(provider, "readTimeoutMs", 500);
+        ReflectionTestUtils.setField(provider, "ttl", Duration.ofHours(1));
+        ReflectionTestUtils.setField(provider, "refreshAhead", Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(provider, "maxStale", Duration.ofHours(6));
+        ReflectionTestUtils.setField(provider, "minRefreshInterval", Duration.ofSeconds(10));
+
+        prewarmer = new ClerkJwksPrewarmer(provider, new DefaultResourceLoader());
+        ReflectionTestUtils.setField(prewarmer, "prewarmEnabled", true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        bulkhead.shutdown();
+    }
+
+    @Test
+    void inlineKeysServeLookupsWhenTheEndpointIsUnreachable() throws Exception {
+        ReflectionTestUtils.setField(prewarmer, "jwksJson", jwks());
+
+        prewarmer.run(null);
+
+        assertEquals(publicKey, provider.getPublicKey(KID));
+        assertTrue(provider.isCurrentKey(KID, publicKey));
+        assertEquals(1, meterRegistry.get("clerk.jwks.refresh").tag("outcome", "failure").timer().count());
+    }
+
+    @Test
+    void keysCanBeLoadedFromAFile() throws Exception {
+        Path file = Files.writeString(tempDir.resolve("jwks.json"), jwks());
+        ReflectionTestUtils.setField(prewarmer, "jwksFile", file.toUri().toString());
+        ReflectionTestUtils.setField(prewarmer, "prewarmEnabled", false);
+
+        prewarmer.run(null);
+        assertEquals(0, meterRegistry.get("clerk.jwks.refresh").tag("outcome", "failure").timer().count());
+
+        // local keys count as expired: the lookup is answered from them while the live endpoint is tried
+        assertEquals(publicKey, provider.getPublicKey(KID));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (meterRegistry.get("clerk.jwks.refresh").tag("outcome", "failure").timer().count() < 1
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, meterRegistry.get("clerk.jwks.refresh").tag("outcome", "failure").timer().count());
+    }
+
+    @Test
+    void localKeysAreRefreshedByTheNextBackgroundCheck() throws Exception {
+        ReflectionTestUtils.setField(prewarmer, "jwksJson", jwks());
+        ReflectionTestUtils.setField(prewarmer, "prewarmEnabled", false);
+
+        prewarmer.run(null);
+        provider.refreshAheadOfExpiry();
+
+        assertEquals(1, meterRegistry.get("clerk.jwks.refresh").tag("outcome", "failure").timer().count());
+        assertTrue(provider.isCurrentKey(KID, publicKey));
+    }
+
+    @Test
+    void unreadableLocalKeysDoNotFailStartup() throws Exception {
+        ReflectionTestUtils.setField(prewarmer, "jwksFile", tempDir.resolve("missing.json").toUri().toString());
+        ReflectionTestUtils.setField(prewarmer, "prewarmEnabled", false);
+
+        prewarmer.run(null);
+
+        assertFalse(provider.isCurrentKey(KID, publicKey));
+    }
+
+    private String jwks() {
+        return "{\"keys\":[{\"kid\":\"" + KID + "\",\"kty\":\"RSA\",\"alg\":\"RS256\",\"use\":\"sig\","
+                + "\"n\":\"" + base64Url(publicKey.getModulus()) + "\",\"e\":\"" + base64Url(publicKey.getPublicExponent()) + "\"}]}";
+    }
+
+    private String base64Url(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        if (bytes.length > 1 && bytes[0] == 0) {
+            bytes = Arrays.copyOfRange(bytes, 1, bytes.length);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
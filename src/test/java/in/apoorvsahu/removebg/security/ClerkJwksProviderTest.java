@@ -0,0 +1,204 @@
+package in.apoorvsahu.removebg.security;
+
+import com.sun.net.httpserver.HttpExchange;
+import in.apoorvsahu.removebg.resilience.Bulkhead;
+import in.apoorvsahu.removebg.support.StubHttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClerkJwksProviderTest {
+
+    private static final String KID = "ins_current";
+
+    private StubHttpServer server;
+    private Bulkhead bulkhead;
+    private SimpleMeterRegistry meterRegistry;
+    private ClerkJwksProvider provider;
+    private RSAPublicKey publicKey;
+
+    private final AtomicInteger fetches = new AtomicInteger();
+    private volatile boolean failing = false;
+    private volatile CountDownLatch held;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        publicKey = (RSAPublicKey) generator.generateKeyPair().getPublic();
+
+        server = StubHttpServer.start("/.well-known/jwks.json", this::handle, 4);
+
+        meterRegistry = new SimpleMeterRegistry();
+        bulkhead = new Bulkhead("clerk-jwks", 2, 16, Duration.ofSeconds(5), meterRegistry);
+        provider = new ClerkJwksProvider(bulkhead, Duration.ofMinutes(5), meterRegistry);
+        ReflectionTestUtils.setField(provider, "jwksUrl", server.url("/.well-known/jwks.json"));
+        ReflectionTestUtils.setField(provider, "connectTimeoutMs", 1000);
+        ReflectionTestUtils.setField(provider, "readTimeoutMs", 2000);
+        ReflectionTestUtils.setField(provider, "ttl", Duration.ofHours(1));
+        ReflectionTestUtils.setField(provider, "refreshAhead", Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(provider, "maxStale", Duration.ofHours(6));
+        ReflectionTestUtils.setField(provider, "minRefreshInterval", Duration.ZERO);
+    }
+
+    @AfterEach
+    void tearDown() {
+        bulkhead.shutdown();
+        server.close();
+    }
+
+    @Test
+    void concurrentColdLookupsShareOneFetch() throws Exception {
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<PublicKey>> lookups = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                lookups.add(executor.submit(() -> {
+                    start.await();
+                    return provider.getPublicKey(KID);
+                }));
+            }
+            start.countDown();
+
+            for (Future<PublicKey> lookup : lookups) {
+                assertEquals(publicKey, lookup.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, fetches.get());
+        assertEquals(1, meterRegistry.get("clerk.jwks.refresh").tag("outcome", "success").timer().count());
+    }
+
+    @Test
+    void unknownKidsAreRememberedInsteadOfRefetched() throws Exception {
+        assertNotNull(provider.getPublicKey(KID));
+
+        assertNull(provider.getPublicKey("ins_unknown"));
+        assertNull(provider.getPublicKey("ins_unknown"));
+        assertNull(provider.getPublicKey("ins_unknown"));
+
+        assertEquals(2, fetches.get());
+        assertEquals(3, meterRegistry.get("clerk.jwks.lookups").tag("result", "unknown_kid").counter().count());
+    }
+
+    @Test
+    void staleKeysKeepServingWhileTheEndpointFails() throws Exception {
+        assertEquals(publicKey, provider.getPublicKey(KID));
+
+        failing = true;
+        ReflectionTestUtils.setField(provider, "ttl", Duration.ZERO);
+
+        assertEquals(publicKey, provider.getPublicKey(KID));
+        awaitRefreshes("failure", 1);
+        assertTrue(provider.isCurrentKey(KID, publicKey));
+        assertEquals(2, fetches.get());
+        assertEquals(1, meterRegistry.get("clerk.jwks.lookups").tag("result", "stale").counter().count());
+
+        ReflectionTestUtils.setField(provider, "maxStale", Duration.ZERO);
+        assertThrows(Exception.class, () -> provider.getPublicKey(KID));
+    }
+
+    @Test
+    void staleKeyIsServedWithoutWaitingForTheRefresh() throws Exception {
+        assertEquals(publicKey, provider.getPublicKey(KID));
+        ReflectionTestUtils.setField(provider, "ttl", Duration.ofMillis(100));
+        Thread.sleep(150);
+
+        // the refresh is held open, so a lookup waiting on it would never return in time
+        held = new CountDownLatch(1);
+        try {
+            assertEquals(publicKey, provider.getPublicKey(KID));
+            assertEquals(publicKey, provider.getPublicKey(KID));
+        } finally {
+            held.countDown();
+        }
+
+        awaitRefreshes("success", 2);
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    void backgroundRefreshRunsOnlyWhenKeysNearExpiry() throws Exception {
+        provider.refreshAheadOfExpiry();
+        assertEquals(0, fetches.get());
+
+        provider.getPublicKey(KID);
+        provider.refreshAheadOfExpiry();
+        assertEquals(1, fetches.get());
+
+        ReflectionTestUtils.setField(provider, "refreshAhead", Duration.ofHours(1));
+        provider.refreshAheadOfExpiry();
+        assertEquals(2, fetches.get());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        fetches.incrementAndGet();
+        // keeps the first fetch open long enough for every cold caller to pile up behind it
+        StubHttpServer.delay(200);
+
+        CountDownLatch latch = held;
+        if (latch != null) {
+            try {
+                latch.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (failing) {
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+            return;
+        }
+
+        String body = "{\"keys\":[{\"kid\":\"" + KID + "\",\"kty\":\"RSA\",\"alg\":\"RS256\",\"use\":\"sig\","
+                + "\"n\":\"" + base64Url(publicKey.getModulus()) + "\",\"e\":\"" + base64Url(publicKey.getPublicExponent()) + "\"}]}";
+        StubHttpServer.respond(exchange, 200, body);
+    }
+
+    private void awaitRefreshes(String outcome, long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (meterRegistry.get("clerk.jwks.refresh").tag("outcome", outcome).timer().count() < count
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, meterRegistry.get("clerk.jwks.refresh").tag("outcome", outcome).timer().count());
+    }
+
+    private String base64Url(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        if (bytes.length > 1 && bytes[0] == 0) {
+            bytes = Arrays.copyOfRange(bytes, 1, bytes.length);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,138 @@
+package in.apoorvsahu.removebg.security;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.MalformedJwtException;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ClerkJwtAuthFilterTest {
+
+    private static final String ISSUER = "https://clerk.example.com";
+    private static final FilterChain NO_OP_CHAIN = (request, response) -> {};
+
+    private final AtomicInteger keyLookups = new AtomicInteger();
+    private final AtomicReference<PublicKey> currentKey = new AtomicReference<>();
+    private KeyPair signingKeys;
+    private ClerkJwtAuthFilter filter;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        signingKeys = generateKeyPair();
+        currentKey.set(signingKeys.getPublic());
+
+        ClerkJwksProvider jwksProvider = new ClerkJwksProvider(null, Duration.ofMinutes(5), new SimpleMeterRegistry()) {
+            @Override
+            public PublicKey getPublicKey(String kid) {
+                keyLookups.incrementAndGet();
+                return currentKey.get();
+            }
+
+            @Override
+            public boolean isCurrentKey(String kid, PublicKey key) {
+                return key.equals(currentKey.get());
+            }
+        };
+
+        filter = new ClerkJwtAuthFilter(jwksProvider,
+                new VerifiedTokenCache(true, 100, Duration.ofSeconds(30), new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(filter, "clerkIssuer", ISSUER);
+    }
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void repeatedTokenIsVerifiedOnce() throws Exception {
+        String token = token(signingKeys, Duration.ofHours(1));
+
+        assertEquals("user_cached", authenticate(token));
+        assertEquals("user_cached", authenticate(token));
+        assertEquals("user_cached", authenticate(token));
+        assertEquals(1, keyLookups.get());
+    }
+
+    @Test
+    void tokensCloseToExpiryAreNotCached() throws Exception {
+        String token = token(signingKeys, Duration.ofSeconds(10));
+
+        assertEquals("user_cached", authenticate(token));
+        assertEquals("user_cached", authenticate(token));
+        assertEquals(2, keyLookups.get());
+    }
+
+    @Test
+    void cachedVerificationIsDroppedWhenTheKeyRotates() throws Exception {
+        String token = token(signingKeys, Duration.ofHours(1));
+        assertEquals("user_cached", authenticate(token));
+
+        currentKey.set(generateKeyPair().getPublic());
+
+        assertNull(authenticate(token));
+        assertEquals(2, keyLookups.get());
+    }
+
+    private String authenticate(String token) throws Exception {
+        SecurityContextHolder.clearContext();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/users/credits");
+        request.addHeader("Authorization", "Bearer " + token);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, NO_OP_CHAIN);
+        return response.getStatus() == 200 ? SecurityContextHolder.getContext().getAuthentication().getName() : null;
+    }
+
+    private String token(KeyPair keys, Duration validity) {
+        return Jwts.builder()
+                .setHeaderParam("kid", "ins_test")
+                .setSubject("user_cached")
+                .setIssuer(ISSUER)
+                .setExpiration(new Date(System.currentTimeMillis() + validity.toMillis()))
+                .signWith(keys.getPrivate(), SignatureAlgorithm.RS256)
+                .compact();
+    }
+
+    private KeyPair generateKeyPair() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        return generator.generateKeyPair();
+    }
+
+    @Test
+    void kidIsReadFromTheTokenHeader() throws Exception {
+        assertEquals("ins_test", ClerkJwtAuthFilter.readKid(token(signingKeys, Duration.ofHours(1))));
+        assertThrows(MalformedJwtException.class, () -> ClerkJwtAuthFilter.readKid("eyJhbGciOiJSUzI1NiJ9.e30.sig"));
+    }
+
+    @Test
+    void webhookPathsBypassAuthentication() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("POST", "/api/webhooks/razorpay"), response, NO_OP_CHAIN);
+        assertEquals(200, response.getStatus());
+
+        response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/webhooksfoo"), response, NO_OP_CHAIN);
+        assertEquals(403, response.getStatus());
+    }
+}
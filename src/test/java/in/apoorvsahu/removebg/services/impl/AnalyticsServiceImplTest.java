@@ -0,0 +1,119 @@
+package in.apoorvsahu.removebg.services.impl;
+
+import in.apoorvsahu.removebg.Repositories.OrderRepository;
+import in.apoorvsahu.removebg.dtos.AnalyticsReportDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+@SpringBootTest
+class AnalyticsServiceImplTest {
+
+    private static final LocalDate DAY = LocalDate.of(2024, 6, 1);
+
+    @Autowired
+    private AnalyticsServiceImpl analyticsService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM tbl_orders");
+        jdbcTemplate.update("DELETE FROM tbl_usage_events");
+        jdbcTemplate.update("DELETE FROM tbl_daily_order_rollups");
+        jdbcTemplate.update("DELETE FROM tbl_daily_usage_rollups");
+        jdbcTemplate.update("DELETE FROM tbl_job_watermarks");
+        ReflectionTestUtils.setField(analyticsService, "settleLag", Duration.ofMinutes(5));
+    }
+
+    @Test
+    void rollupsOnlyFoldRowsAddedSinceTheWatermark() {
+        insertOrder("order_1", "Basic", 499.0, 100, true);
+        insertOrder("order_2", "Basic", 499.0, 100, false);
+        insertOrder("order_3", "Premium", 899.0, 250, true);
+        insertOrder(null, "Basic", 499.0, 100, false);
+        insertUsage("SUCCESS", 1);
+        insertUsage("FAILED", 0);
+
+        analyticsService.refreshRollups();
+        analyticsService.refreshRollups();
+
+        AnalyticsReportDto report = analyticsService.getReport(DAY, DAY);
+        assertEquals(2, report.getOrdersPaid());
+        assertEquals(1398.0, report.getTotalRevenue());
+        assertEquals(350, report.getCreditsGranted());
+        assertEquals(1, report.getImagesProcessed());
+        assertEquals(2, report.getRevenue().size());
+        assertEquals(2, report.getRevenue().get(0).getOrdersCreated());
+
+        // rows that land behind the watermark are not picked up again, new ones are
+        jdbcTemplate.update("UPDATE tbl_job_watermarks SET watermark = ?", Timestamp.valueOf("2024-06-01 12:00:00"));
+        insertOrder("order_4", "Basic", 499.0, 100, true, Timestamp.valueOf("2024-06-01 13:00:00"));
+        insertUsage("SUCCESS", 1, Timestamp.valueOf("2024-06-01 13:00:00"));
+
+        analyticsService.refreshRollups();
+
+        report = analyticsService.getReport(DAY, DAY);
+        assertEquals(3, report.getOrdersPaid());
+        assertEquals(3, report.getRevenue().get(0).getOrdersCreated());
+        assertEquals(2, report.getImagesProcessed());
+        assertEquals(2, report.getCreditsConsumed());
+    }
+
+    @Test
+    void ordersAttachedAfterTheWatermarkCountOnTheirCreationDay() throws InterruptedException {
+        ReflectionTestUtils.setField(analyticsService, "settleLag", Duration.ZERO);
+        jdbcTemplate.update("INSERT INTO tbl_orders (receipt, clerk_id, plan, amount, credits, payment, created_at) " +
+                "VALUES ('rcpt_late', 'user_analytics', 'Basic', 499.0, 100, false, ?)", Timestamp.valueOf("2024-06-01 10:00:00"));
+        insertOrder("order_1", "Basic", 499.0, 100, false);
+
+        analyticsService.refreshRollups();
+        assertEquals(1, analyticsService.getReport(DAY, DAY).getRevenue().get(0).getOrdersCreated());
+
+        // recovery attaches the gateway order long after the window holding its created_at was folded
+        Thread.sleep(10);
+        transactionTemplate.executeWithoutResult(status -> orderRepository.attachGatewayOrder("rcpt_late", "order_late"));
+        assertNotNull(orderRepository.findByOrderId("order_late").orElseThrow().getAttachedAt());
+        Thread.sleep(10);
+        analyticsService.refreshRollups();
+
+        assertEquals(2, analyticsService.getReport(DAY, DAY).getRevenue().get(0).getOrdersCreated());
+    }
+
+    private void insertOrder(String orderId, String plan, double amount, int credits, boolean paid) {
+        insertOrder(orderId, plan, amount, credits, paid, Timestamp.valueOf("2024-06-01 10:00:00"));
+    }
+
+    private void insertOrder(String orderId, String plan, double amount, int credits, boolean paid, Timestamp createdAt) {
+        jdbcTemplate.update("INSERT INTO tbl_orders (order_id, clerk_id, plan, amount, credits, payment, created_at, attached_at, paid_at) " +
+                        "VALUES (?, 'user_analytics', ?, ?, ?, ?, ?, ?, ?)",
+                orderId, plan, amount, credits, paid, createdAt, orderId != null ? createdAt : null, paid ? createdAt : null);
+    }
+
+    private void insertUsage(String outcome, int credits) {
+        insertUsage(outcome, credits, Timestamp.valueOf("2024-06-01 10:00:00"));
+    }
+
+    private void insertUsage(String outcome, int credits, Timestamp createdAt) {
+        jdbcTemplate.update("INSERT INTO tbl_usage_events (clerk_id, input_bytes, engine, outcome, credits_charged, created_at) " +
+                "VALUES ('user_analytics', 1024, 'clipdrop', ?, ?, ?)", outcome, credits, createdAt);
+    }
+}
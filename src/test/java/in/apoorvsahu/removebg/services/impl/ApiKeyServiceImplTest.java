@@ -0,0 +1,168 @@
+package in.apoorvsahu.removebg.services.impl;
+
+import in.apoorvsahu.removebg.Repositories.ApiKeyRepository;
+import in.apoorvsahu.removebg.cache.ApiKeyCache;
+import in.apoorvsahu.removebg.dtos.ApiKeyDto;
+import in.apoorvsahu.removebg.entities.ApiKey;
+import in.apoorvsahu.removebg.exceptions.ApiKeyNotFoundException;
+import in.apoorvsahu.removebg.exceptions.ValidationException;
+import in.apoorvsahu.removebg.services.ApiKeyService.AccessResult;
+import in.apoorvsahu.removebg.services.ApiKeyService.ApiKeyAccess;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {"cache.api-keys.max-size=5", "cache.api-keys.inactive-max-size=5"})
+class ApiKeyServiceImplTest {
+
+    private static final String CLIENT = "203.0.113.7";
+
+    @Autowired
+    private ApiKeyServiceImpl apiKeyService;
+
+    @Autowired
+    private ApiKeyRepository apiKeyRepository;
+
+    @Autowired
+    private ApiKeyCache apiKeyCache;
+
+    @AfterEach
+    void cleanUp() {
+        apiKeyRepository.deleteAll();
+        apiKeyCache.invalidateAll();
+        ReflectionTestUtils.setField(apiKeyService, "maxFailuresPerMinute", 20);
+    }
+
+    @Test
+    void createdKeyAuthenticatesAsItsOwner() {
+        ApiKeyDto created = apiKeyService.createKey("user_batch", request("nightly export", null));
+        assertTrue(created.getKey().startsWith(created.getKeyId() + "."));
+        assertEquals(60, created.getRateLimitPerMinute());
+
+        ApiKeyAccess access = apiKeyService.authenticate(created.getKey(), CLIENT);
+        assertEquals(AccessResult.GRANTED, access.result());
+        assertEquals("user_batch", access.clerkId());
+        assertEquals(created.getKeyId(), access.keyId());
+
+        ApiKey stored = apiKeyRepository.findByKeyId(created.getKeyId()).orElseThrow();
+        assertEquals(64, stored.getSecretHash().length());
+        assertFalse(created.getKey().contains(stored.getSecretHash()));
+
+        List<ApiKeyDto> listed = apiKeyService.getKeys("user_batch");
+        assertEquals(1, listed.size());
+        assertNull(listed.get(0).getKey());
+    }
+
+    @Test
+    void wrongSecretsAndMalformedKeysAreRejected() {
+        ApiKeyDto created = apiKeyService.createKey("user_batch", request("nightly export", null));
+
+        assertEquals(AccessResult.INVALID, apiKeyService.authenticate(created.getKeyId() + ".not-the-secret", CLIENT).result());
+        assertEquals(AccessResult.INVALID, apiKeyService.authenticate("rbg_0000000000000000.whatever", CLIENT).result());
+        assertEquals(AccessResult.INVALID, apiKeyService.authenticate("not-a-key", CLIENT).result());
+        assertEquals(AccessResult.GRANTED, apiKeyService.authenticate(created.getKey(), CLIENT).result());
+    }
+
+    @Test
+    void revokedKeysStopWorkingImmediately() {
+        ApiKeyDto created = apiKeyService.createKey("user_batch", request("nightly export", null));
+        assertEquals(AccessResult.GRANTED, apiKeyService.authenticate(created.getKey(), CLIENT).result());
+
+        assertThrows(ApiKeyNotFoundException.class, () -> apiKeyService.revokeKey("user_other", created.getKeyId()));
+        apiKeyService.revokeKey("user_batch", created.getKeyId());
+
+        assertEquals(AccessResult.INVALID, apiKeyService.authenticate(created.getKey(), CLIENT).result());
+        assertThrows(ApiKeyNotFoundException.class, () -> apiKeyService.revokeKey("user_batch", created.getKeyId()));
+    }
+
+    @Test
+    void rateLimitsApplyPerKey() throws InterruptedException {
+        ApiKeyDto limited = apiKeyService.createKey("user_batch", request("limited", 2));
+        ApiKeyDto other = apiKeyService.createKey("user_batch", request("other", 2));
+
+        // windows are calendar minutes, so stay clear of a boundary
+        if (System.currentTimeMillis() % 60_000 > 55_000) {
+            Thread.sleep(60_000 - System.currentTimeMillis() % 60_000);
+        }
+
+        assertEquals(AccessResult.GRANTED, apiKeyService.authenticate(limited.getKey(), CLIENT).result());
+        assertEquals(AccessResult.GRANTED, apiKeyService.authenticate(limited.getKey(), CLIENT).result());
+        assertEquals(AccessResult.RATE_LIMITED, apiKeyService.authenticate(limited.getKey(), CLIENT).result());
+        assertEquals(AccessResult.GRANTED, apiKeyService.authenticate(other.getKey(), CLIENT).result());
+    }
+
+    @Test
+    void usageIsAddedToTheKeyWhenFlushed() {
+        ApiKeyDto created = apiKeyService.createKey("user_batch", request("nightly export", null));
+        apiKeyService.authenticate(created.getKey(), CLIENT);
+        apiKeyService.authenticate(created.getKey(), CLIENT);
+        apiKeyService.authenticate(created.getKeyId() + ".not-the-secret", CLIENT);
+
+        apiKeyService.flushUsage();
+        apiKeyService.authenticate(created.getKey(), CLIENT);
+        apiKeyService.flushUsage();
+
+        ApiKey stored = apiKeyRepository.findByKeyId(created.getKeyId()).orElseThrow();
+        assertEquals(3L, stored.getRequestCount());
+        assertNotNull(stored.getLastUsedAt());
+    }
+
+    @Test
+    void clientsSendingTooManyInvalidKeysAreBlockedBeforeAnyLookup() throws InterruptedException {
+        ApiKeyDto created = apiKeyService.createKey("user_batch", request("nightly export", null));
+        ReflectionTestUtils.setField(apiKeyService, "maxFailuresPerMinute", 3);
+        // windows are calendar minutes, so stay clear of a boundary
+        if (System.currentTimeMillis() % 60_000 > 55_000) {
+            Thread.sleep(60_000 - System.currentTimeMillis() % 60_000);
+        }
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(AccessResult.INVALID, apiKeyService.authenticate("rbg_000000000000000" + i + ".guess", "198.51.100.1").result());
+        }
+        assertEquals(AccessResult.BLOCKED, apiKeyService.authenticate("rbg_0000000000000009.guess", "198.51.100.1").result());
+        assertEquals(AccessResult.BLOCKED, apiKeyService.authenticate(created.getKey(), "198.51.100.1").result());
+        assertNull(apiKeyCache.get("rbg_0000000000000009"));
+
+        // other clients and their keys are unaffected
+        assertEquals(AccessResult.GRANTED, apiKeyService.authenticate(created.getKey(), CLIENT).result());
+    }
+
+    @Test
+    void unknownIdsDoNotShareTheCacheWithRealKeys() {
+        ApiKeyDto created = apiKeyService.createKey("user_batch", request("nightly export", null));
+        assertEquals(AccessResult.GRANTED, apiKeyService.authenticate(created.getKey(), CLIENT).result());
+
+        // far more misses than the inactive cache holds in tests
+        for (int i = 0; i < 50; i++) {
+            apiKeyCache.put(ApiKeyCache.CachedKey.inactive(String.format("rbg_%016x", i)));
+        }
+        assertTrue(apiKeyCache.get(created.getKeyId()).isActive());
+
+        apiKeyService.revokeKey("user_batch", created.getKeyId());
+        assertFalse(apiKeyCache.get(created.getKeyId()).isActive());
+    }
+
+    @Test
+    void invalidRequestsAreRejected() {
+        assertThrows(ValidationException.class, () -> apiKeyService.createKey("user_batch", request(" ", null)));
+        assertThrows(ValidationException.class, () -> apiKeyService.createKey("user_batch", request("too fast", 100_000)));
+    }
+
+    private ApiKeyDto request(String name, Integer rateLimitPerMinute) {
+        return ApiKeyDto.builder()
+                .name(name)
+                .rateLimitPerMinute(rateLimitPerMinute)
+                .build();
+    }
+}
@@ -0,0 +1,79 @@
+package in.apoorvsahu.removebg.services.impl;
+
+import in.apoorvsahu.removebg.services.ClipdropQuotaService.Priority;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClipdropQuotaServiceImplTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ClipdropQuotaServiceImpl quotaService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        quotaService = new ClipdropQuotaServiceImpl(meterRegistry);
+        ReflectionTestUtils.setField(quotaService, "burnRateWindow", Duration.ofMinutes(15));
+        ReflectionTestUtils.setField(quotaService, "lowPriorityReserve", 500);
+        ReflectionTestUtils.setField(quotaService, "lowPriorityMinRunway", Duration.ofHours(6));
+    }
+
+    @Test
+    void admitsEverythingUntilTheQuotaIsKnown() {
+        assertTrue(quotaService.tryAdmit(Priority.LOW));
+        assertTrue(quotaService.tryAdmit(Priority.HIGH));
+        assertEquals(0.0, quotaService.getBurnRatePerMinute());
+    }
+
+    @Test
+    void lowPriorityIsThrottledInsideTheReserve() {
+        quotaService.recordUsage(501, null);
+        assertTrue(quotaService.tryAdmit(Priority.LOW));
+
+        quotaService.recordUsage(500, null);
+        assertFalse(quotaService.tryAdmit(Priority.LOW));
+        assertTrue(quotaService.tryAdmit(Priority.HIGH));
+        assertEquals(1, throttled());
+    }
+
+    @Test
+    void lowPriorityIsThrottledWhenTheRunwayIsTooShort() {
+        // 1 credit a minute leaves 10000 minutes, well past the 6h minimum
+        quotaService.recordUsage(10_000, 1);
+        assertTrue(quotaService.tryAdmit(Priority.LOW));
+
+        // the burn rate is averaged over at least a minute, so this is 3000 credits a minute and ~3 minutes left
+        for (int i = 0; i < 29; i++) {
+            quotaService.recordUsage(10_000, 100);
+        }
+        assertTrue(quotaService.getBurnRatePerMinute() > 2_900);
+        assertFalse(quotaService.tryAdmit(Priority.LOW));
+        assertTrue(quotaService.tryAdmit(Priority.HIGH));
+        assertEquals(1, throttled());
+    }
+
+    @Test
+    void burstsOutsideTheWindowNoLongerCount() throws InterruptedException {
+        ReflectionTestUtils.setField(quotaService, "burnRateWindow", Duration.ofMillis(50));
+        for (int i = 0; i < 30; i++) {
+            quotaService.recordUsage(10_000, 100);
+        }
+        assertFalse(quotaService.tryAdmit(Priority.LOW));
+
+        Thread.sleep(100);
+        assertEquals(0.0, quotaService.getBurnRatePerMinute());
+        assertTrue(quotaService.tryAdmit(Priority.LOW));
+    }
+
+    private double throttled() {
+        return meterRegistry.get("clipdrop.quota.throttled").tag("priority", "low").counter().count();
+    }
+}
@@ -0,0 +1,118 @@
+package in.apoorvsahu.removebg.services.impl;
+
+import in.apoorvsahu.removebg.Repositories.CreditLedgerRepository;
+import in.apoorvsahu.removebg.Repositories.UserRepository;
+import in.apoorvsahu.removebg.dtos.CreditReservationDto;
+import in.apoorvsahu.removebg.entities.User;
+import in.apoorvsahu.removebg.exceptions.InsufficientCreditsException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class CreditLedgerServiceImplTest {
+
+    @Autowired
+    private CreditLedgerServiceImpl creditLedgerService;
+
+    @Autowired
+    private CreditLedgerRepository creditLedgerRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void createUser() {
+        userRepository.save(User.builder()
+                .clerkId("user_ledger")
+                .email("ledger@example.com")
+                .firstName("Ledger")
+                .lastName("User")
+                .credits(2)
+                .build());
+    }
+
+    @AfterEach
+    void cleanUp() {
+        creditLedgerRepository.deleteAll();
+        jdbcTemplate.update("DELETE FROM tbl_job_watermarks");
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void releasedReservationIsRefundedOnceMaterialized() {
+        CreditReservationDto reservation = creditLedgerService.reserve("user_ledger", 1);
+        assertEquals(1, reservation.getRemainingCredits());
+
+        assertTrue(creditLedgerService.release(reservation.getReservationId(), "upstream_failure"));
+        assertFalse(creditLedgerService.commit(reservation.getReservationId()));
+        assertEquals(1, credits());
+
+        creditLedgerService.materializeReleases();
+        creditLedgerService.materializeReleases();
+        assertEquals(2, credits());
+    }
+
+    @Test
+    void committedReservationKeepsTheDebit() {
+        CreditReservationDto reservation = creditLedgerService.reserve("user_ledger", 2);
+
+        assertTrue(creditLedgerService.commit(reservation.getReservationId()));
+        assertFalse(creditLedgerService.release(reservation.getReservationId(), "late"));
+        creditLedgerService.materializeReleases();
+
+        assertEquals(0, credits());
+        assertThrows(InsufficientCreditsException.class, () -> creditLedgerService.reserve("user_ledger", 1));
+    }
+
+    @Test
+    void reservationsLeftOpenLongAgoAreStillExpired() {
+        CreditReservationDto stale = creditLedgerService.reserve("user_ledger", 1);
+        CreditReservationDto committed = creditLedgerService.reserve("user_ledger", 1);
+        creditLedgerService.commit(committed.getReservationId());
+        // e.g. left open across a long outage
+        jdbcTemplate.update("update tbl_credit_ledger set created_at = ? where reservation_id in (?, ?)",
+                new Timestamp(System.currentTimeMillis() - Duration.ofDays(3).toMillis()),
+                stale.getReservationId(), committed.getReservationId());
+
+        creditLedgerService.expireStaleReservations();
+        creditLedgerService.materializeReleases();
+        assertEquals(1, credits());
+
+        creditLedgerService.expireStaleReservations();
+        creditLedgerService.materializeReleases();
+        assertEquals(1, credits());
+
+        // the sweep position is stored, so a restarted instance does not read these again
+        assertEquals(committed.getReservationId(), creditLedgerRepository.findById(sweepPosition()).orElseThrow().getReservationId());
+    }
+
+    @Test
+    void failedReservationLeavesNoLedgerEntry() {
+        assertThrows(InsufficientCreditsException.class, () -> creditLedgerService.reserve("user_ledger", 3));
+        assertEquals(0, creditLedgerRepository.count());
+        assertEquals(2, credits());
+    }
+
+    private long sweepPosition() {
+        return jdbcTemplate.queryForObject("SELECT position FROM tbl_job_watermarks WHERE job_name = 'credits.ledger.sweep'", Long.class);
+    }
+
+    private int credits() {
+        return userRepository.findCreditsByClerkId("user_ledger").orElseThrow();
+    }
+}
@@ -0,0 +1,108 @@
+package in.apoorvsahu.removebg.services.impl;
+
+import in.apoorvsahu.removebg.dtos.HistoryPageDto;
+import in.apoorvsahu.removebg.dtos.OrderHistoryDto;
+import in.apoorvsahu.removebg.exceptions.ValidationException;
+import in.apoorvsahu.removebg.services.HistoryService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+class HistoryServiceImplTest {
+
+    @Autowired
+    private HistoryService historyService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void createOrders() {
+        Timestamp shared = Timestamp.valueOf("2024-03-01 10:00:00.123456");
+        insertOrder("order_1", "user_history", Timestamp.valueOf("2024-01-01 10:00:00"));
+        insertOrder("order_2", "user_history", shared);
+        insertOrder("order_3", "user_history", shared);
+        insertOrder("order_4", "user_history", shared);
+        insertOrder("order_5", "user_history", Timestamp.valueOf("2024-05-01 10:00:00"));
+        insertOrder("order_other", "user_other", Timestamp.valueOf("2024-04-01 10:00:00"));
+        // created before the gateway call, not yet attached to a Razorpay order
+        insertOrder(null, "user_history", Timestamp.valueOf("2024-06-01 10:00:00"));
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM tbl_orders");
+        jdbcTemplate.update("DELETE FROM tbl_orders_archive");
+    }
+
+    @Test
+    void pagesWalkTheWholeHistoryNewestFirstWithoutGapsOrDuplicates() {
+        List<String> orderIds = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            HistoryPageDto<OrderHistoryDto> page = historyService.getOrderHistory("user_history", cursor, 2);
+            page.getItems().forEach(order -> orderIds.add(order.getOrderId()));
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(List.of("order_5", "order_4", "order_3", "order_2", "order_1"), orderIds);
+        assertEquals(3, pages);
+    }
+
+    @Test
+    void archivedOrdersStayInTheHistoryInOrder() {
+        insertArchivedOrder(900_001L, "order_archived_old", "user_history", Timestamp.valueOf("2023-06-01 10:00:00"), true);
+        insertArchivedOrder(900_002L, "order_archived_mid", "user_history", Timestamp.valueOf("2024-02-01 10:00:00"), true);
+        insertArchivedOrder(900_003L, "order_archived_other", "user_other", Timestamp.valueOf("2024-02-01 10:00:00"), true);
+
+        List<String> orderIds = new ArrayList<>();
+        String cursor = null;
+        do {
+            HistoryPageDto<OrderHistoryDto> page = historyService.getOrderHistory("user_history", cursor, 3);
+            page.getItems().forEach(order -> orderIds.add(order.getOrderId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(List.of("order_5", "order_4", "order_3", "order_2", "order_archived_mid", "order_1", "order_archived_old"),
+                orderIds);
+    }
+
+    @Test
+    void lastPageHasNoCursor() {
+        HistoryPageDto<OrderHistoryDto> page = historyService.getOrderHistory("user_history", null, 5);
+
+        assertEquals(5, page.getItems().size());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void rejectsMalformedCursorAndLimit() {
+        assertThrows(ValidationException.class, () -> historyService.getOrderHistory("user_history", "not-a-cursor", 10));
+        assertThrows(ValidationException.class, () -> historyService.getOrderHistory("user_history", null, 0));
+        assertThrows(ValidationException.class, () -> historyService.getUsageHistory("user_history", null, 1000));
+    }
+
+    private void insertOrder(String orderId, String clerkId, Timestamp createdAt) {
+        jdbcTemplate.update("INSERT INTO tbl_orders (order_id, clerk_id, plan, amount, credits, payment, created_at) " +
+                "VALUES (?, ?, 'Basic', 199.0, 100, false, ?)", orderId, clerkId, createdAt);
+    }
+
+    private void insertArchivedOrder(long id, String orderId, String clerkId, Timestamp createdAt, boolean paid) {
+        jdbcTemplate.update("INSERT INTO tbl_orders_archive (id, order_id, receipt, clerk_id, plan, amount, credits, payment, created_at, archived_at) " +
+                "VALUES (?, ?, ?, ?, 'Basic', 199.0, 100, ?, ?, ?)", id, orderId, "rcpt_" + id, clerkId, paid, createdAt, createdAt);
+    }
+}
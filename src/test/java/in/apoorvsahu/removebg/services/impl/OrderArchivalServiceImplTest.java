@@ -0,0 +1,62 @@
+package in.apoorvsahu.removebg.services.impl;
+
+import in.apoorvsahu.removebg.Repositories.OrderRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {"orders.archival.batch-size=2", "orders.archival.batch-pause=0ms"})
+class OrderArchivalServiceImplTest {
+
+    @Autowired
+    private OrderArchivalServiceImpl orderArchivalService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM tbl_orders");
+        jdbcTemplate.update("DELETE FROM tbl_orders_archive");
+    }
+
+    @Test
+    void movesStaleUnpaidAndExpiredPaidOrdersInBatches() {
+        insertOrder("order_stale_1", false, Duration.ofDays(10));
+        insertOrder("order_stale_2", false, Duration.ofDays(9));
+        insertOrder("order_stale_3", false, Duration.ofDays(8));
+        insertOrder("order_pending", false, Duration.ofDays(1));
+        insertOrder("order_paid_recent", true, Duration.ofDays(30));
+        insertOrder("order_paid_old", true, Duration.ofDays(400));
+
+        assertEquals(4, orderArchivalService.archiveStaleOrders());
+
+        assertTrue(orderRepository.findByOrderId("order_pending").isPresent());
+        assertTrue(orderRepository.findByOrderId("order_paid_recent").isPresent());
+        assertFalse(orderRepository.findByOrderId("order_stale_1").isPresent());
+        assertFalse(orderRepository.findByOrderId("order_paid_old").isPresent());
+        assertEquals(4, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM tbl_orders_archive", Integer.class));
+        assertEquals(true, jdbcTemplate.queryForObject(
+                "SELECT payment FROM tbl_orders_archive WHERE order_id = 'order_paid_old'", Boolean.class));
+
+        assertEquals(0, orderArchivalService.archiveStaleOrders());
+    }
+
+    private void insertOrder(String orderId, boolean payment, Duration age) {
+        jdbcTemplate.update("INSERT INTO tbl_orders (order_id, clerk_id, plan, amount, credits, payment, created_at) " +
+                        "VALUES (?, 'user_archive', 'Basic', 499.0, 100, ?, ?)",
+                orderId, payment, new Timestamp(System.currentTimeMillis() - age.toMillis()));
+    }
+}
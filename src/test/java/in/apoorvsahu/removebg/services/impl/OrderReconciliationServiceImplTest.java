@@ -0,0 +1,188 @@
+package in.apoorvsahu.removebg.services.impl;
+
+import com.sun.net.httpserver.HttpExchange;
+import in.apoorvsahu.removebg.Repositories.OrderRepository;
+import in.apoorvsahu.removebg.Repositories.UserRepository;
+import in.apoorvsahu.removebg.cache.SettledOrderCache;
+import in.apoorvsahu.removebg.entities.OrderEntity;
+import in.apoorvsahu.removebg.entities.User;
+import in.apoorvsahu.removebg.support.StubHttpServer;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {"orders.reconciliation.batch-size=2", "orders.reconciliation.rate-per-second=1000"})
+class OrderReconciliationServiceImplTest {
+
+    private static final StubHttpServer GATEWAY =
+            StubHttpServer.start("/v1/orders", OrderReconciliationServiceImplTest::handleFetch);
+    private static final List<String> FETCHED_ORDERS = new CopyOnWriteArrayList<>();
+    private static final Set<String> PAID_LATER = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    private OrderReconciliationServiceImpl orderReconciliationService;
+
+    @Autowired
+    private SettledOrderCache settledOrderCache;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void gatewayProperties(DynamicPropertyRegistry registry) {
+        registry.add("razorpay.api-url", () -> GATEWAY.url("/v1"));
+    }
+
+    @AfterAll
+    static void stopGateway() {
+        GATEWAY.close();
+    }
+
+    @BeforeEach
+    void createUser() {
+        FETCHED_ORDERS.clear();
+        PAID_LATER.clear();
+        userRepository.save(User.builder()
+                .clerkId("user_reconcile")
+                .email("reconcile@example.com")
+                .firstName("Reconcile")
+                .lastName("User")
+                .credits(5)
+                .build());
+    }
+
+    @AfterEach
+    void cleanUp() {
+        ReflectionTestUtils.setField(orderReconciliationService, "maxBatchesPerRun", 10);
+        settledOrderCache.invalidateAll();
+        jdbcTemplate.update("DELETE FROM tbl_job_watermarks");
+        orderRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void settlesPaidOrdersOnceAndRechecksUnpaidOnesOnABackoff() {
+        insertOrder("order_paid_1", Duration.ofHours(3));
+        insertOrder("order_unpaid", Duration.ofHours(2));
+        insertOrder("order_paid_2", Duration.ofHours(1));
+        insertOrder("order_too_young", Duration.ofMinutes(1));
+        insertOrder("order_too_old", Duration.ofDays(30));
+
+        assertEquals(2, orderReconciliationService.reconcilePendingOrders());
+
+        assertEquals(205, userRepository.findCreditsByClerkId("user_reconcile").orElseThrow());
+        assertTrue(orderRepository.findByOrderId("order_paid_1").orElseThrow().getPayment());
+        assertFalse(orderRepository.findByOrderId("order_unpaid").orElseThrow().getPayment());
+        // checks within a batch run concurrently, so only the set of orders is deterministic
+        assertEquals(3, FETCHED_ORDERS.size());
+        assertEquals(Set.of("order_paid_1", "order_unpaid", "order_paid_2"), Set.copyOf(FETCHED_ORDERS));
+
+        // the window pass only touches new work, and the unpaid order is not due for a recheck yet
+        FETCHED_ORDERS.clear();
+        assertEquals(0, orderReconciliationService.reconcilePendingOrders());
+        assertEquals(0, orderReconciliationService.recheckUnpaidOrders());
+        assertTrue(FETCHED_ORDERS.isEmpty());
+
+        makeRecheckDue("order_unpaid");
+        assertEquals(0, orderReconciliationService.recheckUnpaidOrders());
+        assertEquals(List.of("order_unpaid"), FETCHED_ORDERS);
+        OrderEntity rechecked = orderRepository.findByOrderId("order_unpaid").orElseThrow();
+        assertEquals(2, rechecked.getCheckCount());
+        // the backoff doubles from 30m with every unpaid answer
+        assertTrue(rechecked.getNextCheckAt().getTime() > System.currentTimeMillis() + Duration.ofMinutes(59).toMillis());
+
+        PAID_LATER.add("order_unpaid");
+        makeRecheckDue("order_unpaid");
+        assertEquals(1, orderReconciliationService.recheckUnpaidOrders());
+        assertEquals(305, userRepository.findCreditsByClerkId("user_reconcile").orElseThrow());
+
+        FETCHED_ORDERS.clear();
+        makeRecheckDue("order_unpaid");
+        assertEquals(0, orderReconciliationService.recheckUnpaidOrders());
+        assertTrue(FETCHED_ORDERS.isEmpty());
+    }
+
+    @Test
+    void unpaidBacklogDoesNotStarveNewerOrders() {
+        ReflectionTestUtils.setField(orderReconciliationService, "maxBatchesPerRun", 1);
+        insertOrder("order_unpaid_1", Duration.ofHours(4));
+        insertOrder("order_unpaid_2", Duration.ofHours(3));
+        insertOrder("order_unpaid_3", Duration.ofHours(2));
+        insertOrder("order_paid", Duration.ofHours(1));
+
+        assertEquals(0, orderReconciliationService.reconcilePendingOrders());
+        assertEquals(1, orderReconciliationService.reconcilePendingOrders());
+        assertTrue(orderRepository.findByOrderId("order_paid").orElseThrow().getPayment());
+
+        // orders already found unpaid are left to the recheck schedule
+        FETCHED_ORDERS.clear();
+        assertEquals(0, orderReconciliationService.reconcilePendingOrders());
+        assertTrue(FETCHED_ORDERS.isEmpty());
+    }
+
+    @Test
+    void gatewayFailureHoldsTheWatermarkAtTheFailedOrder() {
+        insertOrder("order_paid_1", Duration.ofHours(3));
+        insertOrder("order_broken", Duration.ofHours(2));
+        insertOrder("order_paid_2", Duration.ofHours(1));
+
+        assertEquals(1, orderReconciliationService.reconcilePendingOrders());
+
+        FETCHED_ORDERS.clear();
+        assertEquals(1, orderReconciliationService.reconcilePendingOrders());
+        assertEquals(2, FETCHED_ORDERS.size());
+        assertEquals(Set.of("order_broken", "order_paid_2"), Set.copyOf(FETCHED_ORDERS));
+        assertEquals(205, userRepository.findCreditsByClerkId("user_reconcile").orElseThrow());
+    }
+
+    private void makeRecheckDue(String orderId) {
+        jdbcTemplate.update("UPDATE tbl_orders SET next_check_at = ? WHERE order_id = ?",
+                new Timestamp(System.currentTimeMillis() - 1000), orderId);
+    }
+
+    private void insertOrder(String orderId, Duration age) {
+        jdbcTemplate.update("INSERT INTO tbl_orders (order_id, clerk_id, plan, amount, credits, payment, created_at) " +
+                        "VALUES (?, 'user_reconcile', 'Basic', 499.0, 100, false, ?)",
+                orderId, new Timestamp(System.currentTimeMillis() - age.toMillis()));
+    }
+
+    private static void handleFetch(HttpExchange exchange) throws IOException {
+        String orderId = exchange.getRequestURI().getPath().substring("/v1/orders/".length());
+        FETCHED_ORDERS.add(orderId);
+
+        int status = 200;
+        boolean paid = PAID_LATER.contains(orderId) || orderId.contains("paid") && !orderId.contains("unpaid");
+        String body = new JSONObject().put("id", orderId).put("status", paid ? "paid" : "attempted").toString();
+        if (orderId.equals("order_broken")) {
+            status = 500;
+            body = "{\"error\":{\"code\":\"SERVER_ERROR\",\"description\":\"Temporarily unavailable\"}}";
+        }
+        StubHttpServer.respond(exchange, status, body);
+    }
+}
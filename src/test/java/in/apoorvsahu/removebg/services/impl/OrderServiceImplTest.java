@@ -0,0 +1,148 @@
+package in.apoorvsahu.removebg.services.impl;
+
+import com.razorpay.Order;
+import com.sun.net.httpserver.HttpExchange;
+import in.apoorvsahu.removebg.Repositories.OrderRepository;
+import in.apoorvsahu.removebg.entities.OrderEntity;
+import in.apoorvsahu.removebg.exceptions.PaymentProcessingException;
+import in.apoorvsahu.removebg.services.OrderService;
+import in.apoorvsahu.removebg.support.StubHttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class OrderServiceImplTest {
+
+    private static final long GATEWAY_LATENCY_MS = 300;
+    private static final StubHttpServer GATEWAY = StubHttpServer.start("/v1/orders", OrderServiceImplTest::handle);
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderRecoveryServiceImpl orderRecoveryService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @DynamicPropertySource
+    static void gatewayProperties(DynamicPropertyRegistry registry) {
+        registry.add("razorpay.api-url", () -> GATEWAY.url("/v1"));
+    }
+
+    @AfterAll
+    static void stopGateway() {
+        GATEWAY.close();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        orderRepository.deleteAll();
+    }
+
+    @Test
+    void gatewayCallRunsWithNoTransactionOpen() throws Exception {
+        Timer persistence = meterRegistry.get("bulkhead.queue.wait").tag("name", "order-persistence").timer();
+        long persisted = persistence.count();
+
+        Order order = orderService.createOrder("Basic", "user_two_phase").get(5, TimeUnit.SECONDS);
+        // the gateway id is attached on the persistence bulkhead, not on a razorpay thread
+        assertEquals(persisted + 1, persistence.count());
+
+        OrderEntity saved = orderRepository.findByOrderId(order.get("id").toString()).orElseThrow();
+        assertEquals("order_" + saved.getReceipt(), saved.getOrderId());
+        assertEquals(100, saved.getCredits());
+
+        Collection<Timer> transactions = meterRegistry.find("db.transaction.duration").timers();
+        assertFalse(transactions.isEmpty());
+        for (Timer transaction : transactions) {
+            assertTrue(transaction.max(TimeUnit.MILLISECONDS) < GATEWAY_LATENCY_MS,
+                    transaction.getId() + " was open for the gateway call");
+        }
+    }
+
+    @Test
+    void failedGatewayCallLeavesARecoverablePendingOrder() {
+        ExecutionException failure = assertThrows(ExecutionException.class,
+                () -> orderService.createOrder("Ultimate", "user_two_phase").get(5, TimeUnit.SECONDS));
+        assertInstanceOf(PaymentProcessingException.class, failure.getCause());
+
+        List<OrderEntity> orders = orderRepository.findAll();
+        assertEquals(1, orders.size());
+        assertNull(orders.get(0).getOrderId());
+    }
+
+    @Test
+    void recoveryAttachesKnownOrdersAndDropsOnesTheGatewayNeverSaw() {
+        insertPendingOrder("rcpt_known", Duration.ofMinutes(5));
+        insertPendingOrder("rcpt_unknown", Duration.ofMinutes(5));
+        insertPendingOrder("rcpt_in_flight", Duration.ofSeconds(5));
+
+        assertEquals(2, orderRecoveryService.recoverUnattachedOrders());
+
+        assertTrue(orderRepository.findByOrderId("order_rcpt_known").isPresent());
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM tbl_orders WHERE order_id IS NULL AND receipt = 'rcpt_in_flight'", Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM tbl_orders WHERE receipt = 'rcpt_unknown'", Integer.class));
+    }
+
+    private void insertPendingOrder(String receipt, Duration age) {
+        jdbcTemplate.update("INSERT INTO tbl_orders (receipt, clerk_id, plan, amount, credits, payment, created_at) " +
+                        "VALUES (?, 'user_two_phase', 'Basic', 499.0, 100, false, ?)",
+                receipt, new Timestamp(System.currentTimeMillis() - age.toMillis()));
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        if ("POST".equals(exchange.getRequestMethod())) {
+            JSONObject request = new JSONObject(StubHttpServer.readBody(exchange));
+            if (request.getInt("amount") == 149900) {
+                StubHttpServer.respond(exchange, 500, "{\"error\":{\"code\":\"SERVER_ERROR\",\"description\":\"Temporarily unavailable\"}}");
+                return;
+            }
+            StubHttpServer.delay(GATEWAY_LATENCY_MS);
+            StubHttpServer.respond(exchange, 200, new JSONObject().put("id", "order_" + request.getString("receipt"))
+                    .put("amount", request.getInt("amount")).put("receipt", request.getString("receipt"))
+                    .put("status", "created").toString());
+            return;
+        }
+
+        String query = exchange.getRequestURI().getQuery();
+        JSONArray items = new JSONArray();
+        if ("receipt=rcpt_known".equals(query)) {
+            items.put(new JSONObject().put("id", "order_rcpt_known").put("receipt", "rcpt_known").put("status", "created"));
+        }
+        StubHttpServer.respond(exchange, 200, new JSONObject().put("entity", "collection").put("count", items.length()).put("items", items).toString());
+    }
+}
@@ -0,0 +1,165 @@
+package in.apoorvsahu.removebg.services.impl;
+
+import in.apoorvsahu.removebg.Repositories.OrderRepository;
+import in.apoorvsahu.removebg.Repositories.UserRepository;
+import in.apoorvsahu.removebg.cache.SettledOrderCache;
+import in.apoorvsahu.removebg.controllers.RazorpayWebhookController;
+import in.apoorvsahu.removebg.dtos.OrderSettlementDto;
+import in.apoorvsahu.removebg.entities.OrderEntity;
+import in.apoorvsahu.removebg.entities.User;
+import in.apoorvsahu.removebg.exceptions.OrderNotFoundException;
+import in.apoorvsahu.removebg.response.RemoveBgResponse;
+import in.apoorvsahu.removebg.services.RazorpayService;
+import in.apoorvsahu.removebg.services.WebhookSignatureService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.HexFormat;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "razorpay.webhook.secret=rzp_webhook_test")
+class OrderSettlementServiceImplTest {
+
+    @Autowired
+    private OrderSettlementServiceImpl orderSettlementService;
+
+    @Autowired
+    private RazorpayService razorpayService;
+
+    @Autowired
+    private WebhookSignatureService webhookSignatureService;
+
+    @Autowired
+    private SettledOrderCache settledOrderCache;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private RazorpayWebhookController webhookController;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void createUserAndOrder() {
+        userRepository.save(User.builder()
+                .clerkId("user_settlement")
+                .email("settlement@example.com")
+                .firstName("Settlement")
+                .lastName("User")
+                .credits(5)
+                .build());
+        orderRepository.save(OrderEntity.builder()
+                .orderId("order_settlement")
+                .clerkId("user_settlement")
+                .plan("Basic")
+                .amount(499.0)
+                .credits(100)
+                .build());
+    }
+
+    @AfterEach
+    void cleanUp() {
+        settledOrderCache.invalidateAll();
+        orderRepository.deleteAll();
+        jdbcTemplate.update("DELETE FROM tbl_orders_archive");
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void duplicateDeliveriesGrantCreditsOnce() throws Exception {
+        Map<String, Object> pending = razorpayService.verifyPayment("order_settlement");
+        assertEquals(true, pending.get("pending"));
+
+        OrderSettlementDto first = orderSettlementService.settleAsync("order_settlement").get();
+        OrderSettlementDto second = orderSettlementService.settle("order_settlement");
+
+        assertTrue(first.isNewlySettled());
+        assertFalse(second.isNewlySettled());
+        assertEquals(105, first.getTotalCredits());
+        assertEquals(105, second.getTotalCredits());
+        assertEquals(105, userRepository.findCreditsByClerkId("user_settlement").orElseThrow());
+        assertTrue(orderRepository.findByOrderId("order_settlement").orElseThrow().getPaidAt() != null);
+
+        Map<String, Object> paid = razorpayService.verifyPayment("order_settlement");
+        assertEquals(true, paid.get("success"));
+        assertEquals(105, paid.get("totalCredits"));
+    }
+
+    @Test
+    void unknownOrderIsRejected() {
+        assertThrows(OrderNotFoundException.class, () -> orderSettlementService.settle("order_missing"));
+    }
+
+    @Test
+    void latePaymentForAnArchivedOrderIsStillCredited() {
+        Timestamp createdAt = Timestamp.valueOf("2024-01-01 10:00:00");
+        jdbcTemplate.update("INSERT INTO tbl_orders_archive (id, order_id, receipt, clerk_id, plan, amount, credits, payment, created_at, archived_at) " +
+                "VALUES (900100, 'order_archived', 'rcpt_archived', 'user_settlement', 'Basic', 499.0, 100, false, ?, ?)", createdAt, createdAt);
+
+        OrderSettlementDto settled = orderSettlementService.settle("order_archived");
+
+        assertTrue(settled.isNewlySettled());
+        assertEquals(105, userRepository.findCreditsByClerkId("user_settlement").orElseThrow());
+        OrderEntity restored = orderRepository.findByOrderId("order_archived").orElseThrow();
+        assertEquals(900100L, restored.getId());
+        assertTrue(restored.getPayment());
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM tbl_orders_archive", Integer.class));
+    }
+
+    @Test
+    void webhookForAnUnknownOrderIsCountedAndRedelivered() throws Exception {
+        double before = meterRegistry.counter("razorpay.webhook.unknown_orders").count();
+        String payload = orderPaidPayload("order_missing");
+
+        ResponseEntity<RemoveBgResponse> unknown = webhookController.handleRazorpayWebhook(sign(payload), "evt_1", payload).get();
+        assertEquals(404, unknown.getStatusCode().value());
+        assertEquals(before + 1, meterRegistry.counter("razorpay.webhook.unknown_orders").count());
+
+        payload = orderPaidPayload("order_settlement");
+        ResponseEntity<RemoveBgResponse> known = webhookController.handleRazorpayWebhook(sign(payload), "evt_2", payload).get();
+        assertEquals(200, known.getStatusCode().value());
+    }
+
+    @Test
+    void acceptsOnlyBodiesSignedWithTheWebhookSecret() throws Exception {
+        String payload = orderPaidPayload("order_settlement");
+        String signature = sign(payload);
+
+        assertTrue(webhookSignatureService.verifyRazorpaySignature(signature, payload));
+        assertFalse(webhookSignatureService.verifyRazorpaySignature(signature, payload.replace("order_settlement", "order_other")));
+        assertFalse(webhookSignatureService.verifyRazorpaySignature("deadbeef", payload));
+    }
+
+    private static String orderPaidPayload(String orderId) {
+        return "{\"event\":\"order.paid\",\"payload\":{\"order\":{\"entity\":{\"id\":\"" + orderId + "\"}}}}";
+    }
+
+    private static String sign(String payload) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec("rzp_webhook_test".getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return HexFormat.of().formatHex(mac.doFinal(payload.getBytes(StandardCharsets.UTF_8)));
+    }
+}
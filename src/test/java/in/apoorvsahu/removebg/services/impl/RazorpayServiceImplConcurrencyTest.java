@@ -0,0 +1,174 @@
+package in.apoorvsahu.removebg.services.impl;
+
+import com.sun.net.httpserver.HttpExchange;
+import in.apoorvsahu.removebg.Repositories.OrderRepository;
+import in.apoorvsahu.removebg.Repositories.UserRepository;
+import in.apoorvsahu.removebg.cache.SettledOrderCache;
+import in.apoorvsahu.removebg.dtos.OrderSettlementDto;
+import in.apoorvsahu.removebg.entities.OrderEntity;
+import in.apoorvsahu.removebg.entities.User;
+import in.apoorvsahu.removebg.services.OrderSettlementService;
+import in.apoorvsahu.removebg.services.RazorpayService;
+import in.apoorvsahu.removebg.support.StubHttpServer;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class RazorpayServiceImplConcurrencyTest {
+
+    private static final int THREADS = 16;
+    private static final StubHttpServer GATEWAY =
+            StubHttpServer.start("/v1/orders", RazorpayServiceImplConcurrencyTest::handleFetch, 4);
+    private static final AtomicInteger GATEWAY_FETCHES = new AtomicInteger();
+
+    @Autowired
+    private RazorpayService razorpayService;
+
+    @Autowired
+    private OrderSettlementService orderSettlementService;
+
+    @Autowired
+    private SettledOrderCache settledOrderCache;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @DynamicPropertySource
+    static void gatewayProperties(DynamicPropertyRegistry registry) {
+        registry.add("razorpay.api-url", () -> GATEWAY.url("/v1"));
+    }
+
+    @AfterAll
+    static void stopGateway() {
+        GATEWAY.close();
+    }
+
+    @BeforeEach
+    void createUser() {
+        GATEWAY_FETCHES.set(0);
+        userRepository.save(User.builder()
+                .clerkId("user_verify")
+                .email("verify@example.com")
+                .firstName("Verify")
+                .lastName("User")
+                .credits(5)
+                .build());
+    }
+
+    @AfterEach
+    void cleanUp() {
+        settledOrderCache.invalidateAll();
+        orderRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void concurrentVerifiesGrantCreditsExactlyOnce() throws Exception {
+        createOrder("order_verify_race");
+        AtomicInteger successfulVerifies = new AtomicInteger();
+
+        runConcurrently(THREADS * 8, () -> {
+            Map<String, Object> result = razorpayService.verifyPayment("order_verify_race");
+            if (Boolean.TRUE.equals(result.get("success"))) {
+                successfulVerifies.incrementAndGet();
+            }
+            assertEquals(100, result.get("creditsAdded"));
+            return null;
+        });
+
+        assertEquals(THREADS * 8, successfulVerifies.get());
+        assertEquals(105, userRepository.findCreditsByClerkId("user_verify").orElseThrow());
+        assertTrue(GATEWAY_FETCHES.get() < THREADS * 8, "verifications should share gateway lookups");
+
+        int fetchesBeforeRepeat = GATEWAY_FETCHES.get();
+        assertEquals(105, razorpayService.verifyPayment("order_verify_race").get("totalCredits"));
+        assertEquals(fetchesBeforeRepeat, GATEWAY_FETCHES.get());
+    }
+
+    @Test
+    void webhookAndVerifyRacingOnOneOrderSettleItOnce() throws Exception {
+        createOrder("order_settle_race");
+        AtomicInteger newlySettled = new AtomicInteger();
+
+        runConcurrently(THREADS * 4, () -> {
+            if (ThreadLocalRandom.current().nextBoolean()) {
+                OrderSettlementDto settlement = orderSettlementService.settle("order_settle_race");
+                if (settlement.isNewlySettled()) {
+                    newlySettled.incrementAndGet();
+                }
+            } else {
+                razorpayService.verifyPayment("order_settle_race");
+            }
+            return null;
+        });
+
+        assertTrue(newlySettled.get() <= 1);
+        assertEquals(105, userRepository.findCreditsByClerkId("user_verify").orElseThrow());
+        assertTrue(orderRepository.findByOrderId("order_settle_race").orElseThrow().getPayment());
+    }
+
+    private void createOrder(String orderId) {
+        orderRepository.save(OrderEntity.builder()
+                .orderId(orderId)
+                .clerkId("user_verify")
+                .plan("Basic")
+                .amount(499.0)
+                .credits(100)
+                .build());
+    }
+
+    private void runConcurrently(int tasks, Callable<Void> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < tasks; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void handleFetch(HttpExchange exchange) throws IOException {
+        GATEWAY_FETCHES.incrementAndGet();
+        // slow enough that concurrent verifies overlap
+        StubHttpServer.delay(50);
+
+        String orderId = exchange.getRequestURI().getPath().substring("/v1/orders/".length());
+        StubHttpServer.respond(exchange, 200, new JSONObject().put("id", orderId).put("status", "paid").toString());
+    }
+}
@@ -0,0 +1,80 @@
+package in.apoorvsahu.removebg.services.impl;
+
+import in.apoorvsahu.removebg.entities.UsageEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {"usage.events.queue-capacity=5", "usage.events.batch-size=2"})
+class UsageEventServiceImplTest {
+
+    @Autowired
+    private UsageEventServiceImpl usageEventService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @AfterEach
+    void cleanUp() {
+        usageEventService.flush();
+        jdbcTemplate.update("DELETE FROM tbl_usage_events");
+    }
+
+    @Test
+    void queuedEventsAreWrittenInBatchesOnFlush() {
+        for (int i = 0; i < 5; i++) {
+            assertTrue(usageEventService.record(event(UsageEvent.Outcome.SUCCESS, 1)));
+        }
+        assertEquals(0, countEvents());
+
+        assertEquals(5, usageEventService.flush());
+        assertEquals(5, countEvents());
+        assertEquals(5, jdbcTemplate.queryForObject(
+                "SELECT SUM(credits_charged) FROM tbl_usage_events WHERE clerk_id = 'user_usage'", Integer.class));
+    }
+
+    @Test
+    void eventsAreDroppedWhenQueueIsFull() {
+        double droppedBefore = meterRegistry.get("usage.events.dropped").counter().count();
+        for (int i = 0; i < 5; i++) {
+            assertTrue(usageEventService.record(event(UsageEvent.Outcome.SUCCESS, 1)));
+        }
+        for (int i = 0; i < 3; i++) {
+            assertFalse(usageEventService.record(event(UsageEvent.Outcome.FAILED, 0)));
+        }
+        assertEquals(3, meterRegistry.get("usage.events.dropped").counter().count() - droppedBefore);
+
+        usageEventService.flush();
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM tbl_usage_events WHERE outcome = 'FAILED'", Integer.class));
+        assertTrue(usageEventService.record(event(UsageEvent.Outcome.FAILED, 0)));
+    }
+
+    private UsageEvent event(UsageEvent.Outcome outcome, int creditsCharged) {
+        return UsageEvent.builder()
+                .clerkId("user_usage")
+                .inputBytes(1024L)
+                .contentType("image/png")
+                .width(640)
+                .height(480)
+                .upstreamLatencyMs(120L)
+                .engine("clipdrop")
+                .outcome(outcome)
+                .creditsCharged(creditsCharged)
+                .build();
+    }
+
+    private int countEvents() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM tbl_usage_events", Integer.class);
+    }
+}
@@ -0,0 +1,69 @@
+package in.apoorvsahu.removebg.services.impl;
+
+import in.apoorvsahu.removebg.exceptions.EventStreamLimitException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class UserEventServiceImplTest {
+
+    private UserEventServiceImpl userEventService;
+
+    @BeforeEach
+    void setUp() {
+        userEventService = new UserEventServiceImpl();
+        ReflectionTestUtils.setField(userEventService, "emitterTimeoutMs", 60_000L);
+        ReflectionTestUtils.setField(userEventService, "maxConnections", 4);
+        ReflectionTestUtils.setField(userEventService, "maxConnectionsPerUser", 2);
+    }
+
+    @Test
+    void eachUserIsLimitedToTheirOwnStreams() {
+        userEventService.subscribe("user_a");
+        userEventService.subscribe("user_a");
+
+        assertThrows(EventStreamLimitException.class, () -> userEventService.subscribe("user_a"));
+        assertNotNull(userEventService.subscribe("user_b"));
+        assertEquals(3, openStreams());
+    }
+
+    @Test
+    void theServerWideLimitFreesUpWhenStreamsClose() {
+        userEventService.subscribe("user_a");
+        userEventService.subscribe("user_a");
+        userEventService.subscribe("user_b");
+        userEventService.subscribe("user_c");
+
+        assertThrows(EventStreamLimitException.class, () -> userEventService.subscribe("user_d"));
+        assertEquals(4, openStreams());
+
+        userEventService.disconnectUser("user_a");
+        assertEquals(2, openStreams());
+        assertNotNull(userEventService.subscribe("user_d"));
+    }
+
+    @Test
+    void heartbeatsDropStreamsThatCanNoLongerBeWritten() {
+        SseEmitter dead = userEventService.subscribe("user_a");
+        userEventService.subscribe("user_a");
+        // no servlet response behind it, so completion callbacks never run and only a failed write notices
+        dead.complete();
+
+        userEventService.sendHeartbeats();
+
+        assertEquals(1, openStreams());
+        assertNotNull(userEventService.subscribe("user_a"));
+        assertThrows(EventStreamLimitException.class, () -> userEventService.subscribe("user_a"));
+    }
+
+    private int openStreams() {
+        return ((AtomicInteger) ReflectionTestUtils.getField(userEventService, "connectionCount")).get();
+    }
+}
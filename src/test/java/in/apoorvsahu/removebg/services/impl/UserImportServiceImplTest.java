@@ -0,0 +1,107 @@
+package in.apoorvsahu.removebg.services.impl;
+
+import in.apoorvsahu.removebg.Repositories.UserRepository;
+import in.apoorvsahu.removebg.dtos.UserImportResultDto;
+import in.apoorvsahu.removebg.entities.User;
+import in.apoorvsahu.removebg.services.UserImportService;
+import in.apoorvsahu.removebg.services.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "users.import.batch-size=2")
+class UserImportServiceImplTest {
+
+    @Autowired
+    private UserImportService userImportService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @AfterEach
+    void cleanUp() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void importsJsonArrayAndSkipsInvalidRecords() throws Exception {
+        String export = "[" + clerkUser("user_a", "a@example.com", "Alice") + ","
+                + clerkUser("user_b", "b@example.com", "Bob") + ","
+                + "{\"id\":\"user_no_email\",\"email_addresses\":[]},"
+                + clerkUser("user_c", "c@example.com", "Carol") + "]";
+
+        UserImportResultDto result = userImportService.importUsers(stream(export));
+
+        assertEquals(4, result.getRecordsRead());
+        assertEquals(3, result.getUsersUpserted());
+        assertEquals(1, result.getRecordsSkipped());
+        assertEquals(3, userRepository.count());
+        assertEquals(User.DEFAULT_CREDITS, userRepository.findCreditsByClerkId("user_c").orElseThrow());
+    }
+
+    @Test
+    void importsJsonLinesWithoutResettingCredits() throws Exception {
+        userImportService.importUsers(stream(clerkUser("user_a", "a@example.com", "Alice")));
+        userService.grantCredits("user_a", 10);
+
+        String export = clerkUser("user_a", "a@example.com", "Alicia") + "\n"
+                + clerkUser("user_b", "b@example.com", "Bob") + "\n";
+        UserImportResultDto result = userImportService.importUsers(stream(export));
+
+        assertEquals(2, result.getUsersUpserted());
+        assertEquals("Alicia", userRepository.findByClerkId("user_a").orElseThrow().getFirstName());
+        assertEquals(User.DEFAULT_CREDITS + 10, userRepository.findCreditsByClerkId("user_a").orElseThrow());
+    }
+
+    @Test
+    void emailsOwnedByAnotherAccountAreReportedAsConflicts() throws Exception {
+        userImportService.importUsers(stream(clerkUser("user_a", "shared@example.com", "Alice")));
+
+        String export = clerkUser("user_b", "shared@example.com", "Bob") + "\n"
+                + clerkUser("user_c", "c@example.com", "Carol") + "\n";
+        UserImportResultDto result = userImportService.importUsers(stream(export));
+
+        assertEquals(1, result.getUsersUpserted());
+        assertEquals(1, result.getRecordsConflicted());
+        assertEquals(0, result.getRecordsFailed());
+        assertFalse(userRepository.existsByClerkId("user_b"));
+        assertEquals("Alice", userRepository.findByClerkId("user_a").orElseThrow().getFirstName());
+    }
+
+    @Test
+    void aBadRecordOnlyFailsItself() throws Exception {
+        String export = clerkUser("user_a", "a@example.com", "A".repeat(300)) + "\n"
+                + clerkUser("user_b", "b@example.com", "Bob") + "\n"
+                + clerkUser("user_c", "c@example.com", "Carol") + "\n";
+
+        UserImportResultDto result = userImportService.importUsers(stream(export));
+
+        assertEquals(2, result.getUsersUpserted());
+        assertEquals(1, result.getRecordsFailed());
+        assertFalse(userRepository.existsByClerkId("user_a"));
+        assertTrue(userRepository.existsByClerkId("user_b"));
+        assertTrue(userRepository.existsByClerkId("user_c"));
+    }
+
+    private String clerkUser(String id, String email, String firstName) {
+        return "{\"id\":\"" + id + "\",\"first_name\":\"" + firstName + "\",\"last_name\":\"Test\","
+                + "\"image_url\":\"https://img.clerk.com/" + id + "\","
+                + "\"email_addresses\":[{\"email_address\":\"" + email + "\"}]}";
+    }
+
+    private InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,68 @@
+package in.apoorvsahu.removebg.services.impl;
+
+import in.apoorvsahu.removebg.Repositories.UserRepository;
+import in.apoorvsahu.removebg.cache.UserProfileCache;
+import in.apoorvsahu.removebg.dtos.UserDto;
+import in.apoorvsahu.removebg.entities.User;
+import in.apoorvsahu.removebg.services.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+class UserServiceImplCacheTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserProfileCache userProfileCache;
+
+    @AfterEach
+    void cleanUp() {
+        userRepository.deleteAll();
+        userProfileCache.invalidateAll();
+    }
+
+    @Test
+    void creditMutationsAreVisibleImmediatelyAfterCachedReads() {
+        userRepository.save(User.builder()
+                .clerkId("user_cached")
+                .email("cached@example.com")
+                .firstName("Cached")
+                .lastName("User")
+                .credits(10)
+                .build());
+
+        assertEquals(10, userService.getUserByClerkId("user_cached").getCredits());
+        assertEquals(10, userService.getUserByClerkId("user_cached").getCredits());
+
+        userService.debitCredits("user_cached", 3);
+        assertEquals(7, userService.getUserByClerkId("user_cached").getCredits());
+
+        userService.grantCredits("user_cached", 5);
+        assertEquals(12, userService.getUserByClerkId("user_cached").getCredits());
+    }
+
+    @Test
+    void callersCannotMutateCachedEntries() {
+        userRepository.save(User.builder()
+                .clerkId("user_copy")
+                .email("copy@example.com")
+                .firstName("Copy")
+                .lastName("User")
+                .credits(4)
+                .build());
+
+        UserDto first = userService.getUserByClerkId("user_copy");
+        first.setCredits(999);
+
+        assertEquals(4, userService.getUserByClerkId("user_copy").getCredits());
+    }
+}
@@ -0,0 +1,117 @@
+package in.apoorvsahu.removebg.services.impl;
+
+import in.apoorvsahu.removebg.Repositories.UserRepository;
+import in.apoorvsahu.removebg.entities.User;
+import in.apoorvsahu.removebg.exceptions.InsufficientCreditsException;
+import in.apoorvsahu.removebg.services.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class UserServiceImplConcurrencyTest {
+
+    private static final int THREADS = 16;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @AfterEach
+    void cleanUp() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void concurrentDebitsNeverOverspend() throws Exception {
+        createUser("user_debit", 100);
+        AtomicInteger successfulDebits = new AtomicInteger();
+        AtomicInteger rejectedDebits = new AtomicInteger();
+
+        runConcurrently(300, () -> {
+            try {
+                userService.debitCredits("user_debit", 1);
+                successfulDebits.incrementAndGet();
+            } catch (InsufficientCreditsException e) {
+                rejectedDebits.incrementAndGet();
+            }
+            return null;
+        });
+
+        assertEquals(100, successfulDebits.get());
+        assertEquals(200, rejectedDebits.get());
+        assertEquals(0, userRepository.findCreditsByClerkId("user_debit").orElseThrow());
+    }
+
+    @Test
+    void concurrentGrantsAndDebitsLoseNoCredits() throws Exception {
+        createUser("user_mixed", 50);
+        AtomicInteger successfulDebits = new AtomicInteger();
+        AtomicInteger taskIndex = new AtomicInteger();
+
+        runConcurrently(400, () -> {
+            if (taskIndex.getAndIncrement() % 2 == 0) {
+                userService.grantCredits("user_mixed", 3);
+            } else {
+                try {
+                    userService.debitCredits("user_mixed", 2);
+                    successfulDebits.incrementAndGet();
+                } catch (InsufficientCreditsException ignored) {
+                    // a rejected debit must leave the balance untouched
+                }
+            }
+            return null;
+        });
+
+        int expected = 50 + 200 * 3 - successfulDebits.get() * 2;
+        int actual = userRepository.findCreditsByClerkId("user_mixed").orElseThrow();
+        assertEquals(expected, actual);
+        assertTrue(actual >= 0);
+    }
+
+    private void createUser(String clerkId, int credits) {
+        userRepository.save(User.builder()
+                .clerkId(clerkId)
+                .email(clerkId + "@example.com")
+                .firstName("Test")
+                .lastName("User")
+                .credits(credits)
+                .build());
+    }
+
+    private void runConcurrently(int tasks, Callable<Void> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Void>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < tasks; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
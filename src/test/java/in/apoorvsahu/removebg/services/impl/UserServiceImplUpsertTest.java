@@ -0,0 +1,78 @@
+package in.apoorvsahu.removebg.services.impl;
+
+import in.apoorvsahu.removebg.Repositories.UserRepository;
+import in.apoorvsahu.removebg.cache.UserProfileCache;
+import in.apoorvsahu.removebg.dtos.UserDto;
+import in.apoorvsahu.removebg.entities.User;
+import in.apoorvsahu.removebg.exceptions.UserConflictException;
+import in.apoorvsahu.removebg.services.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+class UserServiceImplUpsertTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserProfileCache userProfileCache;
+
+    @AfterEach
+    void cleanUp() {
+        userRepository.deleteAll();
+        userProfileCache.invalidateAll();
+    }
+
+    @Test
+    void createsWithDefaultCreditsAndUpdatesWithoutTouchingCredits() {
+        userService.upsertProfile(profile("user_upsert", "upsert@example.com", "First"));
+        assertEquals(User.DEFAULT_CREDITS, userService.getUserByClerkId("user_upsert").getCredits());
+
+        userService.debitCredits("user_upsert", 2);
+        userService.upsertProfile(profile("user_upsert", "renamed@example.com", "Renamed"));
+
+        UserDto user = userService.getUserByClerkId("user_upsert");
+        assertEquals("Renamed", user.getFirstName());
+        assertEquals("renamed@example.com", user.getEmail());
+        assertEquals(User.DEFAULT_CREDITS - 2, user.getCredits());
+        assertEquals(1, userRepository.count());
+    }
+
+    @Test
+    void emailOwnedByAnotherUserIsRejectedAndLeftUntouched() {
+        userService.upsertProfile(profile("user_owner", "shared@example.com", "Owner"));
+        assertThrows(UserConflictException.class,
+                () -> userService.upsertProfile(profile("user_intruder", "shared@example.com", "Intruder")));
+
+        assertEquals("Owner", userService.getUserByClerkId("user_owner").getFirstName());
+        assertFalse(userRepository.existsByClerkId("user_intruder"));
+    }
+
+    @Test
+    void redeliveredProfileIsNotMistakenForAConflict() {
+        userService.upsertProfile(profile("user_repeat", "repeat@example.com", "Repeat"));
+        userService.upsertProfile(profile("user_repeat", "repeat@example.com", "Repeat"));
+
+        assertEquals("Repeat", userService.getUserByClerkId("user_repeat").getFirstName());
+        assertEquals(1, userRepository.count());
+    }
+
+    private UserDto profile(String clerkId, String email, String firstName) {
+        return UserDto.builder()
+                .clerkId(clerkId)
+                .email(email)
+                .firstName(firstName)
+                .lastName("User")
+                .build();
+    }
+}